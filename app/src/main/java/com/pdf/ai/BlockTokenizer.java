@@ -0,0 +1,293 @@
+package com.pdf.ai;
+
+/**
+ * Forward tokenizer over a {@code [[TABLE|...]]} or {@code [[CHART|...]]} block. Fields are the
+ * {@code |}-separated parts and are read one at a time; the current field is split into its
+ * {@code ,}-separated cells on demand. Cell bounds are kept as offsets in an int array, so walking a
+ * block allocates nothing per field unless a cell has to be unescaped.
+ *
+ * <p>A cell may be wrapped in double quotes, in which case {@code |} and {@code ,} inside it are
+ * literal and {@code ""} stands for a quote. Outside quotes a backslash escapes {@code | , " \}.
+ */
+final class BlockTokenizer {
+    static final String TABLE_PREFIX = "[[TABLE|";
+    static final String CHART_PREFIX = "[[CHART|";
+    private static final String SUFFIX = "]]";
+    private static final String ESCAPABLE = "|,\"\\";
+
+    // Per cell: start, end, flags
+    private static final int CELL_STRIDE = 3;
+    private static final int FLAG_QUOTED = 1;
+    private static final int FLAG_ESCAPED = 2;
+
+    private final CharSequence text;
+    private final int end;
+    private int next;
+    private int fieldStart = -1;
+    private int fieldEnd = -1;
+    private int[] cells = new int[CELL_STRIDE * 8];
+    private int cellCount;
+    private final StringBuilder scratch = new StringBuilder();
+
+    BlockTokenizer(CharSequence text, String prefix) {
+        this.text = text;
+        int start = 0;
+        int stop = text.length();
+        while (start < stop && Character.isWhitespace(text.charAt(start))) start++;
+        while (stop > start && Character.isWhitespace(text.charAt(stop - 1))) stop--;
+        if (regionMatches(start, prefix)) start += prefix.length();
+        if (stop - start >= SUFFIX.length() && regionMatches(stop - SUFFIX.length(), SUFFIX)) stop -= SUFFIX.length();
+        this.next = start;
+        this.end = stop;
+    }
+
+    CharSequence getText() {
+        return text;
+    }
+
+    /** Moves to the next field; returns false once the block is exhausted. */
+    boolean next() {
+        // A trailing separator does not start another field
+        if (next > end || (next == end && fieldEnd >= 0)) return false;
+        fieldStart = next;
+        fieldEnd = scan(next, end, '|');
+        next = fieldEnd + 1;
+        cellCount = -1;
+        return true;
+    }
+
+    /** Repositions the tokenizer so that {@link #next()} reads the field starting at {@code offset}. */
+    void seek(int offset) {
+        next = offset;
+        fieldStart = -1;
+        fieldEnd = -1;
+        cellCount = -1;
+    }
+
+    int getFieldStart() {
+        return fieldStart;
+    }
+
+    /** The current field as a single value: trimmed, unquoted and unescaped. */
+    String getField() {
+        int start = skipSpaces(fieldStart, fieldEnd);
+        int stop = fieldEnd;
+        while (stop > start && Character.isWhitespace(text.charAt(stop - 1))) stop--;
+        if (stop - start >= 2 && text.charAt(start) == '"' && text.charAt(stop - 1) == '"') {
+            return unescape(start + 1, stop - 1, true);
+        }
+        return unescape(start, stop, false);
+    }
+
+    /** Number of comma-separated cells in the current field. */
+    int getCellCount() {
+        if (cellCount < 0) splitCells();
+        return cellCount;
+    }
+
+    /** Start of the raw text of cell {@code i}: trimmed, inside its quotes if it has them. */
+    int getCellStart(int i) {
+        if (cellCount < 0) splitCells();
+        return cells[CELL_STRIDE * i];
+    }
+
+    int getCellEnd(int i) {
+        if (cellCount < 0) splitCells();
+        return cells[CELL_STRIDE * i + 1];
+    }
+
+    /** True if cell {@code i} contains escapes, so its raw text differs from {@link #getCell(int)}. */
+    boolean isCellEscaped(int i) {
+        if (cellCount < 0) splitCells();
+        return (cells[CELL_STRIDE * i + 2] & FLAG_ESCAPED) != 0;
+    }
+
+    String getCell(int i) {
+        if (cellCount < 0) splitCells();
+        return unescape(cells[CELL_STRIDE * i], cells[CELL_STRIDE * i + 1], (cells[CELL_STRIDE * i + 2] & FLAG_QUOTED) != 0);
+    }
+
+    /** Parses cell {@code i} as a number without creating a string for plain decimal values. */
+    float getCellFloat(int i) {
+        if (cellCount < 0) splitCells();
+        if (isCellEscaped(i)) return Float.parseFloat(getCell(i));
+        return parseFloat(text, cells[CELL_STRIDE * i], cells[CELL_STRIDE * i + 1]);
+    }
+
+    /**
+     * Decimal floats of the form {@code [-+]digits[.digits][e[-+]digits]} are parsed in place; anything
+     * else goes through {@link Float#parseFloat} so the accepted syntax and errors stay the same.
+     */
+    static float parseFloat(CharSequence s, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        for (; i < end && isDigit(s.charAt(i)); i++, seenDigit = true) {
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (s.charAt(i) - '0');
+                if (mantissa != 0) digits++;
+            } else {
+                exponent++;
+            }
+        }
+        if (i < end && s.charAt(i) == '.') {
+            for (i++; i < end && isDigit(s.charAt(i)); i++, seenDigit = true) {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (s.charAt(i) - '0');
+                    if (mantissa != 0) digits++;
+                    exponent--;
+                }
+            }
+        }
+        if (seenDigit && i < end && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            int j = i + 1;
+            boolean negativeExponent = false;
+            if (j < end && (s.charAt(j) == '-' || s.charAt(j) == '+')) {
+                negativeExponent = s.charAt(j) == '-';
+                j++;
+            }
+            int value = 0;
+            int expStart = j;
+            for (; j < end && isDigit(s.charAt(j)) && value < 10000; j++) {
+                value = value * 10 + (s.charAt(j) - '0');
+            }
+            if (j > expStart) {
+                exponent += negativeExponent ? -value : value;
+                i = j;
+            }
+        }
+        if (!seenDigit || i != end) {
+            return Float.parseFloat(s.subSequence(start, end).toString());
+        }
+        double value = exponent == 0 ? mantissa : mantissa * Math.pow(10, exponent);
+        return (float) (negative ? -value : value);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /** Index of the first {@code separator} in [from, to) outside quotes and escapes, or {@code to}. */
+    private int scan(int from, int to, char separator) {
+        boolean atCellStart = true;
+        int i = from;
+        while (i < to) {
+            char c = text.charAt(i);
+            if (c == separator) return i;
+            if (c == '\\' && i + 1 < to && ESCAPABLE.indexOf(text.charAt(i + 1)) >= 0) {
+                i += 2;
+                atCellStart = false;
+            } else if (c == '"' && atCellStart) {
+                i = closingQuote(i + 1, to) + 1;
+                atCellStart = false;
+            } else {
+                if (c == ',') {
+                    atCellStart = true;
+                } else if (!Character.isWhitespace(c)) {
+                    atCellStart = false;
+                }
+                i++;
+            }
+        }
+        return to;
+    }
+
+    /** Index of the quote closing a quoted cell whose content starts at {@code from}, or {@code to}. */
+    private int closingQuote(int from, int to) {
+        int j = from;
+        while (j < to) {
+            if (text.charAt(j) == '"') {
+                if (j + 1 < to && text.charAt(j + 1) == '"') {
+                    j += 2;
+                    continue;
+                }
+                return j;
+            }
+            j++;
+        }
+        return to;
+    }
+
+    private void splitCells() {
+        cellCount = 0;
+        int pos = fieldStart;
+        while (true) {
+            int start = skipSpaces(pos, fieldEnd);
+            int stop;
+            int flags = 0;
+            int cellEnd;
+            if (start < fieldEnd && text.charAt(start) == '"') {
+                flags = FLAG_QUOTED;
+                stop = closingQuote(start + 1, fieldEnd);
+                for (int j = start + 1; j < stop; j++) {
+                    if (text.charAt(j) == '"' || isEscape(j, stop)) flags |= FLAG_ESCAPED;
+                }
+                cellEnd = scan(Math.min(stop + 1, fieldEnd), fieldEnd, ',');
+                start++;
+            } else {
+                cellEnd = scan(start, fieldEnd, ',');
+                stop = cellEnd;
+                while (stop > start && Character.isWhitespace(text.charAt(stop - 1))) stop--;
+                for (int j = start; j < stop; j++) {
+                    if (isEscape(j, stop)) {
+                        flags |= FLAG_ESCAPED;
+                        break;
+                    }
+                }
+            }
+            addCell(start, stop, flags);
+            if (cellEnd >= fieldEnd) break;
+            pos = cellEnd + 1;
+        }
+    }
+
+    private boolean isEscape(int i, int to) {
+        return text.charAt(i) == '\\' && i + 1 < to && ESCAPABLE.indexOf(text.charAt(i + 1)) >= 0;
+    }
+
+    private void addCell(int start, int stop, int flags) {
+        if (CELL_STRIDE * (cellCount + 1) > cells.length) {
+            int[] grown = new int[cells.length * 2];
+            System.arraycopy(cells, 0, grown, 0, cells.length);
+            cells = grown;
+        }
+        cells[CELL_STRIDE * cellCount] = start;
+        cells[CELL_STRIDE * cellCount + 1] = stop;
+        cells[CELL_STRIDE * cellCount + 2] = flags;
+        cellCount++;
+    }
+
+    private String unescape(int start, int stop, boolean quoted) {
+        scratch.setLength(0);
+        for (int i = start; i < stop; i++) {
+            char c = text.charAt(i);
+            if (quoted && c == '"' && i + 1 < stop && text.charAt(i + 1) == '"') {
+                i++;
+            } else if (isEscape(i, stop)) {
+                c = text.charAt(++i);
+            }
+            scratch.append(c);
+        }
+        return scratch.toString();
+    }
+
+    private int skipSpaces(int from, int to) {
+        while (from < to && Character.isWhitespace(text.charAt(from))) from++;
+        return from;
+    }
+
+    private boolean regionMatches(int offset, String s) {
+        if (offset + s.length() > text.length()) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (text.charAt(offset + i) != s.charAt(i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,74 @@
+package com.pdf.ai;
+
+import android.graphics.Canvas;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+/** {@link RenderTarget} that draws onto an Android {@link Canvas} with the paints of a {@link PaintManager}. */
+public class CanvasRenderTarget implements RenderTarget {
+    private final PaintManager paints;
+    private final RectF oval = new RectF();
+    private final Path path = new Path();
+    private Canvas canvas;
+
+    public CanvasRenderTarget(PaintManager paints) {
+        this.paints = paints;
+    }
+
+    public CanvasRenderTarget(Canvas canvas, PaintManager paints) {
+        this(paints);
+        this.canvas = canvas;
+    }
+
+    public void setCanvas(Canvas canvas) {
+        this.canvas = canvas;
+    }
+
+    @Override
+    public void drawText(CharSequence text, int start, int end, float x, float y, int paintId) {
+        canvas.drawText(text, start, end, x, y, paints.getPaint(paintId));
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, int paintId) {
+        canvas.drawLine(startX, startY, stopX, stopY, paints.getPaint(paintId));
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, int paintId) {
+        canvas.drawRect(left, top, right, bottom, paints.getPaint(paintId));
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, int paintId) {
+        canvas.drawCircle(cx, cy, radius, paints.getPaint(paintId));
+    }
+
+    @Override
+    public void drawWedge(float left, float top, float right, float bottom, float startAngle, float sweepAngle, int paintId) {
+        oval.set(left, top, right, bottom);
+        canvas.drawArc(oval, startAngle, sweepAngle, true, paints.getPaint(paintId));
+    }
+
+    @Override
+    public void drawPolyline(float[] points, int count, int paintId) {
+        if (count < 2) return;
+        path.rewind();
+        path.moveTo(points[0], points[1]);
+        for (int i = 1; i < count; i++) {
+            path.lineTo(points[2 * i], points[2 * i + 1]);
+        }
+        canvas.drawPath(path, paints.getPaint(paintId));
+    }
+
+    @Override
+    public void saveAndRotate(float degrees, float px, float py) {
+        canvas.save();
+        canvas.rotate(degrees, px, py);
+    }
+
+    @Override
+    public void restore() {
+        canvas.restore();
+    }
+}
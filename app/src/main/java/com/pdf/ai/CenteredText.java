@@ -0,0 +1,20 @@
+package com.pdf.ai;
+
+/** A single unwrapped line centered on the page, used for table and chart titles. */
+public class CenteredText extends LayoutBlock {
+    private final String text;
+    private final float baseline;
+    private final int paintId;
+
+    /** {@code paintId} must be a center-aligned paint. */
+    public CenteredText(String text, float baseline, int paintId) {
+        this.text = text;
+        this.baseline = baseline;
+        this.paintId = paintId;
+    }
+
+    @Override
+    public void paint(RenderTarget target) {
+        target.drawText(text, 0, text.length(), PaintManager.PAGE_WIDTH / 2f, baseline, paintId);
+    }
+}
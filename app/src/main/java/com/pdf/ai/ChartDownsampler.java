@@ -0,0 +1,122 @@
+package com.pdf.ai;
+
+/**
+ * Reduces chart series to what the plot area can show. Line series use Largest-Triangle-Three-
+ * Buckets, which keeps the points that shape the line; scatter series keep one point per occupied
+ * grid cell together with how many points fell into that cell, so the covered area survives and the
+ * density can still be drawn while stacked duplicates go.
+ *
+ * <p>Both give the indices of the points to keep, in their original order, or null if nothing
+ * needs to be dropped.
+ */
+final class ChartDownsampler {
+
+    private ChartDownsampler() {
+    }
+
+    /** Picks {@code threshold} points of a line series, always including the first and last. */
+    static int[] lttb(float[] xs, float[] ys, int threshold) {
+        int n = xs.length;
+        if (threshold < 3 || n <= threshold) return null;
+
+        int[] sampled = new int[threshold];
+        int count = 0;
+        sampled[count++] = 0;
+        // Points 1..n-2 are split into threshold-2 buckets; each contributes the point forming the
+        // largest triangle with the previously chosen point and the average of the next bucket
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, n);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += xs[j];
+                avgY += ys[j];
+            }
+            int nextLength = nextEnd - nextStart;
+            if (nextLength > 0) {
+                avgX /= nextLength;
+                avgY /= nextLength;
+            } else {
+                avgX = xs[n - 1];
+                avgY = ys[n - 1];
+            }
+
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = Math.min((int) ((bucket + 1) * bucketSize) + 1, n - 1);
+            double ax = xs[a];
+            double ay = ys[a];
+            double maxArea = -1;
+            int chosen = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((ax - avgX) * (ys[j] - ay) - (ax - xs[j]) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = j;
+                }
+            }
+            sampled[count++] = chosen;
+            a = chosen;
+        }
+        sampled[count++] = n - 1;
+        return sampled;
+    }
+
+    /**
+     * Keeps the first point falling into each cell of a {@code columns} x {@code rows} grid laid
+     * over the given bounds, and counts the points in each kept point's cell.
+     */
+    static Bins binPoints(float[] xs, float[] ys, float minX, float maxX, float minY, float maxY, int columns, int rows) {
+        int n = xs.length;
+        if (columns <= 0 || rows <= 0 || n <= columns) return null;
+
+        // Slot of each cell's kept point plus one; 0 while the cell is empty
+        int[] cellSlots = new int[columns * rows];
+        int[] kept = new int[Math.min(n, columns * rows)];
+        int[] counts = new int[kept.length];
+        int count = 0;
+        float scaleX = (columns - 1) / (maxX - minX);
+        float scaleY = (rows - 1) / (maxY - minY);
+        for (int i = 0; i < n; i++) {
+            int cx = clamp((int) ((xs[i] - minX) * scaleX), columns);
+            int cy = clamp((int) ((ys[i] - minY) * scaleY), rows);
+            int cell = cy * columns + cx;
+            if (cellSlots[cell] == 0) {
+                kept[count] = i;
+                cellSlots[cell] = ++count;
+            }
+            counts[cellSlots[cell] - 1]++;
+        }
+        if (count == n) return null;
+        int[] indices = new int[count];
+        System.arraycopy(kept, 0, indices, 0, count);
+        int[] cellCounts = new int[count];
+        System.arraycopy(counts, 0, cellCounts, 0, count);
+        return new Bins(indices, cellCounts);
+    }
+
+    static float[] select(float[] series, int[] indices) {
+        float[] out = new float[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            out[i] = series[indices[i]];
+        }
+        return out;
+    }
+
+    private static int clamp(int cell, int cells) {
+        return cell < 0 ? 0 : cell >= cells ? cells - 1 : cell;
+    }
+
+    /** The kept scatter points and, for each, the number of points in its grid cell. */
+    static final class Bins {
+        final int[] indices;
+        final int[] counts;
+
+        Bins(int[] indices, int[] counts) {
+            this.indices = indices;
+            this.counts = counts;
+        }
+    }
+}
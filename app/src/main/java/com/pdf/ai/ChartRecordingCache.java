@@ -0,0 +1,145 @@
+package com.pdf.ai;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of recorded chart drawings, keyed by a 128-bit SHA-256 digest of the chart block text,
+ * so an entry does not keep the block itself alive. Recordings
+ * hold paint ids rather than paints and are made at the top of the page, so one entry replays under
+ * any theme and at any position. The cache is bounded by the total number of recorded ops.
+ *
+ * <p>Shared by all generation runs in the process; safe to use from several threads.
+ */
+public class ChartRecordingCache {
+
+    public static final int DEFAULT_MAX_OPS = 200_000;
+
+    /** A recorded chart with the plain title laid out above it. */
+    public static final class Entry {
+        final String title;
+        final RecordingTarget recording;
+
+        Entry(String title, RecordingTarget recording) {
+            this.title = title;
+            this.recording = recording;
+        }
+    }
+
+    private final int maxOps;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(32, 0.75f, true);
+    private long totalOps;
+    private long hits;
+    private long misses;
+
+    public ChartRecordingCache() {
+        this(DEFAULT_MAX_OPS);
+    }
+
+    public ChartRecordingCache(int maxOps) {
+        this.maxOps = maxOps;
+    }
+
+    public static Key keyOf(CharSequence block) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        // Chars are fed in 2-byte chunks so a slice of a larger string is never copied out
+        byte[] chunk = new byte[512];
+        int n = 0;
+        for (int i = 0; i < block.length(); i++) {
+            char c = block.charAt(i);
+            chunk[n++] = (byte) (c >>> 8);
+            chunk[n++] = (byte) c;
+            if (n == chunk.length) {
+                digest.update(chunk, 0, n);
+                n = 0;
+            }
+        }
+        digest.update(chunk, 0, n);
+        byte[] hash = digest.digest();
+        return new Key(toLong(hash, 0), toLong(hash, 8));
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    public synchronized Entry get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return entry;
+    }
+
+    /** Stores a finished recording; recordings larger than the whole cache are not kept. */
+    public synchronized void put(Key key, Entry entry) {
+        int ops = entry.recording.getOpCount();
+        if (ops > maxOps) return;
+        Entry previous = entries.put(key, entry);
+        if (previous != null) totalOps -= previous.recording.getOpCount();
+        totalOps += ops;
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (totalOps > maxOps && eldest.hasNext()) {
+            Map.Entry<Key, Entry> e = eldest.next();
+            if (e.getKey().equals(key)) continue;
+            totalOps -= e.getValue().recording.getOpCount();
+            eldest.remove();
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized float getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0f : (float) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ChartRecordingCache{hits=" + hits + ", misses=" + misses + ", size=" + entries.size() + ", ops=" + totalOps + "}";
+    }
+
+    /** The 128-bit digest of a chart block's text. */
+    public static final class Key {
+        final long high;
+        final long low;
+
+        Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return high == other.high && low == other.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (low ^ (low >>> 32));
+        }
+    }
+}
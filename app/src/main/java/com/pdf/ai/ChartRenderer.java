@@ -1,304 +1,257 @@
 package com.pdf.ai;
 
-import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.RectF;
-import android.graphics.pdf.PdfDocument;
 import android.util.Log;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 public class ChartRenderer {
+    // Plot area of line and scatter charts
+    private static final float PLOT_WIDTH = PaintManager.CONTENT_WIDTH - 60;
+    private static final float PLOT_HEIGHT = 180;
+    // Line series keep at most one point per this many points of plot width
+    private static final float LINE_POINT_SPACING = 1f;
+    // Scatter series keep one point per grid cell of this size; markers are 10pt wide, so finer cells only stack circles
+    private static final float SCATTER_CELL_SIZE = 4f;
+    // Line point markers are only drawn if they are at least this far apart on average
+    private static final float MIN_MARKER_SPACING = 6f;
+    // Scatter markers; binned markers grow from the smallest radius to the full one with their cell's point count
+    private static final float SCATTER_RADIUS = 5f;
+    private static final float MIN_SCATTER_RADIUS = 2f;
+
+    // Charts are recorded once per distinct block and replayed on every later render
+    private static final ChartRecordingCache RECORDINGS = new ChartRecordingCache();
+
     private final PaintManager paints;
 
+    public static ChartRecordingCache getRecordingCache() {
+        return RECORDINGS;
+    }
+
     public ChartRenderer(PaintManager paintManager) {
         this.paints = paintManager;
     }
 
-    public Object[] drawChart(PdfDocument document, PdfDocument.Page page, String chartString, float yPos, int currentPageNum) {
-        Canvas canvas = page.getCanvas();
+    public void layoutChart(LayoutCursor cursor, String chartString) {
         try {
-            chartString = chartString.replace("[[CHART|", "").replace("]]", "");
-            String[] parts = chartString.split("\\|");
-            if (parts.length < 4) throw new IllegalArgumentException("Invalid chart format: Not enough parts.");
-
-            String type = parts[0].trim().toLowerCase();
-            String title = parts[1].trim();
-
-            float chartHeight = 250;
-            if (yPos + chartHeight + paints.getChartTitlePaint().getTextSize() > PaintManager.PAGE_HEIGHT - PaintManager.MARGIN) {
-                Object[] result = PageHelper.finishAndStartNewPage(document, page, currentPageNum, paints);
-                page = (PdfDocument.Page) result[0];
-                currentPageNum = (int) result[1];
-                canvas = page.getCanvas();
-                yPos = PaintManager.MARGIN;
+            ChartRecordingCache.Key key = ChartRecordingCache.keyOf(chartString);
+            ChartRecordingCache.Entry entry = RECORDINGS.get(key);
+            if (entry == null) {
+                entry = record(chartString);
+                RECORDINGS.put(key, entry);
             }
 
-            yPos += PaintManager.VISUAL_TITLE_MARGIN;
-            canvas.drawText(title, PaintManager.PAGE_WIDTH / 2f, yPos - paints.getChartTitlePaint().ascent(), paints.getChartTitlePaint());
-            yPos += (paints.getChartTitlePaint().descent() - paints.getChartTitlePaint().ascent()) * PaintManager.LINE_HEIGHT_MULTIPLIER;
+            float chartHeight = 250;
+            Paint titlePaint = paints.getChartTitlePaint();
+            cursor.ensureSpace(chartHeight + titlePaint.getTextSize());
 
-            switch (type) {
-                case "bar":
-                    drawBarChart(canvas, parts, yPos);
-                    break;
-                case "pie":
-                    drawPieChart(canvas, parts, yPos);
-                    break;
-                case "line":
-                    drawLineChart(canvas, parts, yPos);
-                    break;
-                case "scatter":
-                    drawScatterPlot(canvas, parts, yPos);
-                    break;
-                case "bar-line":
-                    drawCombinedChart(canvas, parts, yPos);
-                    break;
-                default:
-                    throw new IllegalArgumentException("Unsupported chart type: " + type);
-            }
+            cursor.advance(PaintManager.VISUAL_TITLE_MARGIN);
+            cursor.add(new CenteredText(entry.title, cursor.getY() - titlePaint.ascent(), PaintManager.PAINT_CHART_TITLE));
+            cursor.advance((titlePaint.descent() - titlePaint.ascent()) * PaintManager.LINE_HEIGHT_MULTIPLIER);
 
-            yPos += chartHeight + PaintManager.VISUAL_BOTTOM_MARGIN;
+            cursor.add(new ChartBlock(entry.recording, cursor.getY()));
+            cursor.advance(chartHeight + PaintManager.VISUAL_BOTTOM_MARGIN);
 
         } catch (Exception e) {
             Log.e("ChartRenderer", "Failed to parse or draw chart: " + chartString, e);
-            Paint errorPaint = new Paint(paints.getTextPaint());
-            errorPaint.setColor(Color.RED);
-            errorPaint.setTextAlign(Paint.Align.CENTER);
-            String errorMsg = "Error: Could not render chart. Check data format.";
-            page.getCanvas().drawText(errorMsg, PaintManager.PAGE_WIDTH / 2f, yPos + 20, errorPaint);
-            yPos += 40;
+            cursor.add(new ErrorBlock("Error: Could not render chart. Check data format.", cursor.getY() + 20));
+            cursor.advance(40);
         }
-        return new Object[]{page, yPos, currentPageNum};
     }
 
-    private List<String> parseStringList(String commaSeparatedString) {
-        List<String> list = new ArrayList<>();
-        if (commaSeparatedString == null || commaSeparatedString.trim().isEmpty()) return list;
-        for (String s : commaSeparatedString.split(",")) {
-            if (!s.trim().isEmpty()) list.add(s.trim());
-        }
-        return list;
+    /** Parses a chart block and records its drawing at y = 0; throws if the block is malformed. */
+    private ChartRecordingCache.Entry record(String chartString) {
+        // Series are reduced to the plot resolution here, so large data never reaches the recording
+        ChartSpec spec = ChartSpec.parse(chartString).downsampled(PLOT_WIDTH, PLOT_HEIGHT, LINE_POINT_SPACING, SCATTER_CELL_SIZE);
+        RecordingTarget recording = new RecordingTarget();
+        drawChart(recording, spec, 0);
+        recording.trimToSize();
+        return new ChartRecordingCache.Entry(InlineLexer.strip(spec.title, paints), recording);
     }
 
-    private List<Float> parseFloatList(String commaSeparatedString) {
-        List<Float> list = new ArrayList<>();
-        if (commaSeparatedString == null || commaSeparatedString.trim().isEmpty()) return list;
-        for (String s : commaSeparatedString.split(",")) {
-            if (!s.trim().isEmpty()) {
-                try { list.add(Float.parseFloat(s.trim())); } catch (NumberFormatException ignored) {}
-            }
+    private void drawChart(RenderTarget target, ChartSpec spec, float yPos) {
+        switch (spec.type) {
+            case "bar":
+                drawBarChart(target, spec, yPos);
+                break;
+            case "pie":
+                drawPieChart(target, spec, yPos);
+                break;
+            case "line":
+                drawLineChart(target, spec, yPos);
+                break;
+            case "scatter":
+                drawScatterPlot(target, spec, yPos);
+                break;
+            case "bar-line":
+                drawCombinedChart(target, spec, yPos);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported chart type: " + spec.type);
         }
-        return list;
     }
 
-    private void drawBarChart(Canvas canvas, String[] parts, float yPos) {
-        List<String> labels = parseStringList(parts[2]);
-        List<Float> values = parseFloatList(parts[3]);
-        if (labels.size() != values.size() || values.isEmpty()) {
-            throw new IllegalArgumentException("Bar chart data mismatch or is empty.");
-        }
+    private int fillPaint(int series) {
+        return PaintManager.PAINT_CHART_FILL + series % PaintManager.CHART_COLOR_COUNT;
+    }
+
+    private void drawLabel(RenderTarget target, String label, float x, float y, int paintId) {
+        target.drawText(label, 0, label.length(), x, y, paintId);
+    }
+
+    private void drawBarChart(RenderTarget target, ChartSpec spec, float yPos) {
+        float[] values = spec.values;
         float chartHeight = 180; float chartWidth = PaintManager.CONTENT_WIDTH - 40;
         float left = PaintManager.MARGIN + 30; float bottom = yPos + chartHeight;
-        canvas.drawLine(left, yPos, left, bottom, paints.getChartAxisPaint());
-        canvas.drawLine(left, bottom, left + chartWidth, bottom, paints.getChartAxisPaint());
-        float maxValue = Collections.max(values);
-        if (maxValue == 0) maxValue = 1;
-        float barWidth = (chartWidth / values.size()) * 0.6f;
-        float barSpacing = (chartWidth / values.size()) * 0.4f;
-        Paint barPaint = new Paint(); barPaint.setStyle(Paint.Style.FILL);
+        target.drawLine(left, yPos, left, bottom, PaintManager.PAINT_CHART_AXIS);
+        target.drawLine(left, bottom, left + chartWidth, bottom, PaintManager.PAINT_CHART_AXIS);
+        float barWidth = (chartWidth / values.length) * 0.6f;
+        float barSpacing = (chartWidth / values.length) * 0.4f;
         float currentX = left + barSpacing / 2;
-        for (int i = 0; i < values.size(); i++) {
-            float barHeight = (values.get(i) / maxValue) * chartHeight;
-            barPaint.setColor(paints.getChartColors()[i % paints.getChartColors().length]);
-            canvas.drawRect(currentX, bottom - barHeight, currentX + barWidth, bottom, barPaint);
-            canvas.drawText(labels.get(i), currentX + barWidth / 2, bottom + 15, paints.getChartLabelPaint());
+        for (int i = 0; i < values.length; i++) {
+            float barHeight = (values[i] / spec.maxValue) * chartHeight;
+            target.drawRect(currentX, bottom - barHeight, currentX + barWidth, bottom, fillPaint(i));
+            drawLabel(target, spec.labels[i], currentX + barWidth / 2, bottom + 15, PaintManager.PAINT_CHART_LABEL);
             currentX += barWidth + barSpacing;
         }
     }
 
-    private void drawPieChart(Canvas canvas, String[] parts, float yPos) {
-        List<String> labels = parseStringList(parts[2]);
-        List<Float> values = parseFloatList(parts[3]);
-        if (labels.size() != values.size() || values.isEmpty()) {
-            throw new IllegalArgumentException("Pie chart data mismatch or is empty.");
-        }
-        float total = 0; for (float v : values) total += v; if (total == 0) return;
+    private void drawPieChart(RenderTarget target, ChartSpec spec, float yPos) {
+        float[] values = spec.values;
+        if (spec.total == 0) return;
         float chartSize = 150; float legendWidth = 120;
         float left = PaintManager.MARGIN + (PaintManager.CONTENT_WIDTH - chartSize - legendWidth) / 2;
-        RectF oval = new RectF(left, yPos, left + chartSize, yPos + chartSize);
-        Paint slicePaint = new Paint(); slicePaint.setStyle(Paint.Style.FILL); slicePaint.setAntiAlias(true);
         float startAngle = -90;
-        for (int i = 0; i < values.size(); i++) {
-            float sweepAngle = (values.get(i) / total) * 360;
-            slicePaint.setColor(paints.getChartColors()[i % paints.getChartColors().length]);
-            canvas.drawArc(oval, startAngle, sweepAngle, true, slicePaint);
+        for (int i = 0; i < values.length; i++) {
+            float sweepAngle = (values[i] / spec.total) * 360;
+            target.drawWedge(left, yPos, left + chartSize, yPos + chartSize, startAngle, sweepAngle, fillPaint(i));
             startAngle += sweepAngle;
         }
         float legendX = left + chartSize + 20; float legendY = yPos + 10;
-        Paint legendPaint = new Paint(paints.getChartLabelPaint()); legendPaint.setTextAlign(Paint.Align.LEFT);
-        for (int i = 0; i < labels.size(); i++) {
-            slicePaint.setColor(paints.getChartColors()[i % paints.getChartColors().length]);
-            canvas.drawRect(legendX, legendY, legendX + 10, legendY + 10, slicePaint);
-            canvas.drawText(labels.get(i) + String.format(" (%.0f)", values.get(i)), legendX + 15, legendY + 9, legendPaint);
+        for (int i = 0; i < spec.legendLabels.length; i++) {
+            target.drawRect(legendX, legendY, legendX + 10, legendY + 10, fillPaint(i));
+            drawLabel(target, spec.legendLabels[i], legendX + 15, legendY + 9, PaintManager.PAINT_CHART_LABEL_LEFT);
             legendY += 20;
         }
     }
 
-    private void drawLineChart(Canvas canvas, String[] parts, float yPos) {
-        if (parts.length < 6) throw new IllegalArgumentException("Line chart requires 6 parts.");
-        List<Float> xValues = parseFloatList(parts[4]);
-        List<Float> yValues = parseFloatList(parts[5]);
-        if (xValues.size() != yValues.size() || xValues.isEmpty()) {
-            throw new IllegalArgumentException("Line chart data mismatch or is empty.");
-        }
-        float chartHeight = 180;
-        float chartWidth = PaintManager.CONTENT_WIDTH - 60;
+    private void drawLineChart(RenderTarget target, ChartSpec spec, float yPos) {
+        float chartHeight = PLOT_HEIGHT;
+        float chartWidth = PLOT_WIDTH;
         float left = PaintManager.MARGIN + 40;
-        drawChartAxesAndGrid(canvas, left, yPos, chartWidth, chartHeight, xValues, yValues, parts[2].split(","));
-        Path linePath = new Path();
-        Paint linePaint = new Paint();
-        linePaint.setColor(paints.getChartColors()[0]);
-        linePaint.setStyle(Paint.Style.STROKE);
-        linePaint.setStrokeWidth(2f);
-        linePaint.setAntiAlias(true);
-        Paint pointPaint = new Paint(linePaint);
-        pointPaint.setStyle(Paint.Style.FILL);
-        float minX = Collections.min(xValues); float maxX = Collections.max(xValues);
-        float minY = Collections.min(yValues); float maxY = Collections.max(yValues);
-        if (maxX == minX) maxX += 1; if (maxY == minY) maxY += 1;
+        drawChartAxesAndGrid(target, spec, left, yPos, chartWidth, chartHeight);
+        int count = spec.xs.length;
+        float[] linePoints = new float[2 * count];
         float bottom = yPos + chartHeight;
-        for (int i = 0; i < xValues.size(); i++) {
-            float px = left + ((xValues.get(i) - minX) / (maxX - minX)) * chartWidth;
-            float py = bottom - ((yValues.get(i) - minY) / (maxY - minY)) * chartHeight;
-            if (i == 0) linePath.moveTo(px, py); else linePath.lineTo(px, py);
-            canvas.drawCircle(px, py, 4f, pointPaint);
+        float scaleX = chartWidth / (spec.maxX - spec.minX);
+        float scaleY = chartHeight / (spec.maxY - spec.minY);
+        for (int i = 0; i < count; i++) {
+            linePoints[2 * i] = left + (spec.xs[i] - spec.minX) * scaleX;
+            linePoints[2 * i + 1] = bottom - (spec.ys[i] - spec.minY) * scaleY;
         }
-        canvas.drawPath(linePath, linePaint);
-    }
-
-    private void drawScatterPlot(Canvas canvas, String[] parts, float yPos) {
-        if (parts.length < 5) throw new IllegalArgumentException("Scatter plot requires at least 5 parts.");
-        List<Float> xValues = new ArrayList<>();
-        List<Float> yValues = new ArrayList<>();
-        for (int i = 4; i < parts.length; i++) {
-            String[] point = parts[i].split(",");
-            if (point.length == 2) {
-                try { xValues.add(Float.parseFloat(point[0].trim())); yValues.add(Float.parseFloat(point[1].trim())); } catch (NumberFormatException ignored) {}
+        if (count <= chartWidth / MIN_MARKER_SPACING) {
+            for (int i = 0; i < count; i++) {
+                target.drawCircle(linePoints[2 * i], linePoints[2 * i + 1], 4f, PaintManager.PAINT_CHART_FILL);
             }
         }
-        if (xValues.isEmpty()) return;
-        float chartHeight = 180;
-        float chartWidth = PaintManager.CONTENT_WIDTH - 60;
+        target.drawPolyline(linePoints, count, PaintManager.PAINT_CHART_LINE);
+    }
+
+    private void drawScatterPlot(RenderTarget target, ChartSpec spec, float yPos) {
+        if (spec.xs.length == 0) return;
+        float chartHeight = PLOT_HEIGHT;
+        float chartWidth = PLOT_WIDTH;
         float left = PaintManager.MARGIN + 40;
-        drawChartAxesAndGrid(canvas, left, yPos, chartWidth, chartHeight, xValues, yValues, parts[2].split(","));
-        Paint pointPaint = new Paint(); pointPaint.setStyle(Paint.Style.FILL); pointPaint.setAntiAlias(true);
-        float minX = Collections.min(xValues); float maxX = Collections.max(xValues);
-        float minY = Collections.min(yValues); float maxY = Collections.max(yValues);
-        if (maxX == minX) maxX += 1; if (maxY == minY) maxY += 1;
+        drawChartAxesAndGrid(target, spec, left, yPos, chartWidth, chartHeight);
         float bottom = yPos + chartHeight;
-        for (int i = 0; i < xValues.size(); i++) {
-            float px = left + ((xValues.get(i) - minX) / (maxX - minX)) * chartWidth;
-            float py = bottom - ((yValues.get(i) - minY) / (maxY - minY)) * chartHeight;
-            pointPaint.setColor(paints.getChartColors()[i % paints.getChartColors().length]);
-            canvas.drawCircle(px, py, 5f, pointPaint);
+        float scaleX = chartWidth / (spec.maxX - spec.minX);
+        float scaleY = chartHeight / (spec.maxY - spec.minY);
+        // Log scale, so a few very dense cells do not shrink everything else to the minimum
+        double maxDensity = Math.log1p(spec.maxPointCount);
+        for (int i = 0; i < spec.xs.length; i++) {
+            float px = left + (spec.xs[i] - spec.minX) * scaleX;
+            float py = bottom - (spec.ys[i] - spec.minY) * scaleY;
+            float density = (float) (Math.log1p(spec.pointCount(i)) / maxDensity);
+            float radius = MIN_SCATTER_RADIUS + (SCATTER_RADIUS - MIN_SCATTER_RADIUS) * density;
+            target.drawCircle(px, py, radius, fillPaint(spec.sourceIndex(i)));
         }
     }
 
-    private void drawCombinedChart(Canvas canvas, String[] parts, float yPos) {
-        if (parts.length < 7) throw new IllegalArgumentException("Combined chart requires 7 parts.");
-        List<String> categories = parseStringList(parts[4]);
-        List<Float> barValues = parseFloatList(parts[5]);
-        List<Float> lineValues = parseFloatList(parts[6]);
-        if (categories.size() != barValues.size() || categories.size() != lineValues.size() || categories.isEmpty()) {
-            throw new IllegalArgumentException("Combined chart data mismatch or is empty.");
-        }
+    private void drawCombinedChart(RenderTarget target, ChartSpec spec, float yPos) {
+        float[] barValues = spec.values;
+        float[] lineValues = spec.ys;
         float chartHeight = 180;
         float chartWidth = PaintManager.CONTENT_WIDTH - 80; // Space for two Y-axes
         float left = PaintManager.MARGIN + 40;
         float bottom = yPos + chartHeight;
         float right = left + chartWidth;
-        float maxBarValue = barValues.isEmpty() ? 1f : Collections.max(barValues); if (maxBarValue == 0) maxBarValue = 1;
-        float barWidth = (chartWidth / barValues.size()) * 0.6f; float barSpacing = (chartWidth / barValues.size()) * 0.4f;
-        Paint barPaint = new Paint(); barPaint.setStyle(Paint.Style.FILL);
+        float barWidth = (chartWidth / barValues.length) * 0.6f; float barSpacing = (chartWidth / barValues.length) * 0.4f;
         float currentX = left + barSpacing / 2;
-        paints.getChartLabelPaint().setTextAlign(Paint.Align.CENTER);
-        for (int i = 0; i < barValues.size(); i++) {
-            float barHeight = (barValues.get(i) / maxBarValue) * chartHeight;
-            barPaint.setColor(paints.getChartColors()[0]);
-            canvas.drawRect(currentX, bottom - barHeight, currentX + barWidth, bottom, barPaint);
-            canvas.drawText(categories.get(i), currentX + barWidth / 2, bottom + 15, paints.getChartLabelPaint());
+        for (int i = 0; i < barValues.length; i++) {
+            float barHeight = (barValues[i] / spec.maxValue) * chartHeight;
+            target.drawRect(currentX, bottom - barHeight, currentX + barWidth, bottom, PaintManager.PAINT_CHART_FILL);
+            drawLabel(target, spec.labels[i], currentX + barWidth / 2, bottom + 15, PaintManager.PAINT_CHART_LABEL);
             currentX += barWidth + barSpacing;
         }
-        float maxLineValue = lineValues.isEmpty() ? 1f : Collections.max(lineValues);
-        float minLineValue = lineValues.isEmpty() ? 0f : Collections.min(lineValues);
-        if (maxLineValue == minLineValue) maxLineValue += 1;
-        Path linePath = new Path(); Paint linePaint = new Paint(); linePaint.setColor(paints.getChartColors()[1]); linePaint.setStyle(Paint.Style.STROKE); linePaint.setStrokeWidth(2f); linePaint.setAntiAlias(true);
-        Paint pointPaint = new Paint(linePaint); pointPaint.setStyle(Paint.Style.FILL);
-        for (int i = 0; i < lineValues.size(); i++) {
+        float[] linePoints = new float[2 * lineValues.length];
+        for (int i = 0; i < lineValues.length; i++) {
             float px = left + (barSpacing / 2) + (i * (barWidth + barSpacing)) + (barWidth / 2);
-            float py = bottom - ((lineValues.get(i) - minLineValue) / (maxLineValue - minLineValue)) * chartHeight;
-            if (i == 0) linePath.moveTo(px, py); else linePath.lineTo(px, py);
-            canvas.drawCircle(px, py, 4f, pointPaint);
+            float py = bottom - ((lineValues[i] - spec.minY) / (spec.maxY - spec.minY)) * chartHeight;
+            linePoints[2 * i] = px; linePoints[2 * i + 1] = py;
+            target.drawCircle(px, py, 4f, PaintManager.PAINT_CHART_FILL + 1);
         }
-        canvas.drawPath(linePath, linePaint);
-        paints.getChartLabelPaint().setTextAlign(Paint.Align.RIGHT);
-        for (int i = 0; i <= 5; i++) {
-            float value = (i * maxBarValue / 5);
-            float y = bottom - (i * chartHeight / 5);
-            canvas.drawText(String.format("%.0f", value), left - 5, y + 3, paints.getChartLabelPaint());
-            canvas.drawLine(left, y, right, y, paints.getChartGridPaint());
+        target.drawPolyline(linePoints, lineValues.length, PaintManager.PAINT_CHART_LINE + 1);
+        for (int i = 0; i <= ChartSpec.TICK_COUNT; i++) {
+            float y = bottom - (i * chartHeight / ChartSpec.TICK_COUNT);
+            drawLabel(target, spec.valueTickLabels[i], left - 5, y + 3, PaintManager.PAINT_CHART_LABEL_RIGHT);
+            target.drawLine(left, y, right, y, PaintManager.PAINT_CHART_GRID);
         }
-        canvas.drawLine(left, yPos, left, bottom, paints.getChartAxisPaint());
-        paints.getChartLabelPaint().setTextAlign(Paint.Align.LEFT);
-        for (int i = 0; i <= 5; i++) {
-            float value = minLineValue + (i * (maxLineValue - minLineValue) / 5);
-            float y = bottom - (i * chartHeight / 5);
-            canvas.drawText(String.format("%.1f", value), right + 5, y + 3, paints.getChartLabelPaint());
+        target.drawLine(left, yPos, left, bottom, PaintManager.PAINT_CHART_AXIS);
+        for (int i = 0; i <= ChartSpec.TICK_COUNT; i++) {
+            float y = bottom - (i * chartHeight / ChartSpec.TICK_COUNT);
+            drawLabel(target, spec.yTickLabels[i], right + 5, y + 3, PaintManager.PAINT_CHART_LABEL_LEFT);
         }
-        canvas.drawLine(right, yPos, right, bottom, paints.getChartAxisPaint());
-        canvas.drawLine(left, bottom, right, bottom, paints.getChartAxisPaint());
+        target.drawLine(right, yPos, right, bottom, PaintManager.PAINT_CHART_AXIS);
+        target.drawLine(left, bottom, right, bottom, PaintManager.PAINT_CHART_AXIS);
     }
 
-    private void drawChartAxesAndGrid(Canvas canvas, float left, float top, float width, float height, List<Float> xData, List<Float> yData, String[] axisLabels) {
+    private void drawChartAxesAndGrid(RenderTarget target, ChartSpec spec, float left, float top, float width, float height) {
         float bottom = top + height;
         float right = left + width;
-        canvas.drawLine(left, top, left, bottom, paints.getChartAxisPaint());
-        canvas.drawLine(left, bottom, right, bottom, paints.getChartAxisPaint());
-        float minY = yData.isEmpty() ? 0f : Collections.min(yData);
-        float maxY = yData.isEmpty() ? 1f : Collections.max(yData);
-        if (maxY == minY) maxY +=1;
-        int numGridLinesY = 5;
-        paints.getChartLabelPaint().setTextAlign(Paint.Align.RIGHT);
-        for (int i = 0; i <= numGridLinesY; i++) {
-            float value = minY + (i * (maxY - minY) / numGridLinesY);
-            float yPos = bottom - (i * height / numGridLinesY);
-            canvas.drawText(String.format("%.1f", value), left - 5, yPos + 3, paints.getChartLabelPaint());
-            canvas.drawLine(left, yPos, right, yPos, paints.getChartGridPaint());
+        target.drawLine(left, top, left, bottom, PaintManager.PAINT_CHART_AXIS);
+        target.drawLine(left, bottom, right, bottom, PaintManager.PAINT_CHART_AXIS);
+        for (int i = 0; i <= ChartSpec.TICK_COUNT; i++) {
+            float yPos = bottom - (i * height / ChartSpec.TICK_COUNT);
+            drawLabel(target, spec.yTickLabels[i], left - 5, yPos + 3, PaintManager.PAINT_CHART_LABEL_RIGHT);
+            target.drawLine(left, yPos, right, yPos, PaintManager.PAINT_CHART_GRID);
         }
-        float minX = xData.isEmpty() ? 0f : Collections.min(xData);
-        float maxX = xData.isEmpty() ? 1f : Collections.max(xData);
-        if (maxX == minX) maxX +=1;
-        int numGridLinesX = Math.min(xData.size() - 1, 5);
-        if (numGridLinesX <= 0) numGridLinesX = 1;
-        paints.getChartLabelPaint().setTextAlign(Paint.Align.CENTER);
+        int numGridLinesX = spec.xTickLabels.length - 1;
         for (int i = 0; i <= numGridLinesX; i++) {
-            float value = minX + (i * (maxX - minX) / numGridLinesX);
             float xPos = left + (i * width / numGridLinesX);
-            canvas.drawText(String.format("%.1f", value), xPos, bottom + 15, paints.getChartLabelPaint());
+            drawLabel(target, spec.xTickLabels[i], xPos, bottom + 15, PaintManager.PAINT_CHART_LABEL);
         }
+        String[] axisLabels = spec.axisLabels;
         if (axisLabels.length > 0) {
-            canvas.drawText(axisLabels[0], left + width / 2, bottom + 30, paints.getChartLabelPaint());
+            drawLabel(target, axisLabels[0], left + width / 2, bottom + 30, PaintManager.PAINT_CHART_LABEL);
             if (axisLabels.length > 1) {
-                canvas.save();
-                canvas.rotate(-90, left - 30, top + height / 2);
-                canvas.drawText(axisLabels[1], left - 30, top + height / 2, paints.getChartLabelPaint());
-                canvas.restore();
+                target.saveAndRotate(-90, left - 30, top + height / 2);
+                drawLabel(target, axisLabels[1], left - 30, top + height / 2, PaintManager.PAINT_CHART_LABEL);
+                target.restore();
             }
         }
     }
+
+    /** The chart area below the title, replayed from a recording made during layout. */
+    private static class ChartBlock extends LayoutBlock {
+        private final RecordingTarget recording;
+        private final float top;
+
+        ChartBlock(RecordingTarget recording, float top) {
+            this.recording = recording;
+            this.top = top;
+        }
+
+        @Override
+        public void paint(RenderTarget target) {
+            recording.replay(target, top);
+        }
+    }
 }
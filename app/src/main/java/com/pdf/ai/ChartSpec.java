@@ -0,0 +1,327 @@
+package com.pdf.ai;
+
+import java.util.Locale;
+
+/**
+ * A {@code [[CHART|type|title|...]]} block parsed once into primitive series, with the value
+ * bounds and axis tick labels every chart type draws from already worked out. Malformed data is
+ * rejected here, at layout time, with an {@link IllegalArgumentException}.
+ *
+ * <p>Series by type: bar and pie use {@link #labels}/{@link #values}; line and scatter use
+ * {@link #xs}/{@link #ys}; bar-line uses {@link #labels}/{@link #values} for the bars and
+ * {@link #ys} for the line.
+ */
+final class ChartSpec {
+    static final int TICK_COUNT = 5;
+
+    private static final String[] NO_STRINGS = new String[0];
+    private static final float[] NO_VALUES = new float[0];
+
+    final String type;
+    final String title;
+    final String[] axisLabels;
+    final String[] labels;
+    final float[] values;
+    final float[] xs;
+    final float[] ys;
+    /** Index in the parsed series of each xs/ys point, or null if the series was not reduced. */
+    private final int[] pointIndices;
+    /** Binned scatter only: how many parsed points each xs/ys point stands for, else null. */
+    private final int[] pointCounts;
+    /** Largest of pointCounts, 1 if there are none. */
+    final int maxPointCount;
+
+    /** Bounds of xs/ys, widened by one where a series is flat so scaling never divides by zero. */
+    final float minX;
+    final float maxX;
+    final float minY;
+    final float maxY;
+    /** Largest of values, or 1 if that is 0. */
+    final float maxValue;
+    /** Sum of values, the whole of a pie. */
+    final float total;
+
+    /** Tick labels bottom-up for the y axis (right axis for bar-line) and left-right for the x axis. */
+    final String[] yTickLabels;
+    final String[] xTickLabels;
+    /** Bar-line only: labels of the left bar axis. */
+    final String[] valueTickLabels;
+    /** Pie only: legend entries with their values. */
+    final String[] legendLabels;
+
+    private ChartSpec(Builder b) {
+        type = b.type;
+        title = b.title;
+        axisLabels = b.axisLabels;
+        labels = b.labels;
+        values = b.values;
+        xs = b.xs;
+        ys = b.ys;
+        pointIndices = null;
+        pointCounts = null;
+        maxPointCount = 1;
+
+        float[] xBounds = bounds(xs);
+        float[] yBounds = bounds(ys);
+        minX = xBounds[0];
+        maxX = xBounds[1];
+        minY = yBounds[0];
+        maxY = yBounds[1];
+        float max = 0f;
+        float sum = 0f;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] > max) max = values[i];
+            sum += values[i];
+        }
+        maxValue = max == 0 ? 1 : max;
+        total = sum;
+
+        yTickLabels = ticks(minY, maxY, TICK_COUNT, "%.1f");
+        int xTicks = Math.max(1, Math.min(xs.length - 1, TICK_COUNT));
+        xTickLabels = ticks(minX, maxX, xTicks, "%.1f");
+        valueTickLabels = ticks(0, maxValue, TICK_COUNT, "%.0f");
+        if ("pie".equals(type)) {
+            legendLabels = new String[labels.length];
+            for (int i = 0; i < labels.length; i++) {
+                legendLabels[i] = labels[i] + String.format(" (%.0f)", values[i]);
+            }
+        } else {
+            legendLabels = NO_STRINGS;
+        }
+    }
+
+    /** A copy drawing a reduced xs/ys series, keeping the bounds and ticks of the full data. */
+    private ChartSpec(ChartSpec full, float[] xs, float[] ys, int[] pointIndices, int[] pointCounts) {
+        type = full.type;
+        title = full.title;
+        axisLabels = full.axisLabels;
+        labels = full.labels;
+        values = full.values;
+        this.xs = xs;
+        this.ys = ys;
+        this.pointIndices = pointIndices;
+        this.pointCounts = pointCounts;
+        int maxCount = 1;
+        if (pointCounts != null) {
+            for (int count : pointCounts) {
+                maxCount = Math.max(maxCount, count);
+            }
+        }
+        maxPointCount = maxCount;
+        minX = full.minX;
+        maxX = full.maxX;
+        minY = full.minY;
+        maxY = full.maxY;
+        maxValue = full.maxValue;
+        total = full.total;
+        yTickLabels = full.yTickLabels;
+        xTickLabels = full.xTickLabels;
+        valueTickLabels = full.valueTickLabels;
+        legendLabels = full.legendLabels;
+    }
+
+    /**
+     * Reduces a line or scatter series to what a plot of {@code width} x {@code height} points can
+     * show, see {@link ChartDownsampler}. Other chart types are returned unchanged.
+     */
+    ChartSpec downsampled(float width, float height, float lineSpacing, float scatterCell) {
+        int[] kept = null;
+        int[] counts = null;
+        if ("line".equals(type)) {
+            kept = ChartDownsampler.lttb(xs, ys, (int) (width / lineSpacing));
+        } else if ("scatter".equals(type)) {
+            ChartDownsampler.Bins bins = ChartDownsampler.binPoints(xs, ys, minX, maxX, minY, maxY,
+                    (int) (width / scatterCell), (int) (height / scatterCell));
+            if (bins != null) {
+                kept = bins.indices;
+                counts = bins.counts;
+            }
+        }
+        if (kept == null) return this;
+        return new ChartSpec(this, ChartDownsampler.select(xs, kept), ChartDownsampler.select(ys, kept), kept, counts);
+    }
+
+    /** Index in the parsed series of xs/ys point {@code i}, so styling follows the data, not the reduction. */
+    int sourceIndex(int i) {
+        return pointIndices == null ? i : pointIndices[i];
+    }
+
+    /** Number of parsed points xs/ys point {@code i} stands for; 1 unless the scatter was binned. */
+    int pointCount(int i) {
+        return pointCounts == null ? 1 : pointCounts[i];
+    }
+
+    static ChartSpec parse(String block) {
+        Fields fields = new Fields(block);
+        if (fields.count < 4) throw new IllegalArgumentException("Invalid chart format: Not enough parts.");
+
+        Builder b = new Builder();
+        b.type = fields.string(0).toLowerCase(Locale.ROOT);
+        b.title = fields.string(1);
+        switch (b.type) {
+            case "bar":
+            case "pie":
+                b.labels = fields.strings(2);
+                b.values = fields.floats(3);
+                if (b.labels.length != b.values.length || b.values.length == 0) {
+                    throw new IllegalArgumentException(("bar".equals(b.type) ? "Bar" : "Pie") + " chart data mismatch or is empty.");
+                }
+                break;
+            case "line":
+                if (fields.count < 6) throw new IllegalArgumentException("Line chart requires 6 parts.");
+                b.axisLabels = fields.cells(2);
+                b.xs = fields.floats(4);
+                b.ys = fields.floats(5);
+                if (b.xs.length != b.ys.length || b.xs.length == 0) {
+                    throw new IllegalArgumentException("Line chart data mismatch or is empty.");
+                }
+                break;
+            case "scatter":
+                if (fields.count < 5) throw new IllegalArgumentException("Scatter plot requires at least 5 parts.");
+                b.axisLabels = fields.cells(2);
+                fields.points(4, b);
+                break;
+            case "bar-line":
+                if (fields.count < 7) throw new IllegalArgumentException("Combined chart requires 7 parts.");
+                b.labels = fields.strings(4);
+                b.values = fields.floats(5);
+                b.ys = fields.floats(6);
+                if (b.labels.length != b.values.length || b.labels.length != b.ys.length || b.labels.length == 0) {
+                    throw new IllegalArgumentException("Combined chart data mismatch or is empty.");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported chart type: " + b.type);
+        }
+        return new ChartSpec(b);
+    }
+
+    /** {min, max} of a series, or {0, 1} if it is empty; max is raised by one if they are equal. */
+    private static float[] bounds(float[] series) {
+        if (series.length == 0) return new float[]{0f, 1f};
+        float min = series[0];
+        float max = series[0];
+        for (float v : series) {
+            if (v < min) min = v;
+            if (v > max) max = v;
+        }
+        if (max == min) max += 1;
+        return new float[]{min, max};
+    }
+
+    private static String[] ticks(float min, float max, int count, String format) {
+        String[] ticks = new String[count + 1];
+        for (int i = 0; i <= count; i++) {
+            ticks[i] = String.format(format, min + i * (max - min) / count);
+        }
+        return ticks;
+    }
+
+    private static final class Builder {
+        String type;
+        String title;
+        String[] axisLabels = NO_STRINGS;
+        String[] labels = NO_STRINGS;
+        float[] values = NO_VALUES;
+        float[] xs = NO_VALUES;
+        float[] ys = NO_VALUES;
+    }
+
+    /** Field offsets of the block, found with one pass of a {@link BlockTokenizer}. */
+    private static final class Fields {
+        private final BlockTokenizer tokenizer;
+        private int[] starts = new int[8];
+        final int count;
+
+        Fields(String source) {
+            tokenizer = new BlockTokenizer(source, BlockTokenizer.CHART_PREFIX);
+            int n = 0;
+            while (tokenizer.next()) {
+                if (n == starts.length) {
+                    int[] grown = new int[starts.length * 2];
+                    System.arraycopy(starts, 0, grown, 0, starts.length);
+                    starts = grown;
+                }
+                starts[n++] = tokenizer.getFieldStart();
+            }
+            count = n;
+        }
+
+        BlockTokenizer select(int field) {
+            tokenizer.seek(starts[field]);
+            tokenizer.next();
+            return tokenizer;
+        }
+
+        String string(int field) {
+            return select(field).getField();
+        }
+
+        String[] cells(int field) {
+            BlockTokenizer t = select(field);
+            String[] cells = new String[t.getCellCount()];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = t.getCell(i);
+            }
+            return cells;
+        }
+
+        /** Non-empty cells of a field. */
+        String[] strings(int field) {
+            BlockTokenizer t = select(field);
+            String[] out = new String[t.getCellCount()];
+            int n = 0;
+            for (int i = 0; i < t.getCellCount(); i++) {
+                if (t.getCellEnd(i) > t.getCellStart(i)) out[n++] = t.getCell(i);
+            }
+            return n == out.length ? out : copyOf(out, n);
+        }
+
+        /** Numeric cells of a field; empty and malformed cells are skipped. */
+        float[] floats(int field) {
+            BlockTokenizer t = select(field);
+            float[] out = new float[t.getCellCount()];
+            int n = 0;
+            for (int i = 0; i < t.getCellCount(); i++) {
+                if (t.getCellEnd(i) == t.getCellStart(i)) continue;
+                try {
+                    out[n] = t.getCellFloat(i);
+                    n++;
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            return n == out.length ? out : copyOf(out, n);
+        }
+
+        /** "x,y" pairs in fields {@code first} onwards; fields that are not a valid pair are skipped. */
+        void points(int first, Builder b) {
+            float[] xs = new float[count - first];
+            float[] ys = new float[count - first];
+            int n = 0;
+            for (int field = first; field < count; field++) {
+                BlockTokenizer t = select(field);
+                if (t.getCellCount() != 2) continue;
+                try {
+                    xs[n] = t.getCellFloat(0);
+                    ys[n] = t.getCellFloat(1);
+                    n++;
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            b.xs = n == xs.length ? xs : copyOf(xs, n);
+            b.ys = n == ys.length ? ys : copyOf(ys, n);
+        }
+
+        private static float[] copyOf(float[] a, int n) {
+            float[] out = new float[n];
+            System.arraycopy(a, 0, out, 0, n);
+            return out;
+        }
+
+        private static String[] copyOf(String[] a, int n) {
+            String[] out = new String[n];
+            System.arraycopy(a, 0, out, 0, n);
+            return out;
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.pdf.ai;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.View;
 import android.widget.EditText;
 import android.widget.ImageView;
@@ -18,9 +21,12 @@ import com.google.android.material.chip.Chip;
 import com.pdf.ai.MessageAdapter;
 import com.pdf.ai.manager.ConversationManager;
 import com.pdf.ai.manager.ModelsManager;
+import com.pdf.ai.manager.SectionScheduler;
 import com.pdf.ai.model.Conversation;
 import com.pdf.ai.model.ConversationMessage;
 import com.pdf.ai.model.LLMModel;
+import com.pdf.ai.provider.GenerationHandle;
+import com.pdf.ai.provider.HttpRuntime;
 import com.pdf.ai.provider.LLMProvider;
 import com.pdf.ai.provider.ProviderFactory;
 import com.pdf.ai.ui.interaction.OnOutlineActionListener;
@@ -61,7 +67,8 @@ public class ChatActivity extends AppCompatActivity implements
 
     private OutlineData currentOutlineData;
     private boolean isGenerating = false;
-    private List<String> currentPdfSectionsContent;
+    private PdfGenerator.Session pdfSession;
+    private SectionScheduler sectionScheduler;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -70,7 +77,8 @@ public class ChatActivity extends AppCompatActivity implements
 
         conversationManager = new ConversationManager(this);
         modelsManager = ModelsManager.getInstance(this);
-        pdfGenerator = new PdfGenerator(this);
+        // Fonts load in the background; the generator itself is only built once a PDF is needed
+        PaintRegistry.getInstance(this).preload();
         executorService = Executors.newSingleThreadExecutor();
 
         conversationId = getIntent().getStringExtra("conversation_id");
@@ -107,6 +115,22 @@ public class ChatActivity extends AppCompatActivity implements
             }
         });
 
+        // Connect to the provider while the prompt is still being typed
+        messageEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                if (s.length() > 0) prewarmProvider();
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+            }
+        });
+
         modelPickerLayout.setOnClickListener(v -> showModelPicker());
 
         backIcon.setOnClickListener(v -> {
@@ -135,6 +159,15 @@ public class ChatActivity extends AppCompatActivity implements
         });
     }
 
+    private void prewarmProvider() {
+        if (llmProvider == null) {
+            llmProvider = ProviderFactory.create(selectedProvider, getApiKeyIfNeeded());
+        }
+        if (llmProvider != null) {
+            HttpRuntime.get().prewarm(llmProvider);
+        }
+    }
+
     @Override
     protected void onPause() {
         super.onPause();
@@ -144,6 +177,9 @@ public class ChatActivity extends AppCompatActivity implements
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        if (sectionScheduler != null) {
+            sectionScheduler.cancel();
+        }
         if (executorService != null && !executorService.isShutdown()) {
             executorService.shutdownNow();
         }
@@ -313,7 +349,10 @@ public class ChatActivity extends AppCompatActivity implements
         conversationManager.setSelectedModel(modelId);
         updateModelDisplay();
 
-        llmProvider = ProviderFactory.create(provider);
+        llmProvider = ProviderFactory.create(provider, getApiKeyIfNeeded());
+        if (llmProvider != null) {
+            HttpRuntime.get().prewarm(llmProvider);
+        }
     }
 
     private void sendMessage(String message) {
@@ -473,98 +512,109 @@ public class ChatActivity extends AppCompatActivity implements
     }
 
     private void startPdfGeneration(OutlineData approvedOutline) {
-        currentPdfSectionsContent = new ArrayList<>();
-        runOnUiThread(() -> showProgressMessage("Writing: " + approvedOutline.getSections().get(0) + " (0%)", 0));
-        generateSectionContent(approvedOutline, 0);
-    }
-
-    private void generateSectionContent(OutlineData outlineData, int sectionIndex) {
-        if (sectionIndex >= outlineData.getSections().size()) {
-            runOnUiThread(() -> updateProgressMessage("Finalizing PDF...", 100));
-
-            pdfGenerator.createPdf(outlineData.getPdfTitle(), outlineData, currentPdfSectionsContent, new PdfGenerator.PdfGenerationCallback() {
-                @Override
-                public void onPdfGenerated(String pathOrUri, String pdfTitle) {
-                    runOnUiThread(() -> {
-                        removeProgressMessage();
-                        String cleanedTitle = pdfTitle.replace("A comprehensive", "").trim();
-                        Toast.makeText(ChatActivity.this, "PDF created successfully", Toast.LENGTH_LONG).show();
-                        chatMessages.add(new ChatMessage(ChatMessage.TYPE_PDF_DOWNLOAD, null, null, null, pathOrUri, cleanedTitle));
-                        messageAdapter.notifyItemInserted(chatMessages.size() - 1);
-                        scrollToBottom();
-                        saveConversation();
-                    });
-                }
-
-                @Override
-                public void onPdfGenerationFailed(String error) {
-                    runOnUiThread(() -> {
-                        removeProgressMessage();
-                        Toast.makeText(ChatActivity.this, "Error creating PDF: " + error, Toast.LENGTH_LONG).show();
-                    });
-                }
-            });
-            isGenerating = false;
-            return;
+        if (pdfGenerator == null) {
+            pdfGenerator = new PdfGenerator(this);
         }
-
-        String sectionTitle = outlineData.getSections().get(sectionIndex);
-        int totalSections = outlineData.getSections().size();
-        int progress = (int) (((float) sectionIndex / totalSections) * 100);
-
-        runOnUiThread(() -> updateProgressMessage("Writing: " + sectionTitle + " (" + progress + "%)", progress));
-
         if (llmProvider == null) {
             llmProvider = ProviderFactory.create(selectedProvider, getApiKeyIfNeeded());
-            if (llmProvider == null) {
-                runOnUiThread(() -> updateProgressMessage("Provider not configured", progress));
-                isGenerating = false;
-                return;
-            }
         }
+        if (llmProvider == null) {
+            runOnUiThread(() -> showProgressMessage("Provider not configured", 0));
+            isGenerating = false;
+            return;
+        }
+        LLMProvider provider = llmProvider;
+        List<String> sections = approvedOutline.getSections();
+        int totalSections = sections.size();
+
+        // Sections are laid out as soon as each one finishes streaming, in whatever order they finish
+        pdfSession = pdfGenerator.begin(approvedOutline.getPdfTitle(), approvedOutline);
+        PdfGenerator.Session session = pdfSession;
+        runOnUiThread(() -> showProgressMessage("Writing: " + sections.get(0) + " (0%)", 0));
+
+        sectionScheduler = new SectionScheduler(totalSections, provider.getMaxConcurrentRequests(),
+                (index, callback) -> generateSectionContent(provider, approvedOutline, index, callback),
+                new SectionScheduler.Listener() {
+                    @Override
+                    public void onSectionStarted(int index, int attempt) {
+                        String retry = attempt > 1 ? " (retry " + (attempt - 1) + ")" : "";
+                        int progress = (int) (((float) sectionScheduler.getCompletedCount() / totalSections) * 100);
+                        runOnUiThread(() -> updateProgressMessage("Writing: " + sections.get(index) + retry + " (" + progress + "%)", progress));
+                    }
 
-        String sectionPrompt = buildSectionPrompt(outlineData.getPdfTitle(), sectionTitle, outlineData.getSections(), sectionIndex);
-
-        List<Map<String, String>> messages = new ArrayList<>();
-        messages.add(createSystemMessage("You are a professional PDF content writer. Write detailed, well-structured content in markdown format."));
-        messages.add(createUserMessage(sectionPrompt));
-
-        Map<String, Object> options = new HashMap<>();
-        options.put("thinkingEnabled", thinkingEnabled);
+                    @Override
+                    public void onSectionProgress(int index, int charsReceived) {
+                    }
 
-        final StringBuilder sectionContent = new StringBuilder();
+                    @Override
+                    public void onSectionCompleted(int index, String content) {
+                        session.appendSection(index, MarkdownParser.normalize(content));
+                        int done = sectionScheduler.getCompletedCount();
+                        int progress = (int) (((float) done / totalSections) * 100);
+                        runOnUiThread(() -> updateProgressMessage("Written " + done + " of " + totalSections + " sections (" + progress + "%)", progress));
+                    }
 
-        llmProvider.generateStream(messages, selectedModelId, options, new LLMProvider.StreamCallback() {
-            @Override
-            public void onText(String text) {
-                sectionContent.append(text);
-            }
+                    @Override
+                    public void onSectionFailed(int index, int attempt, String error, boolean retrying) {
+                        Log.w("ChatActivity", "Section " + index + " attempt " + attempt + " failed: " + error);
+                    }
 
-            @Override
-            public void onThinking(String thinking) {
-            }
+                    @Override
+                    public void onFinished(String[] contents, List<Integer> failedSections) {
+                        executorService.execute(() -> finishPdf(session, totalSections, failedSections));
+                    }
+                });
+        sectionScheduler.start();
+    }
 
-            @Override
-            public void onToolCall(String id, String name, String arguments) {
-            }
+    private void finishPdf(PdfGenerator.Session session, int totalSections, List<Integer> failedSections) {
+        if (failedSections.size() == totalSections) {
+            session.cancel();
+            runOnUiThread(() -> updateProgressMessage("Error generating sections", 0));
+            isGenerating = false;
+            return;
+        }
+        runOnUiThread(() -> updateProgressMessage("Finalizing PDF...", 100));
 
+        session.finish(new PdfGenerator.PdfGenerationCallback() {
             @Override
-            public void onComplete() {
+            public void onPdfGenerated(String pathOrUri, String pdfTitle) {
                 runOnUiThread(() -> {
-                    String cleanedContent = MarkdownParser.normalize(sectionContent.toString());
-                    currentPdfSectionsContent.add(cleanedContent);
-                    executorService.execute(() -> generateSectionContent(outlineData, sectionIndex + 1));
+                    removeProgressMessage();
+                    String cleanedTitle = pdfTitle.replace("A comprehensive", "").trim();
+                    String message = failedSections.isEmpty() ? "PDF created successfully"
+                            : "PDF created; " + failedSections.size() + " section(s) could not be generated";
+                    Toast.makeText(ChatActivity.this, message, Toast.LENGTH_LONG).show();
+                    chatMessages.add(new ChatMessage(ChatMessage.TYPE_PDF_DOWNLOAD, null, null, null, pathOrUri, cleanedTitle));
+                    messageAdapter.notifyItemInserted(chatMessages.size() - 1);
+                    scrollToBottom();
+                    saveConversation();
                 });
             }
 
             @Override
-            public void onError(String error) {
+            public void onPdfGenerationFailed(String error) {
                 runOnUiThread(() -> {
-                    updateProgressMessage("Error generating " + sectionTitle + ": " + error, progress);
-                    isGenerating = false;
+                    removeProgressMessage();
+                    Toast.makeText(ChatActivity.this, "Error creating PDF: " + error, Toast.LENGTH_LONG).show();
                 });
             }
         });
+        isGenerating = false;
+    }
+
+    private GenerationHandle generateSectionContent(LLMProvider provider, OutlineData outlineData, int sectionIndex, LLMProvider.StreamCallback callback) {
+        String sectionTitle = outlineData.getSections().get(sectionIndex);
+        String sectionPrompt = buildSectionPrompt(outlineData.getPdfTitle(), sectionTitle, outlineData.getSections(), sectionIndex);
+
+        List<Map<String, String>> messages = new ArrayList<>();
+        messages.add(createSystemMessage("You are a professional PDF content writer. Write detailed, well-structured content in markdown format."));
+        messages.add(createUserMessage(sectionPrompt));
+
+        Map<String, Object> options = new HashMap<>();
+        options.put("thinkingEnabled", thinkingEnabled);
+
+        return provider.generateStream(messages, selectedModelId, options, callback);
     }
 
     private String buildSectionPrompt(String pdfTitle, String sectionTitle, List<String> allSections, int currentIndex) {
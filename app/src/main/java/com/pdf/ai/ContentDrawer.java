@@ -1,10 +1,31 @@
 package com.pdf.ai;
 
-import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.pdf.PdfDocument;
 
-import java.util.List;
+import com.pdf.ai.util.MarkdownParser;
+
+import org.commonmark.node.AbstractVisitor;
+import org.commonmark.node.BlockQuote;
+import org.commonmark.node.BulletList;
+import org.commonmark.node.Code;
+import org.commonmark.node.Document;
+import org.commonmark.node.Emphasis;
+import org.commonmark.node.FencedCodeBlock;
+import org.commonmark.node.HardLineBreak;
+import org.commonmark.node.Heading;
+import org.commonmark.node.HtmlBlock;
+import org.commonmark.node.HtmlInline;
+import org.commonmark.node.IndentedCodeBlock;
+import org.commonmark.node.ListBlock;
+import org.commonmark.node.ListItem;
+import org.commonmark.node.Node;
+import org.commonmark.node.OrderedList;
+import org.commonmark.node.Paragraph;
+import org.commonmark.node.SoftLineBreak;
+import org.commonmark.node.StrongEmphasis;
+import org.commonmark.node.Text;
+import org.commonmark.node.ThematicBreak;
+
+import java.util.Arrays;
 
 public class ContentDrawer {
 
@@ -14,84 +35,220 @@ public class ContentDrawer {
     private final ChartRenderer chartRenderer;
     private final TableRenderer tableRenderer;
 
-    public ContentDrawer(PaintManager paintManager) {
+    public ContentDrawer(PaintManager paintManager, TextMeasureCache measureCache) {
         this.paints = paintManager;
-        this.textRenderer = new TextRenderer(paintManager);
+        this.textRenderer = new TextRenderer(paintManager, measureCache);
         this.chartRenderer = new ChartRenderer(paintManager);
-        this.tableRenderer = new TableRenderer(paintManager);
+        this.tableRenderer = new TableRenderer(paintManager, measureCache);
     }
 
-    public Object[] drawSection(PdfDocument document, PdfDocument.Page page, String sectionTitle, String sectionContent, float yPos, int currentPageNum, boolean includeSectionTitle) {
-        Object[] result = new Object[]{page, yPos, currentPageNum};
-        float currentY = yPos;
-        PdfDocument.Page currentPage = page;
-
+    public void layoutSection(LayoutCursor cursor, String sectionTitle, String sectionContent, boolean includeSectionTitle) {
         if (includeSectionTitle) {
-            result = textRenderer.drawSectionTitle(document, currentPage, sectionTitle, currentY, currentPageNum);
-            currentPage = (PdfDocument.Page) result[0];
-            currentY = (float) result[1];
-            currentPageNum = (int) result[2];
-        }
-
-        String[] contentBlocks = sectionContent.split("\n\\s*\n");
-        for (String block : contentBlocks) {
-            if (block.trim().isEmpty()) continue;
-            String trimmedBlock = block.trim();
-
-            if (trimmedBlock.equals(sectionTitle) ||
-                    trimmedBlock.equals("# " + sectionTitle) ||
-                    trimmedBlock.equals("## " + sectionTitle) ||
-                    trimmedBlock.equals("### " + sectionTitle)) {
-                continue;
-            }
+            textRenderer.layoutSectionTitle(cursor, sectionTitle);
+        }
+
+        String markdown = MarkdownParser.normalize(sectionContent);
+        Node document = MarkdownParser.parseNormalized(markdown);
+        document.accept(new SectionVisitor(cursor, InlineLexer.strip(sectionTitle, paints).trim(), markdown));
+    }
+
+    /** Walks a section's markdown tree once and lays out each block as it is reached. */
+    private class SectionVisitor extends AbstractVisitor {
+        private final LayoutCursor cursor;
+        private final String sectionTitle;
+        private final String markdown;
+        private String[] sourceLines;
+
+        private float indent = 0;
+        private float[] quoteBars = TextRenderer.NO_QUOTE_BARS;
+        private String pendingPrefix = "";
+
+        SectionVisitor(LayoutCursor cursor, String sectionTitle, String markdown) {
+            this.cursor = cursor;
+            this.sectionTitle = sectionTitle;
+            this.markdown = markdown;
+        }
 
-            if (trimmedBlock.startsWith("[[TABLE")) {
-                result = tableRenderer.drawTable(document, currentPage, trimmedBlock, currentY, currentPageNum);
-            } else if (trimmedBlock.startsWith("[[CHART")) {
-                result = chartRenderer.drawChart(document, currentPage, trimmedBlock, currentY, currentPageNum);
+        @Override
+        public void visit(Heading heading) {
+            String text = collectInlines(heading, PaintManager.PAINT_TEXT, false).getText();
+            // The section title is already drawn above the content
+            if (isTopLevel(heading) && text.trim().equals(sectionTitle)) return;
+            textRenderer.layoutHeading(cursor, heading.getLevel(), text, pendingPrefix, indent, quoteBars);
+            pendingPrefix = "";
+        }
+
+        @Override
+        public void visit(Paragraph paragraph) {
+            String source = null;
+            if (paragraph.getFirstChild() instanceof Text && ((Text) paragraph.getFirstChild()).getLiteral().startsWith("[[")) {
+                source = sourceOf(paragraph).trim();
+            }
+            if (source != null && source.startsWith("[[TABLE")) {
+                tableRenderer.layoutTable(cursor, source);
+            } else if (source != null && source.startsWith("[[CHART")) {
+                chartRenderer.layoutChart(cursor, source);
             } else {
-                result = textRenderer.drawTextBlock(document, currentPage, trimmedBlock, currentY, currentPageNum);
+                StyledText text = collectInlines(paragraph, PaintManager.PAINT_TEXT, true);
+                if (isTopLevel(paragraph) && text.getText().trim().equals(sectionTitle)) return;
+                textRenderer.layoutParagraph(cursor, text, pendingPrefix, indent, quoteBars);
+                if (!isInTightList(paragraph)) {
+                    cursor.advance(PaintManager.PARAGRAPH_SPACING);
+                }
             }
-            currentPage = (PdfDocument.Page) result[0];
-            currentY = (float) result[1];
-            currentPageNum = (int) result[2];
+            pendingPrefix = "";
         }
-        return new Object[]{currentPage, currentY, currentPageNum};
-    }
 
-    private Object[] drawSectionTitle(PdfDocument document, PdfDocument.Page page, String title, float yPos, int currentPageNum) {
-        return textRenderer.drawSectionTitle(document, page, title, yPos, currentPageNum);
-    }
+        @Override
+        public void visit(BulletList bulletList) {
+            layoutList(bulletList, -1);
+        }
 
-    private Object[] drawTextBlock(PdfDocument document, PdfDocument.Page page, String text, float yPos, int currentPageNum) {
-        return textRenderer.drawTextBlock(document, page, text, yPos, currentPageNum);
-    }
+        @Override
+        public void visit(OrderedList orderedList) {
+            Integer start = orderedList.getMarkerStartNumber();
+            layoutList(orderedList, start != null ? start : 1);
+        }
 
-    private Object[] drawChart(PdfDocument document, PdfDocument.Page page, String chartString, float yPos, int currentPageNum) {
-        return chartRenderer.drawChart(document, page, chartString, yPos, currentPageNum);
-    }
+        private void layoutList(ListBlock list, int number) {
+            indent += PaintManager.LIST_ITEM_INDENT;
+            for (Node item = list.getFirstChild(); item != null; item = item.getNext()) {
+                pendingPrefix = number < 0 ? "• " : (number++) + ". ";
+                visitChildren(item);
+            }
+            indent -= PaintManager.LIST_ITEM_INDENT;
+            pendingPrefix = "";
+            // Loose list items already end with paragraph spacing; a nested tight list belongs to its item
+            if (list.isTight() && !(list.getParent() instanceof ListItem)) {
+                cursor.advance(PaintManager.PARAGRAPH_SPACING);
+            }
+        }
 
-    private void drawBarChart(Canvas canvas, String[] parts, float yPos) {
-        // Deprecated: Charts now handled by ChartRenderer
-    }
+        @Override
+        public void visit(BlockQuote blockQuote) {
+            float[] outerBars = quoteBars;
+            quoteBars = Arrays.copyOf(outerBars, outerBars.length + 1);
+            quoteBars[outerBars.length] = PaintManager.MARGIN + indent;
+            indent += PaintManager.LIST_ITEM_INDENT;
+            visitChildren(blockQuote);
+            indent -= PaintManager.LIST_ITEM_INDENT;
+            quoteBars = outerBars;
+        }
 
-    private void drawPieChart(Canvas canvas, String[] parts, float yPos) {
-        // Deprecated: Charts now handled by ChartRenderer
-    }
+        @Override
+        public void visit(FencedCodeBlock codeBlock) {
+            layoutCode(codeBlock.getLiteral());
+        }
 
-    private void drawLineChart(Canvas canvas, String[] parts, float yPos) {
-        // Deprecated: Charts now handled by ChartRenderer
-    }
+        @Override
+        public void visit(IndentedCodeBlock codeBlock) {
+            layoutCode(codeBlock.getLiteral());
+        }
+
+        private void layoutCode(String code) {
+            textRenderer.layoutCodeBlock(cursor, code, indent, quoteBars);
+            cursor.advance(PaintManager.PARAGRAPH_SPACING);
+            pendingPrefix = "";
+        }
+
+        @Override
+        public void visit(ThematicBreak thematicBreak) {
+            textRenderer.layoutThematicBreak(cursor, indent);
+            pendingPrefix = "";
+        }
+
+        @Override
+        public void visit(HtmlBlock htmlBlock) {
+            textRenderer.layoutParagraph(cursor, StyledText.plain(htmlBlock.getLiteral().trim(), PaintManager.PAINT_TEXT),
+                    pendingPrefix, indent, quoteBars);
+            cursor.advance(PaintManager.PARAGRAPH_SPACING);
+            pendingPrefix = "";
+        }
+
+        private boolean isTopLevel(Node block) {
+            return block.getParent() instanceof Document;
+        }
+
+        private boolean isInTightList(Node block) {
+            Node parent = block.getParent();
+            return parent instanceof ListItem && ((ListBlock) parent.getParent()).isTight();
+        }
 
-    private void drawScatterPlot(Canvas canvas, String[] parts, float yPos) {
-        // Deprecated: Charts now handled by ChartRenderer
+        private String sourceOf(Node block) {
+            if (sourceLines == null) {
+                sourceLines = markdown.split("\n", -1);
+            }
+            return MarkdownParser.sourceOf(block, sourceLines);
+        }
     }
 
-    private void drawCombinedChart(Canvas canvas, String[] parts, float yPos) {
-        // Deprecated: Charts now handled by ChartRenderer
+    private StyledText collectInlines(Node block, int basePaintId, boolean styled) {
+        return new InlineCollector(basePaintId, styled).collect(block);
     }
 
-    private void drawChartAxesAndGrid(Canvas canvas, float left, float top, float width, float height, List<Float> xData, List<Float> yData, String[] axisLabels) {
-        // Deprecated: Charts now handled by ChartRenderer
+    /** Flattens inline nodes into styled runs: strong emphasis is bold, emphasis is italic. */
+    private class InlineCollector extends AbstractVisitor {
+        private final StyledText.Builder builder;
+        private final int basePaintId;
+        private final boolean styled;
+        private int strongDepth;
+        private int emphasisDepth;
+
+        InlineCollector(int basePaintId, boolean styled) {
+            this.builder = new StyledText.Builder(basePaintId);
+            this.basePaintId = basePaintId;
+            this.styled = styled;
+        }
+
+        @Override
+        public void visit(Text text) {
+            builder.append(text.getLiteral(), currentPaintId());
+        }
+
+        @Override
+        public void visit(Code code) {
+            builder.append(code.getLiteral(), currentPaintId());
+        }
+
+        @Override
+        public void visit(HtmlInline htmlInline) {
+            builder.append(htmlInline.getLiteral(), currentPaintId());
+        }
+
+        @Override
+        public void visit(SoftLineBreak softLineBreak) {
+            builder.append(" ");
+        }
+
+        @Override
+        public void visit(HardLineBreak hardLineBreak) {
+            builder.append("\n");
+        }
+
+        @Override
+        public void visit(StrongEmphasis strongEmphasis) {
+            strongDepth++;
+            visitChildren(strongEmphasis);
+            strongDepth--;
+        }
+
+        @Override
+        public void visit(Emphasis emphasis) {
+            emphasisDepth++;
+            visitChildren(emphasis);
+            emphasisDepth--;
+        }
+
+        StyledText collect(Node block) {
+            visitChildren(block);
+            return builder.build();
+        }
+
+        private int currentPaintId() {
+            if (!styled) return basePaintId;
+            if (strongDepth > 0) return paints.getBoldVariant(basePaintId);
+            if (emphasisDepth > 0) return paints.getItalicVariant(basePaintId);
+            return basePaintId;
+        }
     }
 }
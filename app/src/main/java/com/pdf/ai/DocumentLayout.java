@@ -0,0 +1,39 @@
+package com.pdf.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of the layout pass: every content page with its measured blocks, plus the table of
+ * contents entries. Sections are added in outline order; each section's first page number is the
+ * running sum of the page counts before it.
+ */
+public class DocumentLayout {
+
+    // Page 1 is the cover, page 2 the table of contents
+    public static final int FIRST_CONTENT_PAGE = 3;
+
+    private final List<LayoutPage> pages = new ArrayList<>();
+    private final List<TocItem> tocItems = new ArrayList<>();
+
+    /** Appends the section's pages after the ones already added and records its TOC entry. */
+    public void addSection(SectionLayout section) {
+        int firstPage = FIRST_CONTENT_PAGE + pages.size();
+        pages.addAll(section.getPages());
+        // The logical page number printed in the TOC is physical page - 2
+        tocItems.add(new TocItem(section.getTitle(), firstPage - 2, PaintManager.MARGIN));
+    }
+
+    public List<LayoutPage> getPages() {
+        return pages;
+    }
+
+    /** Physical page number of the page at {@code index} in {@link #getPages()}. */
+    public int getPageNumber(int index) {
+        return FIRST_CONTENT_PAGE + index;
+    }
+
+    public List<TocItem> getTocItems() {
+        return tocItems;
+    }
+}
@@ -1,7 +1,6 @@
 package com.pdf.ai;
 
 import android.graphics.Paint;
-import android.graphics.Path;
 import android.text.TextPaint;
 import android.text.TextUtils;
 
@@ -11,49 +10,46 @@ import java.util.List;
 public final class DrawUtils {
     private DrawUtils() {}
 
+    private static final ThreadLocal<LineBreaker> LINE_BREAKER = new ThreadLocal<LineBreaker>() {
+        @Override
+        protected LineBreaker initialValue() {
+            return new LineBreaker();
+        }
+    };
+
+    public static LineBreaker lineBreaker() {
+        return LINE_BREAKER.get();
+    }
+
     public static List<String> splitTextIntoLines(String text, Paint paint, float maxWidth) {
         List<String> lines = new ArrayList<>();
         if (text == null || text.isEmpty() || maxWidth <= 0) return lines;
-        String[] words = text.split(" ");
-        StringBuilder currentLine = new StringBuilder();
-        for (String word : words) {
-            String potentialLine = currentLine.length() == 0 ? word : currentLine + " " + word;
-            if (paint.measureText(potentialLine) < maxWidth) {
-                currentLine.append(currentLine.length() == 0 ? "" : " ").append(word);
-            } else {
-                if (currentLine.length() > 0) {
-                    lines.add(currentLine.toString());
-                }
-                currentLine = new StringBuilder(word);
-                while (paint.measureText(currentLine.toString()) > maxWidth) {
-                    int breakPoint = paint.breakText(currentLine.toString(), true, maxWidth, null);
-                    if (breakPoint <= 0) {
-                        lines.add(currentLine.substring(0, 1));
-                        currentLine = new StringBuilder(currentLine.substring(1));
-                    } else {
-                        lines.add(currentLine.substring(0, breakPoint));
-                        currentLine = new StringBuilder(currentLine.substring(breakPoint));
-                    }
-                }
-            }
-        }
-        if (currentLine.length() > 0) {
-            lines.add(currentLine.toString());
+        LineBreaker breaker = LINE_BREAKER.get();
+        int count = breaker.breakLines(text, 0, text.length(), paint, maxWidth);
+        for (int i = 0; i < count; i++) {
+            lines.add(text.substring(breaker.getLineStart(i), breaker.getLineEnd(i)));
         }
         return lines;
     }
 
+    /**
+     * Draws {@code text[start, end)} run by run, each in its own paint, at {@code x} plus the run's
+     * offset from {@link LineBreaker#getRunOffsets}; nothing is measured.
+     */
+    public static void drawStyledText(RenderTarget target, StyledText text, int start, int end, float[] runOffsets, float x, float y) {
+        String s = text.getText();
+        int first = text.findRun(start);
+        for (int run = first; run < text.getRunCount() && text.getRunStart(run) < end; run++) {
+            int from = Math.max(start, text.getRunStart(run));
+            int to = Math.min(end, text.getRunEnd(run));
+            target.drawText(s, from, to, x + runOffsets[run - first], y, text.getRunPaintId(run));
+        }
+    }
+
     public static String truncateText(String text, Paint paint, float maxWidth) {
         if (paint.measureText(text) <= maxWidth) {
             return text;
         }
         return TextUtils.ellipsize(text, (new TextPaint(paint)), maxWidth, TextUtils.TruncateAt.END).toString();
     }
-
-    public static Path createDottedLinePath(float startX, float endX, float y) {
-        Path path = new Path();
-        path.moveTo(startX, y);
-        path.lineTo(endX, y);
-        return path;
-    }
 }
@@ -0,0 +1,17 @@
+package com.pdf.ai;
+
+/** Placeholder drawn where a table or chart could not be parsed. */
+public class ErrorBlock extends LayoutBlock {
+    private final String message;
+    private final float baseline;
+
+    public ErrorBlock(String message, float baseline) {
+        this.message = message;
+        this.baseline = baseline;
+    }
+
+    @Override
+    public void paint(RenderTarget target) {
+        target.drawText(message, 0, message.length(), PaintManager.PAGE_WIDTH / 2f, baseline, PaintManager.PAINT_ERROR);
+    }
+}
@@ -0,0 +1,100 @@
+package com.pdf.ai;
+
+/**
+ * Hand-written lexer for the inline markdown that still reaches rendering as raw text (table
+ * cells, chart and table titles, outline titles). {@code **bold**} / {@code __bold__} and
+ * {@code *italic*} / {@code _italic_} become runs in the base paint's bold and italic variants,
+ * {@code `code`} loses its backticks and a backslash escapes the next marker character.
+ *
+ * <p>Text is copied straight from the source into one buffer; no regex and no substrings. Once a
+ * search for a closing marker fails it is not repeated, which keeps unmatched markers linear.
+ */
+public final class InlineLexer {
+
+    private static final String MARKERS = "*_`";
+
+    private InlineLexer() {
+    }
+
+    public static StyledText lex(CharSequence source, int basePaintId, PaintManager paints) {
+        return lex(source, 0, source.length(), basePaintId, paints);
+    }
+
+    /** Lexes {@code source[start, end)} without copying the range out first. */
+    public static StyledText lex(CharSequence source, int start, int end, int basePaintId, PaintManager paints) {
+        StyledText.Builder out = new StyledText.Builder(basePaintId, end - start);
+        lex(source, start, end, basePaintId, paints, out);
+        return out.build();
+    }
+
+    /** Text without its inline markers, for places that draw a single plain run. */
+    public static String strip(CharSequence source, PaintManager paints) {
+        return lex(source, PaintManager.PAINT_TEXT, paints).getText();
+    }
+
+    private static void lex(CharSequence s, int start, int end, int paintId, PaintManager paints, StyledText.Builder out) {
+        // Bit per marker kind (index in MARKERS, doubled or not) with no closer left in [start, end)
+        int exhausted = 0;
+        int plainStart = start;
+        int i = start;
+        while (i < end) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < end && MARKERS.indexOf(s.charAt(i + 1)) >= 0) {
+                out.append(s, plainStart, i, paintId);
+                plainStart = i + 1;
+                i += 2;
+                continue;
+            }
+            int kind = MARKERS.indexOf(c);
+            if (kind < 0) {
+                i++;
+                continue;
+            }
+
+            int markerLength = c != '`' && i + 1 < end && s.charAt(i + 1) == c ? 2 : 1;
+            int bit = 1 << (kind * 2 + markerLength - 1);
+            int contentStart = i + markerLength;
+            int close = -1;
+            if ((exhausted & bit) == 0 && canOpen(s, i, contentStart, end, c)) {
+                close = findCloser(s, contentStart, end, c, markerLength);
+                if (close < 0) exhausted |= bit;
+            }
+            if (close < 0) {
+                i = contentStart;
+                continue;
+            }
+
+            out.append(s, plainStart, i, paintId);
+            if (c == '`') {
+                out.append(s, contentStart, close, paintId);
+            } else {
+                int styledId = markerLength == 2 ? paints.getBoldVariant(paintId) : paints.getItalicVariant(paintId);
+                lex(s, contentStart, close, styledId, paints, out);
+            }
+            i = close + markerLength;
+            plainStart = i;
+        }
+        out.append(s, plainStart, end, paintId);
+    }
+
+    private static boolean canOpen(CharSequence s, int marker, int contentStart, int end, char c) {
+        if (contentStart >= end || s.charAt(contentStart) == ' ') return false;
+        // snake_case and similar words keep their underscores
+        return c != '_' || marker == 0 || !Character.isLetterOrDigit(s.charAt(marker - 1));
+    }
+
+    private static int findCloser(CharSequence s, int from, int end, char c, int markerLength) {
+        for (int j = from + 1; j + markerLength <= end; j++) {
+            if (s.charAt(j) != c) continue;
+            if (markerLength == 2 && s.charAt(j + 1) != c) continue;
+            if (markerLength == 1 && c != '`' && j + 1 < end && s.charAt(j + 1) == c) {
+                j++;
+                continue;
+            }
+            if (c != '`' && s.charAt(j - 1) == ' ') continue;
+            if (c == '_' && j + markerLength < end && Character.isLetterOrDigit(s.charAt(j + markerLength))) continue;
+            return j;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,10 @@
+package com.pdf.ai;
+
+/**
+ * A measured piece of content with its final position on a page. Blocks are produced by the
+ * layout pass and only painted afterwards, so painting never has to measure or wrap text again.
+ */
+public abstract class LayoutBlock {
+
+    public abstract void paint(RenderTarget target);
+}
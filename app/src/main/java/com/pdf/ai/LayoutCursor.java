@@ -0,0 +1,56 @@
+package com.pdf.ai;
+
+/**
+ * Mutable layout position shared by all renderers: the page being filled and the current y offset
+ * on it. Renderers advance the cursor in place instead of returning the new position.
+ */
+public class LayoutCursor {
+
+    /** Called after the cursor moved to a fresh page, e.g. to repeat a table header. */
+    public interface PageBreakListener {
+        void onPageBreak(LayoutCursor cursor);
+    }
+
+    private final SectionLayout layout;
+    private LayoutPage page;
+    private float y;
+    private PageBreakListener pageBreakListener;
+
+    public LayoutCursor(SectionLayout layout) {
+        this.layout = layout;
+    }
+
+    public void startPage() {
+        page = layout.startPage();
+        y = PaintManager.MARGIN;
+        if (pageBreakListener != null) {
+            pageBreakListener.onPageBreak(this);
+        }
+    }
+
+    /** Moves to a new page unless {@code height} still fits above the bottom margin. */
+    public void ensureSpace(float height) {
+        if (y + height > PaintManager.PAGE_HEIGHT - PaintManager.MARGIN) {
+            startPage();
+        }
+    }
+
+    public void add(LayoutBlock block) {
+        page.add(block);
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public void advance(float dy) {
+        y += dy;
+    }
+
+    /** Replaces the page-break listener and returns the previous one so callers can restore it. */
+    public PageBreakListener setPageBreakListener(PageBreakListener listener) {
+        PageBreakListener previous = pageBreakListener;
+        pageBreakListener = listener;
+        return previous;
+    }
+}
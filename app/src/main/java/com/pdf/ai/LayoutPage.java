@@ -0,0 +1,20 @@
+package com.pdf.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Blocks of one content page. Pages carry no page number, so a laid out section can be reused at a
+ * different place in another document; see {@link DocumentLayout#getPageNumber(int)}.
+ */
+public class LayoutPage {
+    private final List<LayoutBlock> blocks = new ArrayList<>();
+
+    public List<LayoutBlock> getBlocks() {
+        return blocks;
+    }
+
+    public void add(LayoutBlock block) {
+        blocks.add(block);
+    }
+}
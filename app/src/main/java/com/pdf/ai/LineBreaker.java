@@ -0,0 +1,252 @@
+package com.pdf.ai;
+
+import android.graphics.Paint;
+
+/**
+ * Greedy word wrapper that measures a paragraph once. Per-character advances are fetched with a
+ * single {@link Paint#getTextWidths} call per style run and turned into prefix sums, so the width of
+ * any span is one subtraction. Lines are reported as offsets into the source text; no substrings are
+ * created.
+ *
+ * <p>Instances keep their buffers between calls and are not thread-safe.
+ */
+public class LineBreaker {
+
+    private static final float[] SINGLE_RUN = {0f};
+
+    private float[] advances = new float[256];
+    private float[] prefix = new float[257];
+    // Prefix sums the current wrap reads: our own buffer, or one kept by the caller from measure()
+    private float[] activePrefix = prefix;
+    private float[] runAdvances = new float[64];
+    private final float[] fitWidth = new float[1];
+    // What the current wrap splits overlong words with: one paint, or the runs of styled text
+    private Paint wrapPaint;
+    private StyledText wrapText;
+    private PaintManager wrapPaints;
+    private int[] lineStarts = new int[16];
+    private int[] lineEnds = new int[16];
+    private int textStart;
+    private int lineCount;
+
+    /**
+     * Wraps {@code text[start, end)} to {@code maxWidth}. Words are separated by spaces and a word
+     * that is wider than a whole line is split where {@link Paint#breakText} says it stops fitting.
+     *
+     * @return the number of lines, see {@link #getLineStart(int)} and {@link #getLineEnd(int)}
+     */
+    public int breakLines(CharSequence text, int start, int end, Paint paint, float maxWidth) {
+        lineCount = 0;
+        if (text == null || start >= end || maxWidth <= 0) return 0;
+        ensureCapacity(end - start);
+        paint.getTextWidths(text, start, end, advances);
+        computePrefix(start, end);
+        wrapPaint = paint;
+        try {
+            return wrap(text, start, end, maxWidth);
+        } finally {
+            wrapPaint = null;
+        }
+    }
+
+    /** Like {@link #breakLines(CharSequence, int, int, Paint, float)}, measuring each run with its own paint. */
+    public int breakLines(StyledText text, int start, int end, PaintManager paints, float maxWidth) {
+        lineCount = 0;
+        if (text == null || start >= end || maxWidth <= 0) return 0;
+        measureRuns(text, start, end, paints);
+        return wrapStyled(text, start, end, paints, maxWidth);
+    }
+
+    private void measureRuns(StyledText text, int start, int end, PaintManager paints) {
+        ensureCapacity(end - start);
+        String s = text.getText();
+        for (int run = text.findRun(start); run < text.getRunCount() && text.getRunStart(run) < end; run++) {
+            int from = Math.max(start, text.getRunStart(run));
+            int to = Math.min(end, text.getRunEnd(run));
+            if (runAdvances.length < to - from) {
+                runAdvances = new float[Math.max(to - from, runAdvances.length * 2)];
+            }
+            paints.getPaint(text.getRunPaintId(run)).getTextWidths(s, from, to, runAdvances);
+            System.arraycopy(runAdvances, 0, advances, from - start, to - from);
+        }
+        computePrefix(start, end);
+    }
+
+    /**
+     * Measures {@code text[start, end)} once and returns the prefix sums of its advances, so the same
+     * text can be wrapped at several widths with {@link #breakMeasured} without measuring again.
+     */
+    public float[] measure(StyledText text, int start, int end, PaintManager paints) {
+        float[] measured = new float[end - start + 1];
+        if (start >= end) return measured;
+        measureRuns(text, start, end, paints);
+        System.arraycopy(prefix, 0, measured, 0, measured.length);
+        return measured;
+    }
+
+    /** Like {@link #breakLines(StyledText, int, int, PaintManager, float)} over prefix sums from {@link #measure}. */
+    public int breakMeasured(StyledText text, int start, int end, float[] measured, PaintManager paints, float maxWidth) {
+        lineCount = 0;
+        if (text == null || start >= end || maxWidth <= 0) return 0;
+        textStart = start;
+        activePrefix = measured;
+        try {
+            return wrapStyled(text, start, end, paints, maxWidth);
+        } finally {
+            activePrefix = prefix;
+        }
+    }
+
+    private int wrapStyled(StyledText text, int start, int end, PaintManager paints, float maxWidth) {
+        wrapText = text;
+        wrapPaints = paints;
+        try {
+            return wrap(text.getText(), start, end, maxWidth);
+        } finally {
+            wrapText = null;
+            wrapPaints = null;
+        }
+    }
+
+    /** Width of the widest space-separated word in measured text, i.e. the narrowest width it wraps to without splitting words. */
+    public static float widestWord(CharSequence text, int start, int end, float[] measured) {
+        float widest = 0f;
+        int wordStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || text.charAt(i) == ' ') {
+                widest = Math.max(widest, measured[i - start] - measured[wordStart - start]);
+                wordStart = i + 1;
+            }
+        }
+        return widest;
+    }
+
+    private int wrap(CharSequence text, int start, int end, float maxWidth) {
+        int lineStart = -1;
+        int lineEnd = -1;
+        int pos = start;
+        while (pos < end) {
+            int wordEnd = pos;
+            while (wordEnd < end && text.charAt(wordEnd) != ' ') wordEnd++;
+            boolean emptyWord = wordEnd == pos;
+
+            if (lineStart < 0) {
+                if (!emptyWord) {
+                    lineStart = pos;
+                    lineEnd = wordEnd;
+                }
+            } else if (width(lineStart, wordEnd) < maxWidth) {
+                lineEnd = wordEnd;
+            } else {
+                addLine(lineStart, lineEnd);
+                lineStart = emptyWord ? -1 : pos;
+                lineEnd = wordEnd;
+            }
+
+            // A single word that overflows the line is broken where breakText says it stops fitting
+            while (lineStart >= 0 && width(lineStart, lineEnd) > maxWidth) {
+                int count = fitChars(text, lineStart, lineEnd, maxWidth);
+                addLine(lineStart, lineStart + count);
+                lineStart += count;
+                if (lineStart >= lineEnd) lineStart = -1;
+            }
+            pos = wordEnd + 1;
+        }
+        if (lineStart >= 0) {
+            addLine(lineStart, lineEnd);
+        }
+        return lineCount;
+    }
+
+    /** How many chars of {@code text[from, to)} fit in {@code maxWidth}, run by run for styled text; at least one. */
+    private int fitChars(CharSequence text, int from, int to, float maxWidth) {
+        if (wrapPaint != null) {
+            return Math.max(1, wrapPaint.breakText(text, from, to, true, maxWidth, null));
+        }
+        int pos = from;
+        float remaining = maxWidth;
+        for (int run = wrapText.findRun(from); pos < to; run++) {
+            int runEnd = Math.min(to, wrapText.getRunEnd(run));
+            Paint paint = wrapPaints.getPaint(wrapText.getRunPaintId(run));
+            pos += paint.breakText(text, pos, runEnd, true, remaining, fitWidth);
+            if (pos < runEnd) break;
+            remaining -= fitWidth[0];
+        }
+        return Math.max(1, pos - from);
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getLineStart(int line) {
+        return lineStarts[line];
+    }
+
+    public int getLineEnd(int line) {
+        return lineEnds[line];
+    }
+
+    /**
+     * X offsets of the style runs in {@code text[start, end)} from the start of the range, read from
+     * the prefix sums of the last {@link #breakLines} call, so the range can be drawn without measuring.
+     */
+    public float[] getRunOffsets(StyledText text, int start, int end) {
+        return runOffsets(text, start, end, prefix, textStart);
+    }
+
+    /** Like {@link #getRunOffsets} over prefix sums from {@link #measure} of text starting at {@code measuredStart}. */
+    public static float[] runOffsets(StyledText text, int start, int end, float[] measured, int measuredStart) {
+        int first = text.findRun(start);
+        int count = 0;
+        while (first + count < text.getRunCount() && text.getRunStart(first + count) < end) count++;
+        if (count <= 1) return SINGLE_RUN;
+        float[] offsets = new float[count];
+        for (int i = 1; i < count; i++) {
+            offsets[i] = measured[text.getRunStart(first + i) - measuredStart] - measured[start - measuredStart];
+        }
+        return offsets;
+    }
+
+    /** Width of a line from the last {@link #breakLines} call. */
+    public float getLineWidth(int line) {
+        return width(lineStarts[line], lineEnds[line]);
+    }
+
+    private void ensureCapacity(int length) {
+        if (advances.length < length) {
+            advances = new float[Math.max(length, advances.length * 2)];
+            prefix = new float[advances.length + 1];
+            activePrefix = prefix;
+        }
+    }
+
+    private void computePrefix(int start, int end) {
+        int length = end - start;
+        float sum = 0f;
+        prefix[0] = 0f;
+        for (int i = 0; i < length; i++) {
+            sum += advances[i];
+            prefix[i + 1] = sum;
+        }
+        textStart = start;
+    }
+
+    private float width(int from, int to) {
+        return activePrefix[to - textStart] - activePrefix[from - textStart];
+    }
+
+    private void addLine(int start, int end) {
+        if (lineCount == lineStarts.length) {
+            int[] starts = new int[lineCount * 2];
+            int[] ends = new int[lineCount * 2];
+            System.arraycopy(lineStarts, 0, starts, 0, lineCount);
+            System.arraycopy(lineEnds, 0, ends, 0, lineCount);
+            lineStarts = starts;
+            lineEnds = ends;
+        }
+        lineStarts[lineCount] = start;
+        lineEnds[lineCount] = end;
+        lineCount++;
+    }
+}
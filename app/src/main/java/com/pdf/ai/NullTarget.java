@@ -0,0 +1,103 @@
+package com.pdf.ai;
+
+import java.util.Arrays;
+
+/**
+ * {@link RenderTarget} and {@link PageSink} that discards everything and only counts ops, for
+ * measuring per-document draw work without the cost of drawing. Op codes are those of
+ * {@link RecordingTarget}.
+ */
+public class NullTarget implements RenderTarget, PageSink {
+    private final long[] counts = new long[RecordingTarget.OP_CODE_COUNT];
+    private long textChars;
+
+    @Override
+    public RenderTarget beginPage(int pageNumber) {
+        counts[RecordingTarget.OP_PAGE]++;
+        return this;
+    }
+
+    @Override
+    public void finishPage() {
+    }
+
+    @Override
+    public void finish() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void drawText(CharSequence text, int start, int end, float x, float y, int paintId) {
+        counts[RecordingTarget.OP_TEXT]++;
+        textChars += end - start;
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, int paintId) {
+        counts[RecordingTarget.OP_LINE]++;
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, int paintId) {
+        counts[RecordingTarget.OP_RECT]++;
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, int paintId) {
+        counts[RecordingTarget.OP_CIRCLE]++;
+    }
+
+    @Override
+    public void drawWedge(float left, float top, float right, float bottom, float startAngle, float sweepAngle, int paintId) {
+        counts[RecordingTarget.OP_WEDGE]++;
+    }
+
+    @Override
+    public void drawPolyline(float[] points, int count, int paintId) {
+        counts[RecordingTarget.OP_POLYLINE]++;
+    }
+
+    @Override
+    public void saveAndRotate(float degrees, float px, float py) {
+        counts[RecordingTarget.OP_SAVE_ROTATE]++;
+    }
+
+    @Override
+    public void restore() {
+        counts[RecordingTarget.OP_RESTORE]++;
+    }
+
+    public long getPageCount() {
+        return counts[RecordingTarget.OP_PAGE];
+    }
+
+    public long getCount(int opCode) {
+        return counts[opCode];
+    }
+
+    /** Draw ops across all pages, not counting the page markers themselves. */
+    public long getDrawOpCount() {
+        long total = 0;
+        for (int op = RecordingTarget.OP_PAGE + 1; op < counts.length; op++) {
+            total += counts[op];
+        }
+        return total;
+    }
+
+    public long getTextCharCount() {
+        return textChars;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        textChars = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "NullTarget{pages=" + getPageCount() + ", ops=" + getDrawOpCount() + ", textChars=" + textChars + "}";
+    }
+}
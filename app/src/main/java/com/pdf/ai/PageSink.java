@@ -0,0 +1,16 @@
+package com.pdf.ai;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/** Output backend that receives finished pages in order. */
+public interface PageSink extends Closeable {
+
+    /** Starts the next page; the returned target is valid until {@link #finishPage()}. */
+    RenderTarget beginPage(int pageNumber) throws IOException;
+
+    void finishPage() throws IOException;
+
+    /** Completes the output. {@link #close()} must still be called, also when finishing fails. */
+    void finish() throws IOException;
+}
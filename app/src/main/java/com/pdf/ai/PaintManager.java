@@ -1,13 +1,18 @@
 package com.pdf.ai;
 
 import android.content.Context;
-import android.graphics.Color;
-import android.graphics.DashPathEffect;
 import android.graphics.Paint;
 import android.graphics.Typeface;
-import android.text.TextPaint;
-import androidx.core.content.res.ResourcesCompat;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Page geometry, paint ids and the paints of one {@link PaintTheme}. Every thread gets its own set of
+ * paints derived from the theme, so one manager can be used by several layout and render threads at once.
+ */
 public class PaintManager {
 
     // Page dimensions and margins
@@ -26,149 +31,233 @@ public class PaintManager {
     public static final float VISUAL_BOTTOM_MARGIN = 20f;
     public static final float CELL_PADDING = 8f;
 
-    // Paints
-    private final Paint titlePaint, sectionTitlePaint, textPaint, boldTextPaint, italicTextPaint;
-    private final Paint h1Paint, h2Paint, h3Paint;
-    private final Paint tableBorderPaint, tableHeaderPaint, tableCellPaint, tableHeaderBgPaint, tableAltRowPaint;
-    private final Paint chartTitlePaint, chartAxisPaint, chartLabelPaint, chartGridPaint, dottedLinePaint;
-    private final Paint pageNumberPaint, tocTitlePaint, tocTextPaint, tocNumberPaint;
-    private final int[] chartColors;
+    // Paint ids, used wherever a paint is stored per run or per drawing command
+    public static final int PAINT_TITLE = 0;
+    public static final int PAINT_SECTION_TITLE = 1;
+    public static final int PAINT_TEXT = 2;
+    public static final int PAINT_BOLD_TEXT = 3;
+    public static final int PAINT_ITALIC_TEXT = 4;
+    public static final int PAINT_H1 = 5;
+    public static final int PAINT_H2 = 6;
+    public static final int PAINT_H3 = 7;
+    public static final int PAINT_CODE = 8;
+    public static final int PAINT_CODE_BACKGROUND = 9;
+    public static final int PAINT_QUOTE_BAR = 10;
+    public static final int PAINT_RULE = 11;
+    public static final int PAINT_TABLE_BORDER = 12;
+    public static final int PAINT_TABLE_HEADER = 13;
+    public static final int PAINT_TABLE_CELL = 14;
+    public static final int PAINT_TABLE_CELL_BOLD = 15;
+    public static final int PAINT_TABLE_CELL_ITALIC = 16;
+    public static final int PAINT_TABLE_HEADER_BG = 17;
+    public static final int PAINT_TABLE_ALT_ROW = 18;
+    public static final int PAINT_CHART_TITLE = 19;
+    public static final int PAINT_CHART_AXIS = 20;
+    public static final int PAINT_CHART_LABEL = 21;
+    public static final int PAINT_CHART_GRID = 22;
+    public static final int PAINT_DOTTED_LINE = 23;
+    public static final int PAINT_PAGE_NUMBER = 24;
+    public static final int PAINT_TOC_TITLE = 25;
+    public static final int PAINT_TOC_TEXT = 26;
+    public static final int PAINT_TOC_NUMBER = 27;
+    public static final int PAINT_CHART_LABEL_LEFT = 28;
+    public static final int PAINT_CHART_LABEL_RIGHT = 29;
+    public static final int PAINT_ERROR = 30;
+    // One fill and one 2pt line paint per chart color: PAINT_CHART_FILL + i, PAINT_CHART_LINE + i
+    public static final int PAINT_CHART_FILL = 31;
+    public static final int PAINT_CHART_LINE = 39;
+    public static final int CHART_COLOR_COUNT = 8;
+    public static final int PAINT_COUNT = 47;
+
+    // Font files behind the paints' typefaces, for writers that embed fonts themselves
+    public static final int FONT_DEFAULT = 0;
+    public static final int FONT_REGULAR = 1;
+    public static final int FONT_MEDIUM = 2;
+    public static final int FONT_SEMIBOLD = 3;
+    public static final int FONT_MONOSPACE = 4;
+    public static final int FONT_COUNT = 5;
+
+    private final PaintTheme theme;
+    // Paint sets are per thread, so layout and painting on several threads never share a Paint
+    private final ThreadLocal<Paint[]> paintsByThread = new ThreadLocal<Paint[]>() {
+        @Override
+        protected Paint[] initialValue() {
+            return theme.createPaints();
+        }
+    };
+    private final int[] boldVariants;
+    private final int[] italicVariants;
+    private final int[] measureKeysById;
+    private final int[] fontIds;
+    private final boolean[] syntheticItalics;
+    private final float[][] dashIntervals;
+    private final long layoutFingerprint;
 
     public PaintManager(Context context) {
-        Typeface regularTypeface = ResourcesCompat.getFont(context, R.font.reg);
-        Typeface mediumTypeface = ResourcesCompat.getFont(context, R.font.med);
-        Typeface semiboldTypeface = ResourcesCompat.getFont(context, R.font.sem);
-
-        // Cover Page and Section Title Paints
-        titlePaint = new Paint();
-        titlePaint.setTextSize(32f);
-        titlePaint.setColor(Color.BLACK);
-        titlePaint.setTextAlign(Paint.Align.CENTER);
-        titlePaint.setTypeface(semiboldTypeface);
-        titlePaint.setAntiAlias(true);
-
-        sectionTitlePaint = new Paint();
-        sectionTitlePaint.setTextSize(22f);
-        sectionTitlePaint.setColor(0xFF1E88E5); // A nice blue
-        sectionTitlePaint.setTypeface(semiboldTypeface);
-        sectionTitlePaint.setAntiAlias(true);
-
-        // Heading Paints
-        h1Paint = new Paint(sectionTitlePaint);
-        h1Paint.setTextSize(18f);
-        h1Paint.setColor(Color.BLACK);
-        h2Paint = new Paint(h1Paint);
-        h2Paint.setTextSize(16f);
-        h3Paint = new Paint(h1Paint);
-        h3Paint.setTextSize(14f);
-        h3Paint.setTypeface(mediumTypeface);
-
-        // Standard Text Paints
-        textPaint = new Paint();
-        textPaint.setTextSize(11f);
-        textPaint.setColor(0xFF333333);
-        textPaint.setTypeface(regularTypeface);
-        textPaint.setAntiAlias(true);
-
-        boldTextPaint = new Paint(textPaint);
-        boldTextPaint.setTypeface(semiboldTypeface);
-
-        italicTextPaint = new Paint(textPaint);
-        italicTextPaint.setTypeface(Typeface.create(regularTypeface, Typeface.ITALIC));
-
-        // Table Paints
-        tableBorderPaint = new Paint();
-        tableBorderPaint.setStyle(Paint.Style.STROKE);
-        tableBorderPaint.setColor(0xFFCCCCCC);
-        tableBorderPaint.setStrokeWidth(1f);
-
-        tableHeaderBgPaint = new Paint();
-        tableHeaderBgPaint.setStyle(Paint.Style.FILL);
-        tableHeaderBgPaint.setColor(0xFFF0F0F0);
-
-        tableAltRowPaint = new Paint();
-        tableAltRowPaint.setStyle(Paint.Style.FILL);
-        tableAltRowPaint.setColor(0xFFFAFAFA);
-
-        tableHeaderPaint = new TextPaint(boldTextPaint);
-        tableHeaderPaint.setTextSize(10f);
-        tableHeaderPaint.setColor(Color.BLACK);
-
-        tableCellPaint = new TextPaint(textPaint);
-        tableCellPaint.setTextSize(10f);
-
-        // Chart Paints
-        chartTitlePaint = new Paint(h3Paint);
-        chartTitlePaint.setTextAlign(Paint.Align.CENTER);
-        chartTitlePaint.setTextSize(12f);
-
-        chartAxisPaint = new Paint();
-        chartAxisPaint.setStrokeWidth(1.5f);
-        chartAxisPaint.setColor(Color.DKGRAY);
-
-        chartGridPaint = new Paint();
-        chartGridPaint.setStrokeWidth(0.5f);
-        chartGridPaint.setColor(0xFFE0E0E0);
-        chartGridPaint.setStyle(Paint.Style.STROKE);
-
-        chartLabelPaint = new Paint(textPaint);
-        chartLabelPaint.setTextSize(9f);
-        chartLabelPaint.setTextAlign(Paint.Align.CENTER);
-
-        chartColors = new int[]{
-                Color.parseColor("#4285F4"), Color.parseColor("#DB4437"),
-                Color.parseColor("#F4B400"), Color.parseColor("#0F9D58"),
-                Color.parseColor("#AB47BC"), Color.parseColor("#00ACC1"),
-                Color.parseColor("#FF7043"), Color.parseColor("#9E9D24")
+        this(PaintTheme.load(context));
+    }
+
+    public PaintManager(PaintTheme theme) {
+        this.theme = theme;
+        Paint[] paintsById = paintsByThread.get();
+
+        // Inline **bold** and *italic* map to these variants; paints without one keep their own style
+        boldVariants = new int[PAINT_COUNT];
+        italicVariants = new int[PAINT_COUNT];
+        for (int id = 0; id < PAINT_COUNT; id++) {
+            boldVariants[id] = id;
+            italicVariants[id] = id;
+        }
+        boldVariants[PAINT_TEXT] = PAINT_BOLD_TEXT;
+        italicVariants[PAINT_TEXT] = PAINT_ITALIC_TEXT;
+        boldVariants[PAINT_TABLE_CELL] = PAINT_TABLE_CELL_BOLD;
+        italicVariants[PAINT_TABLE_CELL] = PAINT_TABLE_CELL_ITALIC;
+
+        // Measure keys: paints with the same typeface, size and style measure text identically
+        Map<List<Object>, Integer> measureKeysByFingerprint = new HashMap<>();
+        measureKeysById = new int[PAINT_COUNT];
+        fontIds = new int[PAINT_COUNT];
+        syntheticItalics = new boolean[PAINT_COUNT];
+        dashIntervals = new float[PAINT_COUNT][];
+        for (int id = 0; id < PAINT_COUNT; id++) {
+            dashIntervals[id] = theme.getDashIntervals(id);
+            Paint paint = paintsById[id];
+            List<Object> fingerprint = Arrays.<Object>asList(
+                    paint.getTypeface(), paint.getTextSize(), paint.getTextScaleX(), paint.getTextSkewX(),
+                    paint.getLetterSpacing(), paint.isFakeBoldText());
+            Integer key = measureKeysByFingerprint.get(fingerprint);
+            if (key == null) {
+                key = measureKeysByFingerprint.size();
+                measureKeysByFingerprint.put(fingerprint, key);
+            }
+            measureKeysById[id] = key;
+
+            Typeface typeface = paint.getTypeface();
+            if (typeface == null) {
+                fontIds[id] = FONT_DEFAULT;
+            } else if (typeface == theme.getRegularTypeface() || typeface == theme.getItalicTypeface()) {
+                fontIds[id] = FONT_REGULAR;
+                syntheticItalics[id] = typeface == theme.getItalicTypeface();
+            } else if (typeface == theme.getMediumTypeface()) {
+                fontIds[id] = FONT_MEDIUM;
+            } else if (typeface == theme.getSemiboldTypeface()) {
+                fontIds[id] = FONT_SEMIBOLD;
+            } else if (typeface == Typeface.MONOSPACE) {
+                fontIds[id] = FONT_MONOSPACE;
+            } else {
+                fontIds[id] = FONT_DEFAULT;
+            }
+        }
+        layoutFingerprint = fingerprint(paintsById);
+    }
+
+    /**
+     * Hash of everything that decides how content is laid out and drawn: page geometry, spacing and
+     * each paint's style and color, with a probe string measured so different fonts tell apart.
+     * Stable across processes for the same fonts, so it can key layouts kept on disk.
+     */
+    private static long fingerprint(Paint[] paintsById) {
+        float[] values = {
+                PAGE_WIDTH, PAGE_HEIGHT, MARGIN, LINE_HEIGHT_MULTIPLIER, PARAGRAPH_SPACING, LIST_ITEM_INDENT,
+                SECTION_TITLE_BOTTOM_MARGIN, HEADING_TOP_MARGIN, VISUAL_TITLE_MARGIN, VISUAL_BOTTOM_MARGIN, CELL_PADDING
         };
+        long hash = 0xcbf29ce484222325L;
+        for (float value : values) {
+            hash = (hash ^ Float.floatToIntBits(value)) * 0x100000001b3L;
+        }
+        for (Paint paint : paintsById) {
+            Typeface typeface = paint.getTypeface();
+            int[] bits = {
+                    Float.floatToIntBits(paint.getTextSize()), Float.floatToIntBits(paint.getTextSkewX()),
+                    Float.floatToIntBits(paint.getStrokeWidth()), Float.floatToIntBits(paint.measureText("Hamburgefontsiv 0123")),
+                    paint.getColor(), paint.getStyle().ordinal(), paint.getTextAlign().ordinal(),
+                    typeface == null ? -1 : typeface.getStyle(), paint.getPathEffect() == null ? 0 : 1
+            };
+            for (int b : bits) {
+                hash = (hash ^ b) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    public PaintTheme getTheme() {
+        return theme;
+    }
+
+    public long getLayoutFingerprint() {
+        return layoutFingerprint;
+    }
+
+    /** Font resource for a {@code FONT_*} id, or 0 for fonts that are not bundled with the app. */
+    public static int getFontResource(int fontId) {
+        switch (fontId) {
+            case FONT_REGULAR: return R.font.reg;
+            case FONT_MEDIUM: return R.font.med;
+            case FONT_SEMIBOLD: return R.font.sem;
+            default: return 0;
+        }
+    }
+
+    public int getFontId(int paintId) {
+        return fontIds[paintId];
+    }
+
+    /** True when the paint's italic style is slanted from the upright font rather than a font file of its own. */
+    public boolean isSyntheticItalic(int paintId) {
+        return syntheticItalics[paintId];
+    }
+
+    /** On and off lengths of the paint's dash pattern, or null for a solid stroke; do not modify. */
+    public float[] getDashIntervals(int paintId) {
+        return dashIntervals[paintId];
+    }
+
+    /**
+     * Small integer identifying how a paint id measures text, derived from its typeface, size and
+     * style. Used as the paint part of text measurement cache keys.
+     */
+    public int getMeasureKey(int paintId) {
+        return measureKeysById[paintId];
+    }
+
+    /** The calling thread's paint for {@code id}; read it, never change it. */
+    public Paint getPaint(int id) {
+        return paintsByThread.get()[id];
+    }
+
+    public int getBoldVariant(int id) {
+        return boldVariants[id];
+    }
 
-        // Page Number and TOC Paints
-        pageNumberPaint = new Paint();
-        pageNumberPaint.setTextSize(9f);
-        pageNumberPaint.setColor(Color.GRAY);
-        pageNumberPaint.setTextAlign(Paint.Align.CENTER);
-        pageNumberPaint.setTypeface(regularTypeface);
-
-        tocTitlePaint = new Paint(titlePaint);
-        tocTitlePaint.setTextSize(24f);
-
-        tocTextPaint = new Paint(textPaint);
-        tocTextPaint.setTextSize(12f);
-        tocTextPaint.setTextAlign(Paint.Align.LEFT);
-
-        tocNumberPaint = new Paint(tocTextPaint);
-        tocNumberPaint.setTextAlign(Paint.Align.RIGHT);
-        tocNumberPaint.setTypeface(semiboldTypeface);
-
-        dottedLinePaint = new Paint();
-        dottedLinePaint.setColor(Color.LTGRAY);
-        dottedLinePaint.setStyle(Paint.Style.STROKE);
-        dottedLinePaint.setStrokeWidth(1f);
-        dottedLinePaint.setPathEffect(new DashPathEffect(new float[]{2, 2}, 0));
+    public int getItalicVariant(int id) {
+        return italicVariants[id];
     }
 
-    // Getters for all paints
-    public Paint getTitlePaint() { return titlePaint; }
-    public Paint getSectionTitlePaint() { return sectionTitlePaint; }
-    public Paint getTextPaint() { return textPaint; }
-    public Paint getBoldTextPaint() { return boldTextPaint; }
-    public Paint getItalicTextPaint() { return italicTextPaint; }
-    public Paint getH1Paint() { return h1Paint; }
-    public Paint getH2Paint() { return h2Paint; }
-    public Paint getH3Paint() { return h3Paint; }
-    public Paint getTableBorderPaint() { return tableBorderPaint; }
-    public Paint getTableHeaderPaint() { return tableHeaderPaint; }
-    public Paint getTableCellPaint() { return tableCellPaint; }
-    public Paint getTableHeaderBgPaint() { return tableHeaderBgPaint; }
-    public Paint getTableAltRowPaint() { return tableAltRowPaint; }
-    public Paint getChartTitlePaint() { return chartTitlePaint; }
-    public Paint getChartAxisPaint() { return chartAxisPaint; }
-    public Paint getChartLabelPaint() { return chartLabelPaint; }
-    public Paint getChartGridPaint() { return chartGridPaint; }
-    public int[] getChartColors() { return chartColors; }
-    public Paint getPageNumberPaint() { return pageNumberPaint; }
-    public Paint getTocTitlePaint() { return tocTitlePaint; }
-    public Paint getTocTextPaint() { return tocTextPaint; }
-    public Paint getTocNumberPaint() { return tocNumberPaint; }
-    public Paint getDottedLinePaint() { return dottedLinePaint; }
+    // Getters for all paints, each the calling thread's instance
+    public Paint getTitlePaint() { return getPaint(PAINT_TITLE); }
+    public Paint getSectionTitlePaint() { return getPaint(PAINT_SECTION_TITLE); }
+    public Paint getTextPaint() { return getPaint(PAINT_TEXT); }
+    public Paint getBoldTextPaint() { return getPaint(PAINT_BOLD_TEXT); }
+    public Paint getItalicTextPaint() { return getPaint(PAINT_ITALIC_TEXT); }
+    public Paint getH1Paint() { return getPaint(PAINT_H1); }
+    public Paint getH2Paint() { return getPaint(PAINT_H2); }
+    public Paint getH3Paint() { return getPaint(PAINT_H3); }
+    public Paint getCodePaint() { return getPaint(PAINT_CODE); }
+    public Paint getCodeBackgroundPaint() { return getPaint(PAINT_CODE_BACKGROUND); }
+    public Paint getQuoteBarPaint() { return getPaint(PAINT_QUOTE_BAR); }
+    public Paint getRulePaint() { return getPaint(PAINT_RULE); }
+    public Paint getTableBorderPaint() { return getPaint(PAINT_TABLE_BORDER); }
+    public Paint getTableHeaderPaint() { return getPaint(PAINT_TABLE_HEADER); }
+    public Paint getTableCellPaint() { return getPaint(PAINT_TABLE_CELL); }
+    public Paint getTableHeaderBgPaint() { return getPaint(PAINT_TABLE_HEADER_BG); }
+    public Paint getTableAltRowPaint() { return getPaint(PAINT_TABLE_ALT_ROW); }
+    public Paint getChartTitlePaint() { return getPaint(PAINT_CHART_TITLE); }
+    public Paint getChartAxisPaint() { return getPaint(PAINT_CHART_AXIS); }
+    public Paint getChartLabelPaint() { return getPaint(PAINT_CHART_LABEL); }
+    public Paint getChartGridPaint() { return getPaint(PAINT_CHART_GRID); }
+    public Paint getPageNumberPaint() { return getPaint(PAINT_PAGE_NUMBER); }
+    public Paint getTocTitlePaint() { return getPaint(PAINT_TOC_TITLE); }
+    public Paint getTocTextPaint() { return getPaint(PAINT_TOC_TEXT); }
+    public Paint getTocNumberPaint() { return getPaint(PAINT_TOC_NUMBER); }
+    public Paint getDottedLinePaint() { return getPaint(PAINT_DOTTED_LINE); }
 }
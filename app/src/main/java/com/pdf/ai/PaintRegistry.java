@@ -0,0 +1,98 @@
+package com.pdf.ai;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Process-wide home of the default {@link PaintTheme} and of one {@link PaintManager} per theme.
+ * The bundled fonts are loaded once, on a background thread started by {@link #preload()} or by the
+ * first caller that needs them; callers that need paints before then wait for the load to finish.
+ */
+public class PaintRegistry {
+    private static final String TAG = "PaintRegistry";
+
+    private static PaintRegistry instance;
+
+    private final Context context;
+    private final FutureTask<PaintTheme> defaultTheme;
+    private final Map<PaintTheme, PaintManager> managers = new HashMap<>();
+    private boolean loadStarted;
+    private volatile long fontLoadNanos = -1;
+    private volatile long paintSetupNanos = -1;
+
+    private PaintRegistry(Context context) {
+        this.context = context;
+        this.defaultTheme = new FutureTask<>(() -> {
+            long start = System.nanoTime();
+            PaintTheme theme = PaintTheme.load(this.context);
+            fontLoadNanos = System.nanoTime() - start;
+            Log.d(TAG, "Fonts loaded in " + fontLoadNanos / 1_000_000 + " ms");
+            return theme;
+        });
+    }
+
+    public static synchronized PaintRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new PaintRegistry(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /** Starts loading the default theme's fonts in the background, if that has not happened yet. */
+    public synchronized void preload() {
+        if (loadStarted) return;
+        loadStarted = true;
+        Thread loader = new Thread(defaultTheme, "PaintRegistry-fonts");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /** The default theme; blocks until its fonts are loaded. */
+    public PaintTheme getDefaultTheme() {
+        preload();
+        try {
+            return defaultTheme.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading fonts", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to load fonts", e.getCause());
+        }
+    }
+
+    public PaintManager getPaintManager() {
+        return getPaintManager(getDefaultTheme());
+    }
+
+    /** The shared manager of {@code theme}, created on first use. */
+    public synchronized PaintManager getPaintManager(PaintTheme theme) {
+        PaintManager manager = managers.get(theme);
+        if (manager == null) {
+            long start = System.nanoTime();
+            manager = new PaintManager(theme);
+            if (paintSetupNanos < 0) paintSetupNanos = System.nanoTime() - start;
+            managers.put(theme, manager);
+        }
+        return manager;
+    }
+
+    /** Time spent loading the bundled fonts, or -1 if they have not finished loading. */
+    public long getFontLoadMillis() {
+        return fontLoadNanos < 0 ? -1 : fontLoadNanos / 1_000_000;
+    }
+
+    /** Time spent deriving the first paint manager's paints and measure keys, or -1 if none exists yet. */
+    public long getPaintSetupMillis() {
+        return paintSetupNanos < 0 ? -1 : paintSetupNanos / 1_000_000;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PaintRegistry{fontLoadMs=" + getFontLoadMillis() + ", paintSetupMs=" + getPaintSetupMillis() + ", themes=" + managers.size() + "}";
+    }
+}
@@ -0,0 +1,304 @@
+package com.pdf.ai;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.DashPathEffect;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+import androidx.core.content.res.ResourcesCompat;
+
+/**
+ * Immutable description of how a document looks: its typefaces and colors. Paints are never shared
+ * through a theme; {@link #createPaints()} derives a fresh set, indexed by {@code PaintManager.PAINT_*}
+ * id, for each thread or job that draws or measures.
+ */
+public final class PaintTheme {
+
+    // On and off lengths of the dotted TOC leader
+    private static final float[] DOTTED_LINE_DASH = {2f, 2f};
+
+    private final Typeface regularTypeface;
+    private final Typeface mediumTypeface;
+    private final Typeface semiboldTypeface;
+    private final Typeface italicTypeface;
+    private final int textColor;
+    private final int headingColor;
+    private final int accentColor;
+    private final int[] chartColors;
+
+    private PaintTheme(Builder b) {
+        regularTypeface = b.regularTypeface;
+        mediumTypeface = b.mediumTypeface;
+        semiboldTypeface = b.semiboldTypeface;
+        italicTypeface = Typeface.create(regularTypeface, Typeface.ITALIC);
+        textColor = b.textColor;
+        headingColor = b.headingColor;
+        accentColor = b.accentColor;
+        chartColors = b.chartColors.clone();
+    }
+
+    /** The app's default theme with the bundled fonts; loads them, so keep it off the main thread. */
+    public static PaintTheme load(Context context) {
+        return new Builder(
+                ResourcesCompat.getFont(context, R.font.reg),
+                ResourcesCompat.getFont(context, R.font.med),
+                ResourcesCompat.getFont(context, R.font.sem)).build();
+    }
+
+    public Builder toBuilder() {
+        return new Builder(regularTypeface, mediumTypeface, semiboldTypeface)
+                .setTextColor(textColor)
+                .setHeadingColor(headingColor)
+                .setAccentColor(accentColor)
+                .setChartColors(chartColors);
+    }
+
+    public Typeface getRegularTypeface() { return regularTypeface; }
+    public Typeface getMediumTypeface() { return mediumTypeface; }
+    public Typeface getSemiboldTypeface() { return semiboldTypeface; }
+    public Typeface getItalicTypeface() { return italicTypeface; }
+    public int getTextColor() { return textColor; }
+    public int getHeadingColor() { return headingColor; }
+    public int getAccentColor() { return accentColor; }
+
+    public int getChartColor(int index) {
+        return chartColors[index % chartColors.length];
+    }
+
+    /**
+     * On and off lengths of the dash pattern {@link #createPaints()} gives a paint, or null for solid
+     * strokes. A {@link DashPathEffect} cannot be read back, so writers that draw without Canvas use this.
+     */
+    public float[] getDashIntervals(int paintId) {
+        return paintId == PaintManager.PAINT_DOTTED_LINE ? DOTTED_LINE_DASH.clone() : null;
+    }
+
+    /** A new, unshared paint for every {@code PaintManager.PAINT_*} id. */
+    public Paint[] createPaints() {
+        Paint[] paints = new Paint[PaintManager.PAINT_COUNT];
+
+        // Cover Page and Section Title Paints
+        Paint titlePaint = new Paint();
+        titlePaint.setTextSize(32f);
+        titlePaint.setColor(headingColor);
+        titlePaint.setTextAlign(Paint.Align.CENTER);
+        titlePaint.setTypeface(semiboldTypeface);
+        titlePaint.setAntiAlias(true);
+        paints[PaintManager.PAINT_TITLE] = titlePaint;
+
+        Paint sectionTitlePaint = new Paint();
+        sectionTitlePaint.setTextSize(22f);
+        sectionTitlePaint.setColor(accentColor);
+        sectionTitlePaint.setTypeface(semiboldTypeface);
+        sectionTitlePaint.setAntiAlias(true);
+        paints[PaintManager.PAINT_SECTION_TITLE] = sectionTitlePaint;
+
+        // Heading Paints
+        Paint h1Paint = new Paint(sectionTitlePaint);
+        h1Paint.setTextSize(18f);
+        h1Paint.setColor(headingColor);
+        Paint h2Paint = new Paint(h1Paint);
+        h2Paint.setTextSize(16f);
+        Paint h3Paint = new Paint(h1Paint);
+        h3Paint.setTextSize(14f);
+        h3Paint.setTypeface(mediumTypeface);
+        paints[PaintManager.PAINT_H1] = h1Paint;
+        paints[PaintManager.PAINT_H2] = h2Paint;
+        paints[PaintManager.PAINT_H3] = h3Paint;
+
+        // Standard Text Paints
+        Paint textPaint = new Paint();
+        textPaint.setTextSize(11f);
+        textPaint.setColor(textColor);
+        textPaint.setTypeface(regularTypeface);
+        textPaint.setAntiAlias(true);
+        paints[PaintManager.PAINT_TEXT] = textPaint;
+
+        Paint boldTextPaint = new Paint(textPaint);
+        boldTextPaint.setTypeface(semiboldTypeface);
+        paints[PaintManager.PAINT_BOLD_TEXT] = boldTextPaint;
+
+        Paint italicTextPaint = new Paint(textPaint);
+        italicTextPaint.setTypeface(italicTypeface);
+        paints[PaintManager.PAINT_ITALIC_TEXT] = italicTextPaint;
+
+        // Code and Block Quote Paints
+        Paint codePaint = new Paint(textPaint);
+        codePaint.setTextSize(10f);
+        codePaint.setTypeface(Typeface.MONOSPACE);
+        paints[PaintManager.PAINT_CODE] = codePaint;
+
+        Paint codeBackgroundPaint = new Paint();
+        codeBackgroundPaint.setStyle(Paint.Style.FILL);
+        codeBackgroundPaint.setColor(0xFFF5F5F5);
+        paints[PaintManager.PAINT_CODE_BACKGROUND] = codeBackgroundPaint;
+
+        Paint quoteBarPaint = new Paint();
+        quoteBarPaint.setStyle(Paint.Style.FILL);
+        quoteBarPaint.setColor(0xFFCCCCCC);
+        paints[PaintManager.PAINT_QUOTE_BAR] = quoteBarPaint;
+
+        Paint rulePaint = new Paint();
+        rulePaint.setColor(0xFFCCCCCC);
+        rulePaint.setStrokeWidth(1f);
+        paints[PaintManager.PAINT_RULE] = rulePaint;
+
+        // Table Paints
+        Paint tableBorderPaint = new Paint();
+        tableBorderPaint.setStyle(Paint.Style.STROKE);
+        tableBorderPaint.setColor(0xFFCCCCCC);
+        tableBorderPaint.setStrokeWidth(1f);
+        paints[PaintManager.PAINT_TABLE_BORDER] = tableBorderPaint;
+
+        Paint tableHeaderBgPaint = new Paint();
+        tableHeaderBgPaint.setStyle(Paint.Style.FILL);
+        tableHeaderBgPaint.setColor(0xFFF0F0F0);
+        paints[PaintManager.PAINT_TABLE_HEADER_BG] = tableHeaderBgPaint;
+
+        Paint tableAltRowPaint = new Paint();
+        tableAltRowPaint.setStyle(Paint.Style.FILL);
+        tableAltRowPaint.setColor(0xFFFAFAFA);
+        paints[PaintManager.PAINT_TABLE_ALT_ROW] = tableAltRowPaint;
+
+        Paint tableHeaderPaint = new TextPaint(boldTextPaint);
+        tableHeaderPaint.setTextSize(10f);
+        tableHeaderPaint.setColor(headingColor);
+        paints[PaintManager.PAINT_TABLE_HEADER] = tableHeaderPaint;
+
+        Paint tableCellPaint = new TextPaint(textPaint);
+        tableCellPaint.setTextSize(10f);
+        paints[PaintManager.PAINT_TABLE_CELL] = tableCellPaint;
+
+        Paint tableCellBoldPaint = new TextPaint(tableCellPaint);
+        tableCellBoldPaint.setTypeface(semiboldTypeface);
+        paints[PaintManager.PAINT_TABLE_CELL_BOLD] = tableCellBoldPaint;
+
+        Paint tableCellItalicPaint = new TextPaint(tableCellPaint);
+        tableCellItalicPaint.setTypeface(italicTypeface);
+        paints[PaintManager.PAINT_TABLE_CELL_ITALIC] = tableCellItalicPaint;
+
+        // Chart Paints
+        Paint chartTitlePaint = new Paint(h3Paint);
+        chartTitlePaint.setTextAlign(Paint.Align.CENTER);
+        chartTitlePaint.setTextSize(12f);
+        paints[PaintManager.PAINT_CHART_TITLE] = chartTitlePaint;
+
+        Paint chartAxisPaint = new Paint();
+        chartAxisPaint.setStrokeWidth(1.5f);
+        chartAxisPaint.setColor(Color.DKGRAY);
+        paints[PaintManager.PAINT_CHART_AXIS] = chartAxisPaint;
+
+        Paint chartGridPaint = new Paint();
+        chartGridPaint.setStrokeWidth(0.5f);
+        chartGridPaint.setColor(0xFFE0E0E0);
+        chartGridPaint.setStyle(Paint.Style.STROKE);
+        paints[PaintManager.PAINT_CHART_GRID] = chartGridPaint;
+
+        Paint chartLabelPaint = new Paint(textPaint);
+        chartLabelPaint.setTextSize(9f);
+        chartLabelPaint.setTextAlign(Paint.Align.CENTER);
+        paints[PaintManager.PAINT_CHART_LABEL] = chartLabelPaint;
+
+        Paint chartLabelLeftPaint = new Paint(chartLabelPaint);
+        chartLabelLeftPaint.setTextAlign(Paint.Align.LEFT);
+        paints[PaintManager.PAINT_CHART_LABEL_LEFT] = chartLabelLeftPaint;
+
+        Paint chartLabelRightPaint = new Paint(chartLabelPaint);
+        chartLabelRightPaint.setTextAlign(Paint.Align.RIGHT);
+        paints[PaintManager.PAINT_CHART_LABEL_RIGHT] = chartLabelRightPaint;
+
+        for (int i = 0; i < PaintManager.CHART_COLOR_COUNT; i++) {
+            Paint fill = new Paint();
+            fill.setStyle(Paint.Style.FILL);
+            fill.setAntiAlias(true);
+            fill.setColor(getChartColor(i));
+            paints[PaintManager.PAINT_CHART_FILL + i] = fill;
+
+            Paint line = new Paint(fill);
+            line.setStyle(Paint.Style.STROKE);
+            line.setStrokeWidth(2f);
+            paints[PaintManager.PAINT_CHART_LINE + i] = line;
+        }
+
+        // Page Number and TOC Paints
+        Paint pageNumberPaint = new Paint();
+        pageNumberPaint.setTextSize(9f);
+        pageNumberPaint.setColor(Color.GRAY);
+        pageNumberPaint.setTextAlign(Paint.Align.CENTER);
+        pageNumberPaint.setTypeface(regularTypeface);
+        paints[PaintManager.PAINT_PAGE_NUMBER] = pageNumberPaint;
+
+        Paint tocTitlePaint = new Paint(titlePaint);
+        tocTitlePaint.setTextSize(24f);
+        paints[PaintManager.PAINT_TOC_TITLE] = tocTitlePaint;
+
+        Paint tocTextPaint = new Paint(textPaint);
+        tocTextPaint.setTextSize(12f);
+        tocTextPaint.setTextAlign(Paint.Align.LEFT);
+        paints[PaintManager.PAINT_TOC_TEXT] = tocTextPaint;
+
+        Paint tocNumberPaint = new Paint(tocTextPaint);
+        tocNumberPaint.setTextAlign(Paint.Align.RIGHT);
+        tocNumberPaint.setTypeface(semiboldTypeface);
+        paints[PaintManager.PAINT_TOC_NUMBER] = tocNumberPaint;
+
+        Paint dottedLinePaint = new Paint();
+        dottedLinePaint.setColor(Color.LTGRAY);
+        dottedLinePaint.setStyle(Paint.Style.STROKE);
+        dottedLinePaint.setStrokeWidth(1f);
+        dottedLinePaint.setPathEffect(new DashPathEffect(DOTTED_LINE_DASH, 0));
+        paints[PaintManager.PAINT_DOTTED_LINE] = dottedLinePaint;
+
+        Paint errorPaint = new Paint(textPaint);
+        errorPaint.setColor(Color.RED);
+        errorPaint.setTextAlign(Paint.Align.CENTER);
+        paints[PaintManager.PAINT_ERROR] = errorPaint;
+
+        return paints;
+    }
+
+    public static final class Builder {
+        private final Typeface regularTypeface;
+        private final Typeface mediumTypeface;
+        private final Typeface semiboldTypeface;
+        private int textColor = 0xFF333333;
+        private int headingColor = Color.BLACK;
+        private int accentColor = 0xFF1E88E5; // A nice blue
+        private int[] chartColors = {
+                0xFF4285F4, 0xFFDB4437, 0xFFF4B400, 0xFF0F9D58,
+                0xFFAB47BC, 0xFF00ACC1, 0xFFFF7043, 0xFF9E9D24
+        };
+
+        public Builder(Typeface regularTypeface, Typeface mediumTypeface, Typeface semiboldTypeface) {
+            this.regularTypeface = regularTypeface;
+            this.mediumTypeface = mediumTypeface;
+            this.semiboldTypeface = semiboldTypeface;
+        }
+
+        public Builder setTextColor(int color) {
+            textColor = color;
+            return this;
+        }
+
+        public Builder setHeadingColor(int color) {
+            headingColor = color;
+            return this;
+        }
+
+        public Builder setAccentColor(int color) {
+            accentColor = color;
+            return this;
+        }
+
+        public Builder setChartColors(int[] colors) {
+            if (colors.length == 0) throw new IllegalArgumentException("At least one chart color is required.");
+            chartColors = colors.clone();
+            return this;
+        }
+
+        public PaintTheme build() {
+            return new PaintTheme(this);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.pdf.ai;
+
+import android.graphics.pdf.PdfDocument;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * {@link PageSink} backed by {@link PdfDocument}. Pages stay in memory until {@link #finish()}
+ * writes the file, so this suits documents of moderate size.
+ */
+public class PdfDocumentSink implements PageSink {
+    private final PdfDocument document = new PdfDocument();
+    private final CanvasRenderTarget target;
+    private final File file;
+    private PdfDocument.Page page;
+
+    public PdfDocumentSink(PaintManager paints, File file) {
+        this.target = new CanvasRenderTarget(paints);
+        this.file = file;
+    }
+
+    @Override
+    public RenderTarget beginPage(int pageNumber) {
+        PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(PaintManager.PAGE_WIDTH, PaintManager.PAGE_HEIGHT, pageNumber).create();
+        page = document.startPage(pageInfo);
+        target.setCanvas(page.getCanvas());
+        return target;
+    }
+
+    @Override
+    public void finishPage() {
+        document.finishPage(page);
+        page = null;
+        target.setCanvas(null);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            document.writeTo(fos);
+        }
+    }
+
+    @Override
+    public void close() {
+        document.close();
+    }
+}
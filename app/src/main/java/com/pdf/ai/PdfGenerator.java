@@ -1,331 +1,248 @@
 package com.pdf.ai;
 
 import android.content.Context;
-import android.graphics.Canvas;
+import android.content.pm.PackageManager;
 import android.graphics.Paint;
-import android.graphics.pdf.PdfDocument;
 import android.util.Log;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class PdfGenerator {
 
+    // Section layout runs on this bounded pool; painting the pages stays on the calling thread
+    private static final int MAX_LAYOUT_THREADS = 8;
+    private static final ForkJoinPool LAYOUT_POOL =
+            new ForkJoinPool(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_LAYOUT_THREADS)));
+
+    // Above this many content pages the PDF is streamed to disk page by page instead of held by PdfDocument,
+    // as long as all of its text fits the streaming writer's WinAnsi fonts
+    private static final int STREAMING_PAGE_THRESHOLD = 100;
+
+    // Laid out sections are reused across generations; stored under the cache dir so they survive restarts
+    private static SectionLayoutCache layoutCache;
+
     private final Context context;
     private final PaintManager paintManager;
-    private final List<TocItem> tocItems = new ArrayList<>();
+    private final SectionLayoutCache sectionCache;
 
     public interface PdfGenerationCallback {
         void onPdfGenerated(String filePath, String pdfTitle);
         void onPdfGenerationFailed(String error);
     }
 
+    /** Uses the shared default theme; waits for {@link PaintRegistry} to load the fonts if needed. */
     public PdfGenerator(Context context) {
-        this.context = context;
-        this.paintManager = new PaintManager(context);
+        this(context, PaintRegistry.getInstance(context).getDefaultTheme());
     }
 
-    public void createPdf(String pdfTitle, OutlineData outlineData, List<String> sectionsContent, PdfGenerationCallback callback) {
-        PdfDocument document = new PdfDocument();
-        try {
-            // Pass 1: Simulate the layout to get correct page numbers for the TOC
-            simulateLayoutAndBuildToc(outlineData, sectionsContent);
-
-            // Pass 2: Draw the actual document
-            // Page 1: Cover Page
-            drawCoverPage(document, pdfTitle);
-
-            // Page 2: Table of Contents
-            drawTableOfContentsPage(document);
-
-            // Pages 3 onwards: Content
-            drawAllContentPages(document, outlineData, sectionsContent);
+    public PdfGenerator(Context context, PaintTheme theme) {
+        this(context, theme, getLayoutCache(context));
+    }
 
-            // Save the final document
-            savePdf(document, pdfTitle, callback);
+    public PdfGenerator(Context context, PaintTheme theme, SectionLayoutCache sectionCache) {
+        this.context = context.getApplicationContext();
+        this.paintManager = PaintRegistry.getInstance(context).getPaintManager(theme);
+        this.sectionCache = sectionCache;
+    }
 
-        } catch (Exception e) {
-            Log.e("PdfGenerator", "Error during PDF creation process", e);
-            callback.onPdfGenerationFailed("An unexpected error occurred: " + e.getMessage());
-        } finally {
-            document.close();
+    public static synchronized SectionLayoutCache getLayoutCache(Context context) {
+        if (layoutCache == null) {
+            // Layouts written by an older install may come from older layout code, so any update clears them
+            long appVersion = 0;
+            try {
+                appVersion = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+            } catch (PackageManager.NameNotFoundException e) {
+                Log.w("PdfGenerator", "Cannot read package info", e);
+            }
+            Context app = context.getApplicationContext();
+            layoutCache = new SectionLayoutCache(SectionLayoutCache.DEFAULT_MAX_PAGES, new File(app.getCacheDir(), "layouts"),
+                    SectionLayoutCache.DEFAULT_MAX_DISK_BYTES, appVersion);
         }
+        return layoutCache;
     }
 
-    /**
-     * FIX: This method has been completely rewritten to more accurately simulate the layout
-     * process, ensuring page numbers in the Table of Contents are correct. It now mirrors
-     * the actual drawing logic from ContentDrawer.
-     */
-    private void simulateLayoutAndBuildToc(OutlineData outlineData, List<String> sectionsContent) {
-        tocItems.clear();
-        int physicalPageNum = 3; // Content starts on physical page 3
-
+    public void createPdf(String pdfTitle, OutlineData outlineData, List<String> sectionsContent, PdfGenerationCallback callback) {
+        Session session = begin(pdfTitle, outlineData);
         for (int i = 0; i < outlineData.getSections().size(); i++) {
-            String sectionTitle = outlineData.getSections().get(i);
-            String sectionContent = sectionsContent.get(i);
-
-            // The drawing logic starts each section on a new page. The simulation must do the same.
-            if (i > 0) {
-                physicalPageNum++;
-            }
-
-            // Add TOC item for the start of the section. The logical page number is physical page - 2.
-            tocItems.add(new TocItem(sectionTitle, physicalPageNum - 2, PaintManager.MARGIN));
-
-            // Simulate drawing this section to find out how many pages it spans
-            Object[] simResult = simulateSection(sectionTitle, sectionContent, PaintManager.MARGIN, physicalPageNum);
-            physicalPageNum = (int) simResult[1]; // Update page number to the last page the section occupied
+            session.appendSection(i, sectionsContent.get(i));
         }
+        session.finish(callback);
     }
 
     /**
-     * NEW: Simulates the layout of a full section to predict page breaks accurately.
+     * Starts an incremental generation: sections are laid out in the background as they are
+     * appended, and {@link Session#finish} only merges them, paints and writes the file.
      */
-    private Object[] simulateSection(String sectionTitle, String sectionContent, float yPos, int currentPageNum) {
-        // 1. Simulate Section Title
-        Object[] titleResult = simulateSectionTitle(sectionTitle, yPos, currentPageNum);
-        yPos = (float) titleResult[0];
-        currentPageNum = (int) titleResult[1];
-
-        // 2. Simulate Content Blocks
-        String[] contentBlocks = sectionContent.split("\n\\s*\n");
-        for (String block : contentBlocks) {
-            String trimmedBlock = block.trim();
-            if (trimmedBlock.isEmpty()) continue;
-
-            // Avoid re-drawing the title if it's also in the content
-            if (trimmedBlock.equals(sectionTitle) ||
-                    trimmedBlock.startsWith("#") && trimmedBlock.substring(trimmedBlock.indexOf(" ") + 1).equals(sectionTitle)) {
-                continue;
-            }
+    public Session begin(String pdfTitle, OutlineData outlineData) {
+        return new Session(pdfTitle, outlineData);
+    }
 
-            Object[] blockResult;
-            if (trimmedBlock.startsWith("[[TABLE")) {
-                blockResult = simulateTableBlock(trimmedBlock, yPos, currentPageNum);
-            } else if (trimmedBlock.startsWith("[[CHART")) {
-                blockResult = simulateVisualBlock(yPos, currentPageNum, 250); // Match drawChart chartHeight
-            } else {
-                blockResult = simulateTextBlock(trimmedBlock, yPos, currentPageNum);
+    public class Session {
+        private final String pdfTitle;
+        private final OutlineData outlineData;
+        private final TextMeasureCache measureCache = new TextMeasureCache(paintManager);
+        private final ContentDrawer contentDrawer = new ContentDrawer(paintManager, measureCache);
+        private final List<Future<SectionLayout>> sections = new ArrayList<>();
+        private boolean winAnsiText;
+
+        private Session(String pdfTitle, OutlineData outlineData) {
+            this.pdfTitle = pdfTitle;
+            this.outlineData = outlineData;
+            winAnsiText = StreamingPdfWriter.canEncode(pdfTitle);
+            for (int i = 0; i < outlineData.getSections().size(); i++) {
+                sections.add(null);
+                winAnsiText &= StreamingPdfWriter.canEncode(outlineData.getSections().get(i));
             }
-            yPos = (float) blockResult[0];
-            currentPageNum = (int) blockResult[1];
         }
-        return new Object[]{yPos, currentPageNum};
-    }
 
-    /**
-     * NEW: Simulates the layout of a section title.
-     */
-    private Object[] simulateSectionTitle(String title, float yPos, int currentPageNum) {
-        Paint paint = paintManager.getSectionTitlePaint();
-        List<String> lines = DrawUtils.splitTextIntoLines(title, paint, PaintManager.CONTENT_WIDTH);
-        for (String line : lines) {
-            float lineHeight = paint.descent() - paint.ascent();
-            if (yPos + lineHeight > PaintManager.PAGE_HEIGHT - PaintManager.MARGIN) {
-                currentPageNum++;
-                yPos = PaintManager.MARGIN;
-            }
-            yPos += lineHeight * PaintManager.LINE_HEIGHT_MULTIPLIER;
+        /** Queues layout of one section's markdown; sections may arrive in any order. */
+        public synchronized void appendSection(int index, String markdown) {
+            String sectionTitle = outlineData.getSections().get(index);
+            if (winAnsiText) winAnsiText = StreamingPdfWriter.canEncode(markdown);
+            sections.set(index, LAYOUT_POOL.submit(() -> layoutSection(contentDrawer, sectionTitle, markdown)));
         }
-        yPos += PaintManager.SECTION_TITLE_BOTTOM_MARGIN;
-        return new Object[]{yPos, currentPageNum};
-    }
 
-    /**
-     * NEW: Simulates the layout of a standard text block, including headings and lists.
-     */
-    private Object[] simulateTextBlock(String text, float yPos, int currentPageNum) {
-        Paint paintForBlock;
-        boolean isHeading = false;
-        if (text.startsWith("###")) { paintForBlock = paintManager.getH3Paint(); text = text.substring(3).trim(); isHeading = true; }
-        else if (text.startsWith("##")) { paintForBlock = paintManager.getH2Paint(); text = text.substring(2).trim(); isHeading = true; }
-        else if (text.startsWith("#")) { paintForBlock = paintManager.getH1Paint(); text = text.substring(1).trim(); isHeading = true; }
-        else { paintForBlock = paintManager.getTextPaint(); }
-
-        yPos += isHeading ? PaintManager.HEADING_TOP_MARGIN : 0;
-
-        String[] linesInBlock = text.split("\n");
-        for (String line : linesInBlock) {
-            if (line.trim().isEmpty()) continue;
-
-            float effectiveContentWidth = PaintManager.CONTENT_WIDTH;
-            Pattern bulletPattern = Pattern.compile("^[*-]\\s(.+)");
-            Pattern numListPattern = Pattern.compile("^(\\d+)\\.\\s(.+)");
-            if (bulletPattern.matcher(line.trim()).matches() || numListPattern.matcher(line.trim()).matches()) {
-                effectiveContentWidth -= PaintManager.LIST_ITEM_INDENT;
-            }
+        /** Waits for outstanding section layouts, then writes the PDF. Sections never appended come out empty. */
+        public void finish(PdfGenerationCallback callback) {
+            PageSink sink = null;
+            try {
+                DocumentLayout layout = awaitLayout();
 
-            List<String> wrappedLines = DrawUtils.splitTextIntoLines(line, paintForBlock, effectiveContentWidth);
-            for (String wrappedLine : wrappedLines) {
-                float lineHeight = paintForBlock.descent() - paintForBlock.ascent();
-                if (yPos + lineHeight > PaintManager.PAGE_HEIGHT - PaintManager.MARGIN) {
-                    currentPageNum++;
-                    yPos = PaintManager.MARGIN;
+                File file = resolveOutputFile(pdfTitle);
+                if (file == null) {
+                    callback.onPdfGenerationFailed("Failed to create directory for PDF.");
+                    return;
+                }
+                boolean streamable;
+                synchronized (this) {
+                    streamable = winAnsiText;
                 }
-                yPos += lineHeight * PaintManager.LINE_HEIGHT_MULTIPLIER;
+                sink = openSink(file, layout.getPages().size(), streamable);
+                paintDocument(sink, layout);
+                sink.finish();
+                callback.onPdfGenerated(file.getAbsolutePath(), pdfTitle);
+
+            } catch (IOException e) {
+                Log.e("PdfGenerator", "Error saving PDF: " + e.getMessage(), e);
+                callback.onPdfGenerationFailed(e.getMessage());
+            } catch (Exception e) {
+                Log.e("PdfGenerator", "Error during PDF creation process", e);
+                callback.onPdfGenerationFailed("An unexpected error occurred: " + e.getMessage());
+            } finally {
+                closeQuietly(sink);
             }
         }
-        yPos += PaintManager.PARAGRAPH_SPACING;
-        return new Object[]{yPos, currentPageNum};
-    }
-
-    /**
-     * NEW: Simulates the layout of a fixed-height visual block like a chart or table.
-     */
-    private Object[] simulateVisualBlock(float yPos, int currentPageNum, float height) {
-        float titleHeight = (paintManager.getChartTitlePaint().descent() - paintManager.getChartTitlePaint().ascent()) * PaintManager.LINE_HEIGHT_MULTIPLIER;
-        float totalHeight = PaintManager.VISUAL_TITLE_MARGIN + titleHeight + height + PaintManager.VISUAL_BOTTOM_MARGIN;
 
-        if (yPos + totalHeight > PaintManager.PAGE_HEIGHT - PaintManager.MARGIN) {
-            currentPageNum++;
-            yPos = PaintManager.MARGIN;
+        /**
+         * Lays out and paints every page into {@code sink} without writing a file or calling
+         * {@link PageSink#finish()}; used to drive {@link RecordingTarget} and {@link NullTarget}.
+         */
+        public DocumentLayout render(PageSink sink) throws InterruptedException, ExecutionException, IOException {
+            DocumentLayout layout = awaitLayout();
+            paintDocument(sink, layout);
+            return layout;
         }
-        yPos += totalHeight;
-        return new Object[]{yPos, currentPageNum};
-    }
 
-    /**
-     * NEW: Simulates the layout of a table block, including title, header, rows, page breaks, and
-     * repeating the header on new pages. Mirrors logic from ContentDrawer.drawTable/drawRow.
-     */
-    private Object[] simulateTableBlock(String tableString, float yPos, int currentPageNum) {
-        try {
-            // Parse the table description
-            String raw = tableString.replace("[[TABLE|", "").replace("]]", "");
-            String[] parts = raw.split("\\|");
-            if (parts.length < 3) {
-                // If format is invalid, assume small placeholder height
-                return simulateVisualBlock(yPos, currentPageNum, 100);
-            }
+        private void paintDocument(PageSink sink, DocumentLayout layout) throws IOException {
+            // Page 1: Cover Page
+            drawCoverPage(sink, pdfTitle, measureCache);
 
-            String title = parts[0].trim();
-            String[] headers = parts[1].split(",");
-            List<String[]> rows = new ArrayList<>();
-            for (int i = 2; i < parts.length; i++) {
-                rows.add(parts[i].split(","));
-            }
+            // Page 2: Table of Contents
+            drawTableOfContentsPage(sink, layout.getTocItems(), measureCache);
 
-            // Before drawing the title, ContentDrawer ensures there is some minimum space (60)
-            if (yPos + 60 > PaintManager.PAGE_HEIGHT - PaintManager.MARGIN) {
-                currentPageNum++;
-                yPos = PaintManager.MARGIN;
-            }
+            // Pages 3 onwards: replay the measured content
+            paintContentPages(sink, layout);
+        }
 
-            // Title area
-            yPos += PaintManager.VISUAL_TITLE_MARGIN;
-            float titleLineHeight = (paintManager.getChartTitlePaint().descent() - paintManager.getChartTitlePaint().ascent())
-                    * PaintManager.LINE_HEIGHT_MULTIPLIER;
-            // Title may wrap; approximate using splitTextIntoLines for accuracy
-            List<String> titleLines = DrawUtils.splitTextIntoLines(title, paintManager.getChartTitlePaint(), PaintManager.CONTENT_WIDTH);
-            if (titleLines.isEmpty()) {
-                yPos += titleLineHeight; // fallback at least one line
-            } else {
-                yPos += titleLines.size() * titleLineHeight;
+        private DocumentLayout awaitLayout() throws InterruptedException, ExecutionException {
+            // Page numbers for the TOC come from the section page counts, in outline order
+            DocumentLayout layout = new DocumentLayout();
+            for (int i = 0; i < sections.size(); i++) {
+                layout.addSection(awaitSection(i));
             }
+            return layout;
+        }
 
-            // Column widths: equal distribution as in ContentDrawer.calculateColumnWidths
-            int numCols = Math.max(1, headers.length);
-            float[] colWidths = new float[numCols];
-            for (int i = 0; i < numCols; i++) {
-                colWidths[i] = PaintManager.CONTENT_WIDTH / numCols;
+        /** Drops queued section layouts, e.g. when content generation failed. */
+        public synchronized void cancel() {
+            for (Future<SectionLayout> section : sections) {
+                if (section != null) section.cancel(false);
             }
+        }
 
-            // Helper to compute row height given data and paint
-            java.util.function.BiFunction<String[], Paint, Float> computeRowHeight = (rowData, textPaint) -> {
-                float cellPadding = PaintManager.CELL_PADDING;
-                float maxTextHeight = 0f;
-                for (int c = 0; c < numCols; c++) {
-                    float colWidth = colWidths[c] - (2 * cellPadding);
-                    String cell = (c < rowData.length) ? rowData[c].trim() : "";
-                    List<String> wrapped = DrawUtils.splitTextIntoLines(cell, textPaint, Math.max(0, colWidth));
-                    float lineHeight = (textPaint.descent() - textPaint.ascent()) * PaintManager.LINE_HEIGHT_MULTIPLIER;
-                    float textHeight = wrapped.isEmpty() ? lineHeight : wrapped.size() * lineHeight;
-                    if (textHeight > maxTextHeight) maxTextHeight = textHeight;
-                }
-                return maxTextHeight + (2 * cellPadding);
-            };
-
-            // Header row
-            Paint headerPaint = paintManager.getTableHeaderPaint();
-            float headerRowHeight = computeRowHeight.apply(headers, headerPaint);
-            if (yPos + headerRowHeight > PaintManager.PAGE_HEIGHT - PaintManager.MARGIN) {
-                currentPageNum++;
-                yPos = PaintManager.MARGIN;
+        private SectionLayout awaitSection(int index) throws InterruptedException, ExecutionException {
+            Future<SectionLayout> section;
+            synchronized (this) {
+                section = sections.get(index);
             }
-            yPos += headerRowHeight;
-
-            // Data rows
-            Paint cellPaint = paintManager.getTableCellPaint();
-            for (String[] row : rows) {
-                float rowHeight = computeRowHeight.apply(row, cellPaint);
-                if (yPos + rowHeight > PaintManager.PAGE_HEIGHT - PaintManager.MARGIN) {
-                    // New page and repeat header
-                    currentPageNum++;
-                    yPos = PaintManager.MARGIN;
-
-                    // Ensure header fits on the new page
-                    if (yPos + headerRowHeight > PaintManager.PAGE_HEIGHT - PaintManager.MARGIN) {
-                        // Extreme case: if even header doesn't fit, start another page
-                        currentPageNum++;
-                        yPos = PaintManager.MARGIN;
-                    }
-                    yPos += headerRowHeight;
-                }
-                yPos += rowHeight;
+            if (section == null) {
+                return layoutSection(contentDrawer, outlineData.getSections().get(index), "");
             }
+            return section.get();
+        }
+    }
 
-            // Bottom margin after the table
-            yPos += PaintManager.VISUAL_BOTTOM_MARGIN;
+    private SectionLayout layoutSection(ContentDrawer contentDrawer, String sectionTitle, String sectionContent) {
+        SectionLayoutCache.Key key = SectionLayoutCache.keyOf(sectionTitle, sectionContent, paintManager.getLayoutFingerprint());
+        SectionLayout cached = sectionCache.get(key);
+        if (cached != null) return cached;
+
+        SectionLayout section = new SectionLayout(InlineLexer.strip(sectionTitle, paintManager));
+        LayoutCursor cursor = new LayoutCursor(section);
+        cursor.startPage();
+        contentDrawer.layoutSection(cursor, sectionTitle, sectionContent, true);
+        sectionCache.put(key, section);
+        return section;
+    }
 
-            return new Object[]{yPos, currentPageNum};
-        } catch (Exception ex) {
-            // On any parsing error, fallback to a generic visual block height
-            return simulateVisualBlock(yPos, currentPageNum, 120);
+    /** {@code winAnsiText} says whether all of the document's text can be shown by {@link StreamingPdfWriter}. */
+    private PageSink openSink(File file, int contentPages, boolean winAnsiText) throws IOException {
+        if (contentPages <= STREAMING_PAGE_THRESHOLD || !winAnsiText) {
+            return new PdfDocumentSink(paintManager, file);
         }
+        return new StreamingPdfWriter(paintManager, fontId -> {
+            int resource = PaintManager.getFontResource(fontId);
+            return resource == 0 ? null : context.getResources().openRawResource(resource);
+        }, file);
     }
 
-
-    private void drawCoverPage(PdfDocument document, String title) {
-        PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(PaintManager.PAGE_WIDTH, PaintManager.PAGE_HEIGHT, 1).create();
-        PdfDocument.Page page = document.startPage(pageInfo);
-        Canvas canvas = page.getCanvas();
+    private void drawCoverPage(PageSink sink, String title, TextMeasureCache measureCache) throws IOException {
+        RenderTarget target = sink.beginPage(1);
         Paint titlePaint = paintManager.getTitlePaint();
 
         float centerX = PaintManager.PAGE_WIDTH / 2f;
         float centerY = PaintManager.PAGE_HEIGHT / 2f;
         float maxWidth = PaintManager.CONTENT_WIDTH - 80;
 
-        List<String> titleLines = DrawUtils.splitTextIntoLines(title, titlePaint, maxWidth);
+        WrappedText titleLines = measureCache.wrap(title, PaintManager.PAINT_TITLE, maxWidth);
 
         float lineHeight = (titlePaint.descent() - titlePaint.ascent());
-        float totalHeight = (titleLines.size() * lineHeight * PaintManager.LINE_HEIGHT_MULTIPLIER) - (lineHeight * (PaintManager.LINE_HEIGHT_MULTIPLIER - 1.0f));
+        float totalHeight = (titleLines.getLineCount() * lineHeight * PaintManager.LINE_HEIGHT_MULTIPLIER) - (lineHeight * (PaintManager.LINE_HEIGHT_MULTIPLIER - 1.0f));
 
         float startY = centerY - (totalHeight / 2) - titlePaint.ascent();
 
-        for (String line : titleLines) {
-            canvas.drawText(line, centerX, startY, titlePaint);
+        for (int i = 0; i < titleLines.getLineCount(); i++) {
+            target.drawText(titleLines.getText().getText(), titleLines.getLineStart(i), titleLines.getLineEnd(i), centerX, startY, PaintManager.PAINT_TITLE);
             startY += lineHeight * PaintManager.LINE_HEIGHT_MULTIPLIER;
         }
 
-        document.finishPage(page);
+        sink.finishPage();
     }
 
-    private void drawTableOfContentsPage(PdfDocument document) {
-        PdfDocument.PageInfo tocPageInfo = new PdfDocument.PageInfo.Builder(PaintManager.PAGE_WIDTH, PaintManager.PAGE_HEIGHT, 2).create();
-        PdfDocument.Page tocPage = document.startPage(tocPageInfo);
-        drawTableOfContents(tocPage.getCanvas());
-        document.finishPage(tocPage);
+    private void drawTableOfContentsPage(PageSink sink, List<TocItem> tocItems, TextMeasureCache measureCache) throws IOException {
+        drawTableOfContents(sink.beginPage(2), tocItems, measureCache);
+        sink.finishPage();
     }
 
-    private void drawTableOfContents(Canvas canvas) {
+    private void drawTableOfContents(RenderTarget target, List<TocItem> tocItems, TextMeasureCache measureCache) {
         float yPosition = PaintManager.MARGIN + 30;
-        canvas.drawText("Table of Contents", PaintManager.PAGE_WIDTH / 2f, yPosition, paintManager.getTocTitlePaint());
+        drawString(target, "Table of Contents", PaintManager.PAGE_WIDTH / 2f, yPosition, PaintManager.PAINT_TOC_TITLE);
         yPosition += 60;
 
         Paint textPaint = paintManager.getTocTextPaint();
@@ -340,68 +257,64 @@ public class PdfGenerator {
             float numWidth = numPaint.measureText(pageNumStr);
             float availableWidth = rightMargin - PaintManager.MARGIN - numWidth - 20;
 
-            String truncatedTitle = DrawUtils.truncateText(item.getTitle(), textPaint, availableWidth);
-            canvas.drawText(truncatedTitle, PaintManager.MARGIN, yPosition, textPaint);
-            canvas.drawText(pageNumStr, rightMargin, yPosition, numPaint);
+            // A title that wraps to one line fits and is drawn from the cache; longer ones are ellipsized
+            WrappedText title = measureCache.wrap(item.getTitle(), PaintManager.PAINT_TOC_TEXT, availableWidth);
+            float titleWidth = 0f;
+            if (title.getLineCount() == 1) {
+                DrawUtils.drawStyledText(target, title.getText(), title.getLineStart(0), title.getLineEnd(0), title.getRunOffsets(0),
+                        PaintManager.MARGIN, yPosition);
+                titleWidth = title.getLineWidth(0);
+            } else if (title.getLineCount() > 1) {
+                String truncatedTitle = DrawUtils.truncateText(item.getTitle(), textPaint, availableWidth);
+                drawString(target, truncatedTitle, PaintManager.MARGIN, yPosition, PaintManager.PAINT_TOC_TEXT);
+                titleWidth = textPaint.measureText(truncatedTitle);
+            }
+            drawString(target, pageNumStr, rightMargin, yPosition, PaintManager.PAINT_TOC_NUMBER);
 
-            float titleWidth = textPaint.measureText(truncatedTitle);
             float startX = PaintManager.MARGIN + titleWidth + 5;
             float endX = rightMargin - numWidth - 5;
             if (startX < endX) {
-                canvas.drawPath(DrawUtils.createDottedLinePath(startX, endX, yPosition - (lineHeight / 4)), paintManager.getDottedLinePaint());
+                float dotY = yPosition - (lineHeight / 4);
+                target.drawLine(startX, dotY, endX, dotY, PaintManager.PAINT_DOTTED_LINE);
             }
 
             yPosition += lineHeight * 2.0f;
         }
     }
 
-    private void drawAllContentPages(PdfDocument document, OutlineData outlineData, List<String> sectionsContent) {
-        ContentDrawer contentDrawer = new ContentDrawer(paintManager);
-        int physicalPageNum = 3;
-        PdfDocument.Page currentPage = null;
-
-        for (int i = 0; i < outlineData.getSections().size(); i++) {
-            if (currentPage != null) {
-                PageHelper.drawPageNumber(currentPage.getCanvas(), currentPage.getInfo().getPageNumber(), paintManager);
-                document.finishPage(currentPage);
+    private void paintContentPages(PageSink sink, DocumentLayout layout) throws IOException {
+        List<LayoutPage> pages = layout.getPages();
+        for (int i = 0; i < pages.size(); i++) {
+            int pageNumber = layout.getPageNumber(i);
+            RenderTarget target = sink.beginPage(pageNumber);
+            for (LayoutBlock block : pages.get(i).getBlocks()) {
+                block.paint(target);
             }
-
-            PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(PaintManager.PAGE_WIDTH, PaintManager.PAGE_HEIGHT, physicalPageNum).create();
-            currentPage = document.startPage(pageInfo);
-
-            Object[] result = contentDrawer.drawSection(document, currentPage,
-                    outlineData.getSections().get(i),
-                    sectionsContent.get(i),
-                    PaintManager.MARGIN,
-                    physicalPageNum,
-                    true);
-
-            currentPage = (PdfDocument.Page) result[0];
-            // The next page number will be the current page's number + 1
-            physicalPageNum = currentPage.getInfo().getPageNumber() + 1;
+            PageHelper.drawPageNumber(target, pageNumber);
+            sink.finishPage();
         }
+    }
 
-        if (currentPage != null) {
-            PageHelper.drawPageNumber(currentPage.getCanvas(), currentPage.getInfo().getPageNumber(), paintManager);
-            document.finishPage(currentPage);
-        }
+    private static void drawString(RenderTarget target, String text, float x, float y, int paintId) {
+        target.drawText(text, 0, text.length(), x, y, paintId);
     }
 
-    private void savePdf(PdfDocument document, String pdfTitle, PdfGenerationCallback callback) {
+    /** The cache file for {@code pdfTitle}, or null if its directory cannot be created. */
+    private File resolveOutputFile(String pdfTitle) {
         String fileName = pdfTitle.replaceAll("[^a-zA-Z0-9.-]", "_") + ".pdf";
         File pdfDir = new File(context.getCacheDir(), "pdfs");
         if (!pdfDir.exists() && !pdfDir.mkdirs()) {
-            callback.onPdfGenerationFailed("Failed to create directory for PDF.");
-            return;
+            return null;
         }
-        File file = new File(pdfDir, fileName);
+        return new File(pdfDir, fileName);
+    }
 
-        try (FileOutputStream fos = new FileOutputStream(file)) {
-            document.writeTo(fos);
-            callback.onPdfGenerated(file.getAbsolutePath(), pdfTitle);
+    private static void closeQuietly(PageSink sink) {
+        if (sink == null) return;
+        try {
+            sink.close();
         } catch (IOException e) {
-            Log.e("PdfGenerator", "Error saving PDF: " + e.getMessage(), e);
-            callback.onPdfGenerationFailed(e.getMessage());
+            Log.w("PdfGenerator", "Error closing PDF output", e);
         }
     }
 }
@@ -0,0 +1,323 @@
+package com.pdf.ai;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * {@link RenderTarget} and {@link PageSink} that records draw ops into flat primitive arrays instead
+ * of drawing them, so layout output can be inspected, compared or replayed off-device.
+ *
+ * <p>Each op takes {@link #OP_STRIDE} ints: op code, paint id (the page number for
+ * {@link #OP_PAGE}), offset of its arguments in the float store, and start and end of its text in
+ * the char store. Argument order matches the corresponding {@link RenderTarget} method.
+ */
+public class RecordingTarget implements RenderTarget, PageSink {
+
+    public static final int OP_PAGE = 0;
+    public static final int OP_TEXT = 1;
+    public static final int OP_LINE = 2;
+    public static final int OP_RECT = 3;
+    public static final int OP_CIRCLE = 4;
+    public static final int OP_WEDGE = 5;
+    public static final int OP_POLYLINE = 6;
+    public static final int OP_SAVE_ROTATE = 7;
+    public static final int OP_RESTORE = 8;
+    public static final int OP_CODE_COUNT = 9;
+
+    private static final int OP_STRIDE = 5;
+    // Float arguments of each op code; -1 for polylines, which take any even number
+    private static final int[] FLOAT_ARGS = {0, 2, 4, 4, 3, 6, -1, 3, 0};
+
+    private int[] ops = new int[OP_STRIDE * 256];
+    private int opCount;
+    private float[] floats = new float[1024];
+    private int floatCount;
+    private final StringBuilder chars = new StringBuilder(4096);
+
+    @Override
+    public RenderTarget beginPage(int pageNumber) {
+        record(OP_PAGE, pageNumber, 0);
+        return this;
+    }
+
+    @Override
+    public void finishPage() {
+    }
+
+    @Override
+    public void finish() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void drawText(CharSequence text, int start, int end, float x, float y, int paintId) {
+        int textStart = chars.length();
+        chars.append(text, start, end);
+        record(OP_TEXT, paintId, 2);
+        floats[floatCount - 2] = x;
+        floats[floatCount - 1] = y;
+        ops[opCount * OP_STRIDE - 2] = textStart;
+        ops[opCount * OP_STRIDE - 1] = chars.length();
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, int paintId) {
+        record(OP_LINE, paintId, 4);
+        setFloats(startX, startY, stopX, stopY);
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, int paintId) {
+        record(OP_RECT, paintId, 4);
+        setFloats(left, top, right, bottom);
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, int paintId) {
+        record(OP_CIRCLE, paintId, 3);
+        floats[floatCount - 3] = cx;
+        floats[floatCount - 2] = cy;
+        floats[floatCount - 1] = radius;
+    }
+
+    @Override
+    public void drawWedge(float left, float top, float right, float bottom, float startAngle, float sweepAngle, int paintId) {
+        record(OP_WEDGE, paintId, 6);
+        floats[floatCount - 6] = left;
+        floats[floatCount - 5] = top;
+        floats[floatCount - 4] = right;
+        floats[floatCount - 3] = bottom;
+        floats[floatCount - 2] = startAngle;
+        floats[floatCount - 1] = sweepAngle;
+    }
+
+    @Override
+    public void drawPolyline(float[] points, int count, int paintId) {
+        record(OP_POLYLINE, paintId, 2 * count);
+        System.arraycopy(points, 0, floats, floatCount - 2 * count, 2 * count);
+    }
+
+    @Override
+    public void saveAndRotate(float degrees, float px, float py) {
+        record(OP_SAVE_ROTATE, 0, 3);
+        floats[floatCount - 3] = degrees;
+        floats[floatCount - 2] = px;
+        floats[floatCount - 1] = py;
+    }
+
+    @Override
+    public void restore() {
+        record(OP_RESTORE, 0, 0);
+    }
+
+    public int getOpCount() {
+        return opCount;
+    }
+
+    public int getOpCode(int op) {
+        return ops[op * OP_STRIDE];
+    }
+
+    public int getPaintId(int op) {
+        return ops[op * OP_STRIDE + 1];
+    }
+
+    /** Page number of an {@link #OP_PAGE} op. */
+    public int getPageNumber(int op) {
+        return ops[op * OP_STRIDE + 1];
+    }
+
+    public int getFloatCount(int op) {
+        return floatEnd(op) - ops[op * OP_STRIDE + 2];
+    }
+
+    public float getFloat(int op, int index) {
+        return floats[ops[op * OP_STRIDE + 2] + index];
+    }
+
+    /** Text of an {@link #OP_TEXT} op; allocates, so meant for inspection rather than hot paths. */
+    public String getText(int op) {
+        return chars.substring(ops[op * OP_STRIDE + 3], ops[op * OP_STRIDE + 4]);
+    }
+
+    /** Replays the recorded ops onto {@code target}, skipping page markers. */
+    public void replay(RenderTarget target) {
+        replay(target, 0f);
+    }
+
+    /**
+     * Replays the recorded ops moved down by {@code dy}, so content recorded at the top of a page can
+     * be placed anywhere. Only reads the recording, so several threads may replay it at once.
+     */
+    public void replay(RenderTarget target, float dy) {
+        float[] points = null;
+        for (int op = 0; op < opCount; op++) {
+            int base = ops[op * OP_STRIDE + 2];
+            int paintId = ops[op * OP_STRIDE + 1];
+            switch (ops[op * OP_STRIDE]) {
+                case OP_TEXT:
+                    target.drawText(chars, ops[op * OP_STRIDE + 3], ops[op * OP_STRIDE + 4], floats[base], floats[base + 1] + dy, paintId);
+                    break;
+                case OP_LINE:
+                    target.drawLine(floats[base], floats[base + 1] + dy, floats[base + 2], floats[base + 3] + dy, paintId);
+                    break;
+                case OP_RECT:
+                    target.drawRect(floats[base], floats[base + 1] + dy, floats[base + 2], floats[base + 3] + dy, paintId);
+                    break;
+                case OP_CIRCLE:
+                    target.drawCircle(floats[base], floats[base + 1] + dy, floats[base + 2], paintId);
+                    break;
+                case OP_WEDGE:
+                    target.drawWedge(floats[base], floats[base + 1] + dy, floats[base + 2], floats[base + 3] + dy, floats[base + 4], floats[base + 5], paintId);
+                    break;
+                case OP_POLYLINE:
+                    int length = floatEnd(op) - base;
+                    if (points == null || points.length < length) points = new float[length];
+                    for (int i = 0; i < length; i += 2) {
+                        points[i] = floats[base + i];
+                        points[i + 1] = floats[base + i + 1] + dy;
+                    }
+                    target.drawPolyline(points, length / 2, paintId);
+                    break;
+                case OP_SAVE_ROTATE:
+                    target.saveAndRotate(floats[base], floats[base + 1], floats[base + 2] + dy);
+                    break;
+                case OP_RESTORE:
+                    target.restore();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /** Drops all recorded ops but keeps the arrays for reuse. */
+    public void reset() {
+        opCount = 0;
+        floatCount = 0;
+        chars.setLength(0);
+    }
+
+    /** Shrinks the stores to the recorded size, for recordings that are kept around. */
+    public void trimToSize() {
+        if (ops.length > opCount * OP_STRIDE) {
+            int[] trimmed = new int[opCount * OP_STRIDE];
+            System.arraycopy(ops, 0, trimmed, 0, trimmed.length);
+            ops = trimmed;
+        }
+        if (floats.length > floatCount) {
+            float[] trimmed = new float[floatCount];
+            System.arraycopy(floats, 0, trimmed, 0, floatCount);
+            floats = trimmed;
+        }
+        chars.trimToSize();
+    }
+
+    /** Writes the recording in a compact binary form that {@link #readFrom(DataInput, long)} reads back. */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(opCount);
+        for (int i = 0; i < opCount * OP_STRIDE; i++) {
+            out.writeInt(ops[i]);
+        }
+        out.writeInt(floatCount);
+        for (int i = 0; i < floatCount; i++) {
+            out.writeFloat(floats[i]);
+        }
+        out.writeInt(chars.length());
+        out.writeChars(chars.toString());
+    }
+
+    /**
+     * Reads a recording written by {@link #writeTo}. Counts whose data would not fit in
+     * {@code maxBytes}, and ops that could not be replayed, throw {@link IOException}, so a damaged
+     * file fails here rather than by running out of memory or while drawing.
+     */
+    public static RecordingTarget readFrom(DataInput in, long maxBytes) throws IOException {
+        RecordingTarget recording = new RecordingTarget();
+        int opCount = readCount(in, OP_STRIDE * 4L, maxBytes);
+        recording.ops = new int[opCount * OP_STRIDE];
+        for (int i = 0; i < recording.ops.length; i++) {
+            recording.ops[i] = in.readInt();
+        }
+        recording.opCount = opCount;
+        int floatCount = readCount(in, 4L, maxBytes);
+        recording.floats = new float[floatCount];
+        for (int i = 0; i < floatCount; i++) {
+            recording.floats[i] = in.readFloat();
+        }
+        recording.floatCount = floatCount;
+        int charCount = readCount(in, 2L, maxBytes);
+        recording.chars.ensureCapacity(charCount);
+        for (int i = 0; i < charCount; i++) {
+            recording.chars.append(in.readChar());
+        }
+        recording.chars.trimToSize();
+        recording.validate();
+        return recording;
+    }
+
+    private static int readCount(DataInput in, long bytesEach, long maxBytes) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count * bytesEach > maxBytes) throw new IOException("Bad count " + count);
+        return count;
+    }
+
+    /** Checks each op's code, paint id, float arguments and text against what {@link #replay} reads. */
+    private void validate() throws IOException {
+        for (int op = 0; op < opCount; op++) {
+            int i = op * OP_STRIDE;
+            int opCode = ops[i];
+            if (opCode < 0 || opCode >= OP_CODE_COUNT) throw new IOException("Bad op code " + opCode + " at op " + op);
+            int base = ops[i + 2];
+            int end = op + 1 < opCount ? ops[i + OP_STRIDE + 2] : floatCount;
+            if (base < 0 || base > end || end > floatCount) throw new IOException("Bad float range at op " + op);
+            int args = end - base;
+            if (FLOAT_ARGS[opCode] < 0 ? args % 2 != 0 : args != FLOAT_ARGS[opCode]) {
+                throw new IOException("Bad float count " + args + " at op " + op);
+            }
+            if (opCode >= OP_TEXT && opCode <= OP_POLYLINE && (ops[i + 1] < 0 || ops[i + 1] >= PaintManager.PAINT_COUNT)) {
+                throw new IOException("Bad paint id " + ops[i + 1] + " at op " + op);
+            }
+            if (opCode == OP_TEXT && (ops[i + 3] < 0 || ops[i + 3] > ops[i + 4] || ops[i + 4] > chars.length())) {
+                throw new IOException("Bad text range at op " + op);
+            }
+        }
+    }
+
+    private int floatEnd(int op) {
+        return op + 1 < opCount ? ops[(op + 1) * OP_STRIDE + 2] : floatCount;
+    }
+
+    private void setFloats(float a, float b, float c, float d) {
+        floats[floatCount - 4] = a;
+        floats[floatCount - 3] = b;
+        floats[floatCount - 2] = c;
+        floats[floatCount - 1] = d;
+    }
+
+    /** Appends an op and reserves {@code floatArgs} slots at the end of the float store. */
+    private void record(int opCode, int paintId, int floatArgs) {
+        if ((opCount + 1) * OP_STRIDE > ops.length) {
+            int[] grown = new int[Math.max(ops.length * 2, OP_STRIDE * 16)];
+            System.arraycopy(ops, 0, grown, 0, ops.length);
+            ops = grown;
+        }
+        if (floatCount + floatArgs > floats.length) {
+            float[] grown = new float[Math.max(floats.length * 2, floatCount + floatArgs)];
+            System.arraycopy(floats, 0, grown, 0, floatCount);
+            floats = grown;
+        }
+        int i = opCount * OP_STRIDE;
+        ops[i] = opCode;
+        ops[i + 1] = paintId;
+        ops[i + 2] = floatCount;
+        ops[i + 3] = 0;
+        ops[i + 4] = 0;
+        opCount++;
+        floatCount += floatArgs;
+    }
+}
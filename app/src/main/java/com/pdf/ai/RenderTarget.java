@@ -0,0 +1,28 @@
+package com.pdf.ai;
+
+/**
+ * Drawing surface for one page. Coordinates are in points with the origin at the top-left corner,
+ * as on an Android {@code Canvas}; paints are {@code PaintManager.PAINT_*} ids. Text is positioned
+ * on its baseline and aligned according to the paint's text alignment.
+ */
+public interface RenderTarget {
+
+    void drawText(CharSequence text, int start, int end, float x, float y, int paintId);
+
+    void drawLine(float startX, float startY, float stopX, float stopY, int paintId);
+
+    void drawRect(float left, float top, float right, float bottom, int paintId);
+
+    void drawCircle(float cx, float cy, float radius, int paintId);
+
+    /** A pie wedge of the oval in the given bounds; angles in degrees, clockwise from 3 o'clock. */
+    void drawWedge(float left, float top, float right, float bottom, float startAngle, float sweepAngle, int paintId);
+
+    /** Connected line segments through {@code count} points stored as x, y pairs. */
+    void drawPolyline(float[] points, int count, int paintId);
+
+    /** Saves the transform and rotates subsequent drawing by {@code degrees} around (px, py). */
+    void saveAndRotate(float degrees, float px, float py);
+
+    void restore();
+}
@@ -0,0 +1,32 @@
+package com.pdf.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pages of one outline section. Sections always start on a fresh page, so each one is laid out on
+ * its own and numbered only when it is added to a {@link DocumentLayout}.
+ */
+public class SectionLayout {
+    private final String title;
+    private final List<LayoutPage> pages = new ArrayList<>();
+
+    public SectionLayout(String title) {
+        this.title = title;
+    }
+
+    public LayoutPage startPage() {
+        LayoutPage page = new LayoutPage();
+        pages.add(page);
+        return page;
+    }
+
+    /** Title as listed in the table of contents. */
+    public String getTitle() {
+        return title;
+    }
+
+    public List<LayoutPage> getPages() {
+        return pages;
+    }
+}
@@ -0,0 +1,316 @@
+package com.pdf.ai;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * LRU cache of laid out sections, keyed by a 128-bit SHA-256 digest of the section title and markdown
+ * plus the {@link PaintManager#getLayoutFingerprint() layout fingerprint}, so an unchanged section is
+ * reused without measuring anything and only page numbers and the TOC are worked out again. Files on
+ * disk carry the full digest and are checked against it when read. The memory tier is bounded by total
+ * pages.
+ *
+ * <p>With a directory, sections are also written there in the background as one
+ * {@link RecordingTarget} per page, and read back when they are no longer in memory. The directory is
+ * bounded by total file size, oldest files first, and cleared when {@code diskVersion} changes.
+ */
+public class SectionLayoutCache {
+    private static final String TAG = "SectionLayoutCache";
+
+    public static final int DEFAULT_MAX_PAGES = 500;
+    public static final long DEFAULT_MAX_DISK_BYTES = 32L * 1024 * 1024;
+
+    // Sections longer than this stay in memory only; writing them would cost more than laying them out
+    private static final int MAX_DISK_SECTION_PAGES = 50;
+    private static final int FILE_MAGIC = 0x504c4332; // "PLC2"
+    private static final String VERSION_FILE = "version";
+
+    private final int maxPages;
+    private final File directory;
+    private final long maxDiskBytes;
+    private final ExecutorService diskWriter;
+    private final LinkedHashMap<Key, SectionLayout> entries = new LinkedHashMap<>(32, 0.75f, true);
+    private int totalPages;
+    private long hits;
+    private long diskHits;
+    private long misses;
+
+    /** A memory-only cache. */
+    public SectionLayoutCache(int maxPages) {
+        this.maxPages = maxPages;
+        this.directory = null;
+        this.maxDiskBytes = 0;
+        this.diskWriter = null;
+    }
+
+    /** A cache that also keeps sections in {@code directory}; checks the directory, so call it off the main thread. */
+    public SectionLayoutCache(int maxPages, File directory, long maxDiskBytes, long diskVersion) {
+        this.maxPages = maxPages;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.diskWriter = Executors.newSingleThreadExecutor();
+        prepareDirectory(diskVersion);
+    }
+
+    public static Key keyOf(String title, String markdown, long layoutFingerprint) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        update(digest, layoutFingerprint);
+        // Each string is preceded by its length so field boundaries count
+        byte[] titleBytes = title.getBytes(StandardCharsets.UTF_8);
+        update(digest, titleBytes.length);
+        digest.update(titleBytes);
+        byte[] markdownBytes = markdown.getBytes(StandardCharsets.UTF_8);
+        update(digest, markdownBytes.length);
+        digest.update(markdownBytes);
+        byte[] hash = digest.digest();
+        return new Key(toLong(hash, 0), toLong(hash, 8));
+    }
+
+    private static void update(MessageDigest digest, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            digest.update((byte) (value >>> shift));
+        }
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /** The cached layout, from memory or else from disk, or null. */
+    public SectionLayout get(Key key) {
+        synchronized (this) {
+            SectionLayout section = entries.get(key);
+            if (section != null) {
+                hits++;
+                return section;
+            }
+        }
+        SectionLayout section = directory == null ? null : read(key);
+        synchronized (this) {
+            if (section != null) {
+                diskHits++;
+                putInMemory(key, section);
+            } else {
+                misses++;
+            }
+        }
+        return section;
+    }
+
+    /** Stores a finished layout; it must not be changed afterwards. */
+    public void put(Key key, SectionLayout section) {
+        synchronized (this) {
+            putInMemory(key, section);
+        }
+        if (directory != null && section.getPages().size() <= MAX_DISK_SECTION_PAGES) {
+            diskWriter.execute(() -> write(key, section));
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getDiskHitCount() {
+        return diskHits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /** Share of lookups answered from memory or disk. */
+    public synchronized float getHitRatio() {
+        long total = hits + diskHits + misses;
+        return total == 0 ? 0f : (float) (hits + diskHits) / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SectionLayoutCache{hits=" + hits + ", diskHits=" + diskHits + ", misses=" + misses
+                + ", size=" + entries.size() + ", pages=" + totalPages + "}";
+    }
+
+    private void putInMemory(Key key, SectionLayout section) {
+        int pages = section.getPages().size();
+        if (pages > maxPages) return;
+        SectionLayout previous = entries.put(key, section);
+        if (previous != null) totalPages -= previous.getPages().size();
+        totalPages += pages;
+        while (totalPages > maxPages) {
+            Key eldest = entries.keySet().iterator().next();
+            totalPages -= entries.remove(eldest).getPages().size();
+        }
+    }
+
+    private File fileOf(Key key) {
+        return new File(directory, key + ".layout");
+    }
+
+    private SectionLayout read(Key key) {
+        File file = fileOf(key);
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readLong() != key.high || in.readLong() != key.low) return null;
+            SectionLayout section = new SectionLayout(in.readUTF());
+            int pageCount = in.readInt();
+            if (pageCount < 0 || pageCount > MAX_DISK_SECTION_PAGES) throw new IOException("Bad page count " + pageCount);
+            for (int i = 0; i < pageCount; i++) {
+                section.startPage().add(new ReplayBlock(RecordingTarget.readFrom(in, file.length())));
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return section;
+        } catch (IOException | RuntimeException e) {
+            // Anything a damaged file can make the reader throw means the layout is worked out again
+            Log.w(TAG, "Dropping unreadable layout " + file.getName(), e);
+            file.delete();
+            return null;
+        }
+    }
+
+    private void write(Key key, SectionLayout section) {
+        File file = fileOf(key);
+        if (file.exists()) return;
+        File temp = new File(directory, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeLong(key.high);
+            out.writeLong(key.low);
+            out.writeUTF(section.getTitle());
+            out.writeInt(section.getPages().size());
+            RecordingTarget recording = new RecordingTarget();
+            for (LayoutPage page : section.getPages()) {
+                recording.reset();
+                for (LayoutBlock block : page.getBlocks()) {
+                    block.paint(recording);
+                }
+                recording.writeTo(out);
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to write layout " + file.getName(), e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        trimDirectory();
+    }
+
+    /** Deletes the oldest files until the directory fits in {@link #maxDiskBytes}. */
+    private void trimDirectory() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".layout"));
+        if (files == null) return;
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        if (total <= maxDiskBytes) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File f : files) {
+            if (total <= maxDiskBytes) break;
+            total -= f.length();
+            f.delete();
+        }
+    }
+
+    /** Creates the directory and empties it if it was written by another version of the layout code. */
+    private void prepareDirectory(long diskVersion) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create " + directory);
+            return;
+        }
+        File versionFile = new File(directory, VERSION_FILE);
+        try (DataInputStream in = new DataInputStream(new FileInputStream(versionFile))) {
+            if (in.readLong() == diskVersion) return;
+        } catch (IOException ignored) {
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(versionFile))) {
+            out.writeLong(diskVersion);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write " + versionFile, e);
+        }
+    }
+
+    /** The 128-bit digest identifying a section's source and layout settings. */
+    public static final class Key {
+        final long high;
+        final long low;
+
+        Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return high == other.high && low == other.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (low ^ (low >>> 32));
+        }
+
+        /** 32 hex digits; also the file name of the entry on disk. */
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%016x%016x", high, low);
+        }
+    }
+
+    /** A page read back from disk, drawn by replaying its recording. */
+    private static class ReplayBlock extends LayoutBlock {
+        private final RecordingTarget recording;
+
+        ReplayBlock(RecordingTarget recording) {
+            this.recording = recording;
+        }
+
+        @Override
+        public void paint(RenderTarget target) {
+            recording.replay(target);
+        }
+    }
+}
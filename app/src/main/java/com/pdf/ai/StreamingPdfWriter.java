@@ -0,0 +1,558 @@
+package com.pdf.ai;
+
+import android.graphics.Paint;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+/**
+ * Pure-Java {@link PageSink} that streams the PDF to disk. Each page's content stream is
+ * Flate-compressed and written as soon as the page is finished; only the object offset table and
+ * the page object numbers stay in memory, so memory does not grow with the page count. The page
+ * tree, fonts, xref and trailer are written by {@link #finish()}.
+ *
+ * <p>Bundled fonts are embedded as TrueType with WinAnsi encoding and widths measured with the
+ * paints that laid the text out. Paints without a bundled font use the standard Helvetica and
+ * Courier fonts. Text must be {@link #canEncode encodable} in WinAnsi; {@code PdfGenerator} keeps
+ * documents with other characters on {@link PdfDocumentSink}.
+ */
+public class StreamingPdfWriter implements PageSink {
+
+    /** Opens the font file for a {@code PaintManager.FONT_*} id, or returns null if none is bundled. */
+    public interface FontSource {
+        InputStream open(int fontId) throws IOException;
+    }
+
+    private static final int CATALOG_OBJECT = 1;
+    private static final int PAGES_OBJECT = 2;
+    private static final int RESOURCES_OBJECT = 3;
+
+    private static final float SYNTHETIC_ITALIC_SKEW = 0.2f;
+    private static final int NO_COLOR = 1;
+
+    // Unicode for WinAnsi codes 0x80-0x9F; 0 marks unused codes
+    private static final char[] WIN_ANSI_HIGH = {
+            '€', 0, '‚', 'ƒ', '„', '…', '†', '‡',
+            'ˆ', '‰', 'Š', '‹', 'Œ', 0, 'Ž', 0,
+            0, '‘', '’', '“', '”', '•', '–', '—',
+            '˜', '™', 'š', '›', 'œ', 0, 'ž', 'Ÿ'
+    };
+
+    private final PaintManager paints;
+    private final FontSource fontSource;
+    private final File file;
+    private final CountingOutputStream out;
+    private final ByteBuffer content = new ByteBuffer(16 * 1024);
+    private final ByteBuffer compressed = new ByteBuffer(8 * 1024);
+    private final Deflater deflater = new Deflater();
+    private final PageTarget target = new PageTarget();
+
+    private long[] offsets = new long[64];
+    private int objectCount = RESOURCES_OBJECT;
+    private int[] pageObjects = new int[64];
+    private int pageCount;
+    private final boolean[] fontsUsed = new boolean[PaintManager.FONT_COUNT];
+    private boolean finished;
+
+    public StreamingPdfWriter(PaintManager paints, FontSource fontSource, File file) throws IOException {
+        this.paints = paints;
+        this.fontSource = fontSource;
+        this.file = file;
+        this.out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        // Header plus a binary comment so transfer tools treat the file as binary
+        out.write(new byte[]{'%', 'P', 'D', 'F', '-', '1', '.', '4', '\n', '%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n'});
+    }
+
+    @Override
+    public RenderTarget beginPage(int pageNumber) {
+        content.reset();
+        target.resetState();
+        // Flip to a top-left origin so layout coordinates can be used unchanged
+        content.ascii("1 0 0 -1 0 ").number(PaintManager.PAGE_HEIGHT).ascii(" cm\n");
+        return target;
+    }
+
+    @Override
+    public void finishPage() throws IOException {
+        compress(content);
+        int contentObject = allocateObject();
+        beginObject(contentObject);
+        ascii("<< /Length " + compressed.size() + " /Filter /FlateDecode >>\nstream\n");
+        out.write(compressed.data, 0, compressed.size());
+        ascii("\nendstream\nendobj\n");
+
+        int pageObject = allocateObject();
+        beginObject(pageObject);
+        ascii("<< /Type /Page /Parent " + PAGES_OBJECT + " 0 R /MediaBox [0 0 " + PaintManager.PAGE_WIDTH + " " + PaintManager.PAGE_HEIGHT
+                + "] /Resources " + RESOURCES_OBJECT + " 0 R /Contents " + contentObject + " 0 R >>\nendobj\n");
+
+        if (pageCount == pageObjects.length) {
+            int[] grown = new int[pageCount * 2];
+            System.arraycopy(pageObjects, 0, grown, 0, pageCount);
+            pageObjects = grown;
+        }
+        pageObjects[pageCount++] = pageObject;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        StringBuilder fonts = new StringBuilder();
+        for (int fontId = 0; fontId < PaintManager.FONT_COUNT; fontId++) {
+            if (fontsUsed[fontId]) {
+                fonts.append(" /F").append(fontId).append(' ').append(writeFont(fontId)).append(" 0 R");
+            }
+        }
+        beginObject(RESOURCES_OBJECT);
+        ascii("<< /Font <<" + fonts + " >> >>\nendobj\n");
+
+        beginObject(PAGES_OBJECT);
+        StringBuilder kids = new StringBuilder();
+        for (int i = 0; i < pageCount; i++) {
+            kids.append(pageObjects[i]).append(" 0 R ");
+        }
+        ascii("<< /Type /Pages /Kids [" + kids + "] /Count " + pageCount + " >>\nendobj\n");
+
+        beginObject(CATALOG_OBJECT);
+        ascii("<< /Type /Catalog /Pages " + PAGES_OBJECT + " 0 R >>\nendobj\n");
+
+        long xrefOffset = out.count;
+        StringBuilder xref = new StringBuilder("xref\n0 ").append(objectCount + 1).append("\n0000000000 65535 f \n");
+        for (int i = 1; i <= objectCount; i++) {
+            String offset = Long.toString(offsets[i]);
+            for (int pad = offset.length(); pad < 10; pad++) xref.append('0');
+            xref.append(offset).append(" 00000 n \n");
+        }
+        ascii(xref.toString());
+        ascii("trailer\n<< /Size " + (objectCount + 1) + " /Root " + CATALOG_OBJECT + " 0 R >>\nstartxref\n" + xrefOffset + "\n%%EOF\n");
+        out.flush();
+        finished = true;
+    }
+
+    /** Closes the file; an unfinished file is deleted. */
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        out.close();
+        if (!finished && file.exists() && !file.delete()) {
+            throw new IOException("Could not delete incomplete PDF " + file);
+        }
+    }
+
+    private int writeFont(int fontId) throws IOException {
+        InputStream fontFile = fontSource == null ? null : fontSource.open(fontId);
+        int fontObject = allocateObject();
+        if (fontFile == null) {
+            String baseFont = fontId == PaintManager.FONT_MONOSPACE ? "Courier" : "Helvetica";
+            beginObject(fontObject);
+            ascii("<< /Type /Font /Subtype /Type1 /BaseFont /" + baseFont + " /Encoding /WinAnsiEncoding >>\nendobj\n");
+            return fontObject;
+        }
+
+        // Widths and metrics come from the same typeface the layout measured with, scaled to 1000 units
+        Paint metrics = new Paint(paints.getPaint(paintIdForFont(fontId)));
+        metrics.setTextSize(1000f);
+        metrics.setTextSkewX(0f);
+        char[] codes = new char[224];
+        for (int code = 32; code < 256; code++) {
+            char c = toUnicode(code);
+            codes[code - 32] = c == 0 ? ' ' : c;
+        }
+        float[] widths = new float[codes.length];
+        metrics.getTextWidths(codes, 0, codes.length, widths);
+        Paint.FontMetrics fm = metrics.getFontMetrics();
+        float maxWidth = 0;
+        StringBuilder widthArray = new StringBuilder();
+        for (float width : widths) {
+            widthArray.append(Math.round(width)).append(' ');
+            maxWidth = Math.max(maxWidth, width);
+        }
+        String fontName = "PdfAi-Font" + fontId;
+
+        int descriptorObject = allocateObject();
+        int fileObject = allocateObject();
+        int lengthObject = allocateObject();
+        int length1Object = allocateObject();
+
+        beginObject(fontObject);
+        ascii("<< /Type /Font /Subtype /TrueType /BaseFont /" + fontName + " /FirstChar 32 /LastChar 255 /Widths ["
+                + widthArray + "] /Encoding /WinAnsiEncoding /FontDescriptor " + descriptorObject + " 0 R >>\nendobj\n");
+
+        beginObject(descriptorObject);
+        ascii("<< /Type /FontDescriptor /FontName /" + fontName + " /Flags 32 /FontBBox [0 " + Math.round(-fm.bottom) + " "
+                + Math.round(maxWidth) + " " + Math.round(-fm.top) + "] /ItalicAngle 0 /Ascent " + Math.round(-fm.ascent)
+                + " /Descent " + Math.round(-fm.descent) + " /CapHeight " + Math.round(-fm.ascent) + " /StemV 80 /FontFile2 "
+                + fileObject + " 0 R >>\nendobj\n");
+
+        // The font file is deflated straight from its input stream; lengths follow as separate objects
+        beginObject(fileObject);
+        ascii("<< /Length " + lengthObject + " 0 R /Length1 " + length1Object + " 0 R /Filter /FlateDecode >>\nstream\n");
+        long streamStart = out.count;
+        long rawLength = 0;
+        byte[] buffer = new byte[8192];
+        deflater.reset();
+        try {
+            int read;
+            while ((read = fontFile.read(buffer)) > 0) {
+                rawLength += read;
+                deflater.setInput(buffer, 0, read);
+                drainDeflater(out, compressed);
+            }
+        } finally {
+            fontFile.close();
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            drainDeflater(out, compressed);
+        }
+        long streamLength = out.count - streamStart;
+        ascii("\nendstream\nendobj\n");
+
+        beginObject(lengthObject);
+        ascii(streamLength + "\nendobj\n");
+        beginObject(length1Object);
+        ascii(rawLength + "\nendobj\n");
+        return fontObject;
+    }
+
+    private int paintIdForFont(int fontId) {
+        for (int id = 0; id < PaintManager.PAINT_COUNT; id++) {
+            if (paints.getFontId(id) == fontId && !paints.isSyntheticItalic(id)) return id;
+        }
+        return PaintManager.PAINT_TEXT;
+    }
+
+    private void compress(ByteBuffer source) {
+        deflater.reset();
+        deflater.setInput(source.data, 0, source.size());
+        deflater.finish();
+        compressed.reset();
+        while (!deflater.finished()) {
+            compressed.ensureCapacity(compressed.size() + 4096);
+            compressed.length += deflater.deflate(compressed.data, compressed.length, compressed.data.length - compressed.length);
+        }
+    }
+
+    private void drainDeflater(OutputStream target, ByteBuffer scratch) throws IOException {
+        scratch.ensureCapacity(8192);
+        int count;
+        while ((count = deflater.deflate(scratch.data, 0, scratch.data.length)) > 0) {
+            target.write(scratch.data, 0, count);
+        }
+    }
+
+    private int allocateObject() {
+        objectCount++;
+        if (objectCount == offsets.length) {
+            long[] grown = new long[offsets.length * 2];
+            System.arraycopy(offsets, 0, grown, 0, offsets.length);
+            offsets = grown;
+        }
+        return objectCount;
+    }
+
+    private void beginObject(int number) throws IOException {
+        offsets[number] = out.count;
+        ascii(number + " 0 obj\n");
+    }
+
+    private void ascii(String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static char toUnicode(int code) {
+        if (code >= 0x80 && code <= 0x9F) return WIN_ANSI_HIGH[code - 0x80];
+        return (char) code;
+    }
+
+    /** True if every character of {@code text} has a WinAnsi code, so this writer can show it. */
+    public static boolean canEncode(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            // Control characters such as line breaks are never drawn
+            if (c >= 0x20 && c != '?' && toWinAnsi(c) == '?') return false;
+        }
+        return true;
+    }
+
+    private static int toWinAnsi(char c) {
+        if ((c >= 0x20 && c < 0x7F) || (c >= 0xA0 && c <= 0xFF)) return c;
+        for (int i = 0; i < WIN_ANSI_HIGH.length; i++) {
+            if (WIN_ANSI_HIGH[i] == c && c != 0) return 0x80 + i;
+        }
+        return '?';
+    }
+
+    /** Translates drawing calls into content stream operators, skipping redundant state changes. */
+    private class PageTarget implements RenderTarget {
+        private int fillColor;
+        private int strokeColor;
+        private float lineWidth;
+        private float[] dash;
+
+        void resetState() {
+            fillColor = NO_COLOR;
+            strokeColor = NO_COLOR;
+            lineWidth = -1f;
+            dash = null;
+        }
+
+        @Override
+        public void drawText(CharSequence text, int start, int end, float x, float y, int paintId) {
+            if (start >= end) return;
+            Paint paint = paints.getPaint(paintId);
+            int fontId = paints.getFontId(paintId);
+            fontsUsed[fontId] = true;
+            Paint.Align align = paint.getTextAlign();
+            if (align != Paint.Align.LEFT) {
+                float width = paint.measureText(text, start, end);
+                x -= align == Paint.Align.CENTER ? width / 2f : width;
+            }
+            float skew = paints.isSyntheticItalic(paintId) ? SYNTHETIC_ITALIC_SKEW : -paint.getTextSkewX();
+
+            setFill(paint.getColor());
+            content.ascii("BT /F").number(fontId).ascii(" ").number(paint.getTextSize()).ascii(" Tf 1 0 ")
+                    .number(skew).ascii(" -1 ").number(x).ascii(" ").number(y).ascii(" Tm (");
+            for (int i = start; i < end; i++) {
+                int b = toWinAnsi(text.charAt(i));
+                if (b == '(' || b == ')' || b == '\\') {
+                    content.append('\\').append(b);
+                } else {
+                    content.append(b);
+                }
+            }
+            content.ascii(") Tj ET\n");
+        }
+
+        @Override
+        public void drawLine(float startX, float startY, float stopX, float stopY, int paintId) {
+            Paint paint = paints.getPaint(paintId);
+            setStroke(paint, paintId);
+            content.number(startX).ascii(" ").number(startY).ascii(" m ")
+                    .number(stopX).ascii(" ").number(stopY).ascii(" l S\n");
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, int paintId) {
+            Paint paint = paints.getPaint(paintId);
+            prepare(paint, paintId);
+            content.number(left).ascii(" ").number(top).ascii(" ").number(right - left).ascii(" ").number(bottom - top).ascii(" re ");
+            paintOperator(paint);
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius, int paintId) {
+            Paint paint = paints.getPaint(paintId);
+            prepare(paint, paintId);
+            content.number(cx + radius).ascii(" ").number(cy).ascii(" m\n");
+            for (int quarter = 0; quarter < 4; quarter++) {
+                arc(cx, cy, radius, radius, quarter * 90f, 90f);
+            }
+            content.ascii("h ");
+            paintOperator(paint);
+        }
+
+        @Override
+        public void drawWedge(float left, float top, float right, float bottom, float startAngle, float sweepAngle, int paintId) {
+            Paint paint = paints.getPaint(paintId);
+            prepare(paint, paintId);
+            float cx = (left + right) / 2f;
+            float cy = (top + bottom) / 2f;
+            float rx = (right - left) / 2f;
+            float ry = (bottom - top) / 2f;
+            double start = Math.toRadians(startAngle);
+            content.number(cx).ascii(" ").number(cy).ascii(" m ")
+                    .number((float) (cx + rx * Math.cos(start))).ascii(" ").number((float) (cy + ry * Math.sin(start))).ascii(" l\n");
+            int segments = Math.max(1, (int) Math.ceil(Math.abs(sweepAngle) / 90f));
+            for (int i = 0; i < segments; i++) {
+                arc(cx, cy, rx, ry, startAngle + i * sweepAngle / segments, sweepAngle / segments);
+            }
+            content.ascii("h ");
+            paintOperator(paint);
+        }
+
+        @Override
+        public void drawPolyline(float[] points, int count, int paintId) {
+            if (count < 2) return;
+            Paint paint = paints.getPaint(paintId);
+            prepare(paint, paintId);
+            content.number(points[0]).ascii(" ").number(points[1]).ascii(" m\n");
+            for (int i = 1; i < count; i++) {
+                content.number(points[2 * i]).ascii(" ").number(points[2 * i + 1]).ascii(" l\n");
+            }
+            paintOperator(paint);
+        }
+
+        @Override
+        public void saveAndRotate(float degrees, float px, float py) {
+            double radians = Math.toRadians(degrees);
+            float cos = (float) Math.cos(radians);
+            float sin = (float) Math.sin(radians);
+            content.ascii("q ").number(cos).ascii(" ").number(sin).ascii(" ").number(-sin).ascii(" ").number(cos).ascii(" ")
+                    .number(px - cos * px + sin * py).ascii(" ").number(py - sin * px - cos * py).ascii(" cm\n");
+        }
+
+        @Override
+        public void restore() {
+            content.ascii("Q\n");
+            // Q restores the graphics state from before the matching q
+            resetState();
+        }
+
+        /** Cubic Bezier approximation of an arc of at most 90 degrees, continuing the current path. */
+        private void arc(float cx, float cy, float rx, float ry, float startAngle, float sweepAngle) {
+            double a1 = Math.toRadians(startAngle);
+            double a2 = Math.toRadians(startAngle + sweepAngle);
+            double k = 4.0 / 3.0 * Math.tan((a2 - a1) / 4.0);
+            double cos1 = Math.cos(a1), sin1 = Math.sin(a1);
+            double cos2 = Math.cos(a2), sin2 = Math.sin(a2);
+            content.number((float) (cx + rx * (cos1 - k * sin1))).ascii(" ").number((float) (cy + ry * (sin1 + k * cos1))).ascii(" ")
+                    .number((float) (cx + rx * (cos2 + k * sin2))).ascii(" ").number((float) (cy + ry * (sin2 - k * cos2))).ascii(" ")
+                    .number((float) (cx + rx * cos2)).ascii(" ").number((float) (cy + ry * sin2)).ascii(" c\n");
+        }
+
+        private void prepare(Paint paint, int paintId) {
+            Paint.Style style = paint.getStyle();
+            if (style != Paint.Style.STROKE) setFill(paint.getColor());
+            if (style != Paint.Style.FILL) setStroke(paint, paintId);
+        }
+
+        private void paintOperator(Paint paint) {
+            switch (paint.getStyle()) {
+                case STROKE: content.ascii("S\n"); break;
+                case FILL_AND_STROKE: content.ascii("B\n"); break;
+                default: content.ascii("f\n"); break;
+            }
+        }
+
+        private void setFill(int color) {
+            if (color == fillColor) return;
+            fillColor = color;
+            color(color).ascii(" rg\n");
+        }
+
+        private void setStroke(Paint paint, int paintId) {
+            int color = paint.getColor();
+            if (color != strokeColor) {
+                strokeColor = color;
+                color(color).ascii(" RG\n");
+            }
+            if (paint.getStrokeWidth() != lineWidth) {
+                lineWidth = paint.getStrokeWidth();
+                content.number(lineWidth).ascii(" w\n");
+            }
+            float[] intervals = paints.getDashIntervals(paintId);
+            if (intervals != dash) {
+                dash = intervals;
+                content.ascii("[");
+                if (intervals != null) {
+                    for (int i = 0; i < intervals.length; i++) {
+                        if (i > 0) content.ascii(" ");
+                        content.number(intervals[i]);
+                    }
+                }
+                content.ascii("] 0 d\n");
+            }
+        }
+
+        private ByteBuffer color(int color) {
+            return content.number(((color >> 16) & 0xFF) / 255f).ascii(" ")
+                    .number(((color >> 8) & 0xFF) / 255f).ascii(" ")
+                    .number((color & 0xFF) / 255f);
+        }
+    }
+
+    /** Growable byte array with ASCII number formatting, reused from page to page. */
+    private static final class ByteBuffer {
+        byte[] data;
+        int length;
+
+        ByteBuffer(int capacity) {
+            data = new byte[capacity];
+        }
+
+        void reset() {
+            length = 0;
+        }
+
+        int size() {
+            return length;
+        }
+
+        void ensureCapacity(int capacity) {
+            if (data.length < capacity) {
+                byte[] grown = new byte[Math.max(capacity, data.length * 2)];
+                System.arraycopy(data, 0, grown, 0, length);
+                data = grown;
+            }
+        }
+
+        ByteBuffer append(int b) {
+            ensureCapacity(length + 1);
+            data[length++] = (byte) b;
+            return this;
+        }
+
+        ByteBuffer ascii(String s) {
+            ensureCapacity(length + s.length());
+            for (int i = 0; i < s.length(); i++) {
+                data[length++] = (byte) s.charAt(i);
+            }
+            return this;
+        }
+
+        /** Writes {@code value} with at most three decimals and no exponent. */
+        ByteBuffer number(float value) {
+            if (Float.isNaN(value) || Float.isInfinite(value)) value = 0f;
+            long scaled = Math.round(value * 1000.0);
+            if (scaled < 0) {
+                append('-');
+                scaled = -scaled;
+            }
+            digits(scaled / 1000);
+            int fraction = (int) (scaled % 1000);
+            if (fraction != 0) {
+                append('.');
+                append('0' + fraction / 100);
+                fraction %= 100;
+                if (fraction != 0) {
+                    append('0' + fraction / 10);
+                    fraction %= 10;
+                    if (fraction != 0) append('0' + fraction);
+                }
+            }
+            return this;
+        }
+
+        private void digits(long value) {
+            if (value >= 10) digits(value / 10);
+            append('0' + (int) (value % 10));
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
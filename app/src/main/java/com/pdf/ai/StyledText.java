@@ -0,0 +1,119 @@
+package com.pdf.ai;
+
+/**
+ * Text together with its style runs. Runs are stored flat as (offset, length, paint id) triples,
+ * are contiguous and cover the whole text. Paint ids are the {@code PaintManager.PAINT_*} constants.
+ */
+public class StyledText {
+    private final String text;
+    private final int basePaintId;
+    private final int[] runs;
+    private final int runCount;
+
+    private StyledText(String text, int basePaintId, int[] runs, int runCount) {
+        this.text = text;
+        this.basePaintId = basePaintId;
+        this.runs = runs;
+        this.runCount = runCount;
+    }
+
+    /** A single run of {@code text} in {@code paintId}. */
+    public static StyledText plain(String text, int paintId) {
+        return new StyledText(text, paintId, new int[]{0, text.length(), paintId}, 1);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /** The paint id of unstyled text, also used for list markers and line metrics. */
+    public int getBasePaintId() {
+        return basePaintId;
+    }
+
+    public int getRunCount() {
+        return runCount;
+    }
+
+    public int getRunStart(int run) {
+        return runs[run * 3];
+    }
+
+    public int getRunEnd(int run) {
+        return runs[run * 3] + runs[run * 3 + 1];
+    }
+
+    public int getRunPaintId(int run) {
+        return runs[run * 3 + 2];
+    }
+
+    /** Index of the run containing {@code offset}. */
+    public int findRun(int offset) {
+        int low = 0;
+        int high = runCount - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getRunEnd(mid) <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public static class Builder {
+        private final int basePaintId;
+        private final StringBuilder text;
+        private int[] runs = new int[3 * 8];
+        private int runCount;
+
+        public Builder(int basePaintId) {
+            this(basePaintId, 16);
+        }
+
+        public Builder(int basePaintId, int capacity) {
+            this.basePaintId = basePaintId;
+            this.text = new StringBuilder(capacity);
+        }
+
+        public Builder append(CharSequence s) {
+            return append(s, 0, s.length(), basePaintId);
+        }
+
+        public Builder append(CharSequence s, int paintId) {
+            return append(s, 0, s.length(), paintId);
+        }
+
+        /** Appends {@code s[start, end)} without creating a substring. */
+        public Builder append(CharSequence s, int start, int end, int paintId) {
+            if (start >= end) return this;
+            text.append(s, start, end);
+            if (runCount > 0 && runs[runCount * 3 - 1] == paintId) {
+                runs[runCount * 3 - 2] += end - start;
+                return this;
+            }
+            if (runCount * 3 == runs.length) {
+                int[] grown = new int[runs.length * 2];
+                System.arraycopy(runs, 0, grown, 0, runs.length);
+                runs = grown;
+            }
+            runs[runCount * 3] = text.length() - (end - start);
+            runs[runCount * 3 + 1] = end - start;
+            runs[runCount * 3 + 2] = paintId;
+            runCount++;
+            return this;
+        }
+
+        public int length() {
+            return text.length();
+        }
+
+        public StyledText build() {
+            if (runCount == 0) {
+                return plain("", basePaintId);
+            }
+            return new StyledText(text.toString(), basePaintId, runs, runCount);
+        }
+    }
+}
@@ -1,146 +1,322 @@
 package com.pdf.ai;
 
-import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.pdf.PdfDocument;
 import android.util.Log;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class TableRenderer {
+    // Column widths come from the header and at most this many leading rows; longer tables are streamed
+    static final int SIZING_SAMPLE_ROWS = 200;
+
     private final PaintManager paints;
+    private final TextMeasureCache measureCache;
 
-    public TableRenderer(PaintManager paintManager) {
+    public TableRenderer(PaintManager paintManager, TextMeasureCache measureCache) {
         this.paints = paintManager;
+        this.measureCache = measureCache;
     }
 
-    public Object[] drawTable(PdfDocument document, PdfDocument.Page page, String tableString, float yPos, int currentPageNum) {
-        Canvas canvas = page.getCanvas();
+    /**
+     * Lays out a table one row at a time. The block text is walked with a {@link BlockTokenizer} and
+     * never split into rows up front; rows are placed into one {@link Segment} per page. Tables that
+     * fit in the sizing sample keep their wrapped cells, longer ones draw each row into the segment's
+     * {@link RecordingTarget} as it is placed, so neither the block text nor the wrapped rows outlive
+     * the layout.
+     */
+    public void layoutTable(LayoutCursor cursor, String tableString) {
+        LayoutCursor.PageBreakListener previousListener = null;
+        boolean headerPlaced = false;
         try {
-            tableString = tableString.replace("[[TABLE|", "").replace("]]", "");
-            String[] parts = tableString.split("\\|");
-            if (parts.length < 3) throw new IllegalArgumentException("Invalid table format: Not enough parts.");
-
-            String title = parts[0].trim();
-            String[] headers = parts[1].split(",");
-            List<String[]> rows = new ArrayList<>();
-            for (int i = 2; i < parts.length; i++) {
-                rows.add(parts[i].split(","));
+            BlockTokenizer fields = new BlockTokenizer(tableString, BlockTokenizer.TABLE_PREFIX);
+            if (!fields.next()) throw new IllegalArgumentException("Invalid table format: Not enough parts.");
+            String title = fields.getField();
+            if (!fields.next()) throw new IllegalArgumentException("Invalid table format: Not enough parts.");
+            int numCols = fields.getCellCount();
+
+            // Header plus the sizing sample, measured once
+            List<MeasuredRow> sample = new ArrayList<>();
+            sample.add(measureRow(fields, numCols, PaintManager.PAINT_TABLE_HEADER));
+            while (sample.size() <= SIZING_SAMPLE_ROWS && fields.next()) {
+                sample.add(measureRow(fields, numCols, PaintManager.PAINT_TABLE_CELL));
             }
+            if (sample.size() < 2) throw new IllegalArgumentException("Invalid table format: Not enough parts.");
+            boolean streamed = sample.size() > SIZING_SAMPLE_ROWS && fields.next();
+
+            cursor.ensureSpace(60);
+            cursor.advance(PaintManager.VISUAL_TITLE_MARGIN);
+            Paint titlePaint = paints.getChartTitlePaint();
+            cursor.add(new CenteredText(InlineLexer.strip(title, paints), cursor.getY() - titlePaint.ascent(), PaintManager.PAINT_CHART_TITLE));
+            cursor.advance((titlePaint.descent() - titlePaint.ascent()) * PaintManager.LINE_HEIGHT_MULTIPLIER);
+
+            final Table table = new Table(sizeColumns(sample, numCols), PaintManager.MARGIN, numCols, streamed);
 
-            if (yPos + 60 > PaintManager.PAGE_HEIGHT - PaintManager.MARGIN) {
-                Object[] result = PageHelper.finishAndStartNewPage(document, page, currentPageNum, paints);
-                page = (PdfDocument.Page) result[0];
-                currentPageNum = (int) result[1];
-                canvas = page.getCanvas();
-                yPos = PaintManager.MARGIN;
+            // The header is wrapped once and re-placed on every page the table continues onto.
+            // Column widths are fixed from here on, so repeated cell values hit the measure cache.
+            final WrappedText[] header = sample.get(0).wrap(table.colWidths, measureCache);
+            final float headerHeight = rowHeight(header, PaintManager.PAINT_TABLE_HEADER);
+            cursor.ensureSpace(headerHeight);
+            cursor.add(table.headerAt(header, headerHeight, cursor.getY()));
+            cursor.advance(headerHeight);
+            previousListener = cursor.setPageBreakListener(new LayoutCursor.PageBreakListener() {
+                @Override
+                public void onPageBreak(LayoutCursor c) {
+                    c.add(table.headerAt(header, headerHeight, c.getY()));
+                    c.advance(headerHeight);
+                    table.closeSegment();
+                }
+            });
+            headerPlaced = true;
+
+            for (int i = 1; i < sample.size(); i++) {
+                MeasuredRow row = sample.get(i);
+                sample.set(i, null);
+                placeRow(cursor, table, row.wrap(table.colWidths, measureCache));
             }
-            yPos += PaintManager.VISUAL_TITLE_MARGIN;
-            canvas.drawText(title, PaintManager.PAGE_WIDTH / 2f, yPos - paints.getChartTitlePaint().ascent(), paints.getChartTitlePaint());
-            yPos += (paints.getChartTitlePaint().descent() - paints.getChartTitlePaint().ascent()) * PaintManager.LINE_HEIGHT_MULTIPLIER;
-
-            float tableWidth = PaintManager.CONTENT_WIDTH;
-            float left = PaintManager.MARGIN;
-            float[] colWidths = calculateColumnWidths(headers.length, tableWidth);
-
-            Object[] headerResult = drawRow(document, page, canvas, headers, yPos, currentPageNum, colWidths, left, true, headers);
-            page = (PdfDocument.Page) headerResult[0];
-            yPos = (float) headerResult[1];
-            currentPageNum = (int) headerResult[2];
-            canvas = page.getCanvas();
-
-            for (String[] rowData : rows) {
-                Object[] rowResult = drawRow(document, page, canvas, rowData, yPos, currentPageNum, colWidths, left, false, headers);
-                page = (PdfDocument.Page) rowResult[0];
-                yPos = (float) rowResult[1];
-                currentPageNum = (int) rowResult[2];
-                canvas = page.getCanvas();
+            if (streamed) {
+                do {
+                    placeRow(cursor, table, wrapRow(fields, table));
+                } while (fields.next());
             }
+            table.closeSegment();
 
-            yPos += PaintManager.VISUAL_BOTTOM_MARGIN;
+            cursor.advance(PaintManager.VISUAL_BOTTOM_MARGIN);
 
         } catch (Exception e) {
             Log.e("TableRenderer", "Failed to parse or draw table: " + tableString, e);
-            Paint errorPaint = new Paint(paints.getTextPaint());
-            errorPaint.setColor(Color.RED);
-            errorPaint.setTextAlign(Paint.Align.CENTER);
-            String errorMsg = "Error: Could not render table. Check data format.";
-            canvas.drawText(errorMsg, PaintManager.PAGE_WIDTH / 2f, yPos + 20, errorPaint);
-            yPos += 40;
-        }
-        return new Object[]{page, yPos, currentPageNum};
+            cursor.add(new ErrorBlock("Error: Could not render table. Check data format.", cursor.getY() + 20));
+            cursor.advance(40);
+        } finally {
+            if (headerPlaced) {
+                cursor.setPageBreakListener(previousListener);
+            }
+        }
     }
 
-    private float[] calculateColumnWidths(int numCols, float tableWidth) {
-        float[] colWidths = new float[numCols];
-        for (int i = 0; i < numCols; i++) {
-            colWidths[i] = tableWidth / numCols;
+    private MeasuredRow measureRow(BlockTokenizer fields, int numCols, int paintId) {
+        LineBreaker breaker = DrawUtils.lineBreaker();
+        MeasuredRow row = new MeasuredRow(numCols);
+        for (int col = 0; col < numCols; col++) {
+            String source = cellAt(fields, col);
+            StyledText cell = InlineLexer.lex(source, paintId, paints);
+            row.sources[col] = source;
+            row.texts[col] = cell;
+            row.advances[col] = breaker.measure(cell, 0, cell.getText().length(), paints);
         }
-        return colWidths;
+        return row;
     }
 
-    private Object[] drawRow(PdfDocument document, PdfDocument.Page page, Canvas canvas, String[] rowData, float yPos, int currentPageNum, float[] colWidths, float left, boolean isHeader, String[] headers) {
-        Paint textPaint = isHeader ? paints.getTableHeaderPaint() : paints.getTableCellPaint();
-        float cellPadding = PaintManager.CELL_PADDING;
-        float maxTextHeightInRow = 0;
-        int numColumns = headers.length;
-
-        List<List<String>> wrappedLinesByColumn = new ArrayList<>();
-        for (int i = 0; i < numColumns; i++) {
-            float colWidth = colWidths[i] - (2 * cellPadding);
-            String cellData = (i < rowData.length) ? rowData[i].trim() : "";
-            List<String> wrappedLines = DrawUtils.splitTextIntoLines(cellData, textPaint, colWidth);
-            wrappedLinesByColumn.add(wrappedLines);
-            float textHeight = wrappedLines.size() * (textPaint.descent() - textPaint.ascent()) * PaintManager.LINE_HEIGHT_MULTIPLIER;
-            if (textHeight > maxTextHeightInRow) {
-                maxTextHeightInRow = textHeight;
+    private WrappedText[] wrapRow(BlockTokenizer fields, Table table) {
+        float padding = 2 * PaintManager.CELL_PADDING;
+        WrappedText[] cells = new WrappedText[table.numCols];
+        for (int col = 0; col < table.numCols; col++) {
+            cells[col] = measureCache.wrap(cellAt(fields, col), PaintManager.PAINT_TABLE_CELL, table.colWidths[col] - padding);
+        }
+        return cells;
+    }
+
+    private static String cellAt(BlockTokenizer fields, int col) {
+        return col < fields.getCellCount() ? fields.getCell(col) : "";
+    }
+
+    private float[] sizeColumns(List<MeasuredRow> sample, int numCols) {
+        float padding = 2 * PaintManager.CELL_PADDING;
+        float[] minWidths = new float[numCols];
+        float[] maxWidths = new float[numCols];
+        for (MeasuredRow row : sample) {
+            for (int col = 0; col < numCols; col++) {
+                String text = row.texts[col].getText();
+                float[] measured = row.advances[col];
+                minWidths[col] = Math.max(minWidths[col], LineBreaker.widestWord(text, 0, text.length(), measured) + padding);
+                maxWidths[col] = Math.max(maxWidths[col], measured[text.length()] + padding);
             }
         }
+        return sizeColumns(minWidths, maxWidths, PaintManager.CONTENT_WIDTH);
+    }
+
+    /**
+     * Auto table layout: columns get their widest content if that fits, otherwise at least their
+     * widest word, with the remaining width shared in proportion to how much each column would
+     * still grow. Widths always add up to {@code tableWidth}.
+     */
+    static float[] sizeColumns(float[] minWidths, float[] maxWidths, float tableWidth) {
+        int numCols = minWidths.length;
+        float minTotal = 0;
+        float maxTotal = 0;
+        for (int i = 0; i < numCols; i++) {
+            minTotal += minWidths[i];
+            maxTotal += maxWidths[i];
+        }
 
-        float rowHeight = maxTextHeightInRow + (2 * cellPadding);
-
-        if (yPos + rowHeight > PaintManager.PAGE_HEIGHT - PaintManager.MARGIN) {
-            Object[] result = PageHelper.finishAndStartNewPage(document, page, currentPageNum, paints);
-            page = (PdfDocument.Page) result[0];
-            currentPageNum = (int) result[1];
-            canvas = page.getCanvas();
-            yPos = PaintManager.MARGIN;
-            if (!isHeader) {
-                Object[] headerResult = drawRow(document, page, canvas, headers, yPos, currentPageNum, colWidths, left, true, headers);
-                page = (PdfDocument.Page) headerResult[0];
-                yPos = (float) headerResult[1];
-                currentPageNum = (int) headerResult[2];
-                canvas = page.getCanvas();
+        float[] widths = new float[numCols];
+        for (int i = 0; i < numCols; i++) {
+            if (maxTotal <= 0) {
+                widths[i] = tableWidth / numCols;
+            } else if (maxTotal <= tableWidth) {
+                widths[i] = maxWidths[i] * tableWidth / maxTotal;
+            } else if (minTotal >= tableWidth) {
+                widths[i] = minWidths[i] * tableWidth / minTotal;
+            } else {
+                widths[i] = minWidths[i] + (maxWidths[i] - minWidths[i]) * (tableWidth - minTotal) / (maxTotal - minTotal);
             }
         }
+        return widths;
+    }
+
+    private float rowHeight(WrappedText[] cells, int paintId) {
+        Paint textPaint = paints.getPaint(paintId);
+        int maxLines = 0;
+        for (WrappedText cell : cells) {
+            maxLines = Math.max(maxLines, cell.getLineCount());
+        }
+        return maxLines * (textPaint.descent() - textPaint.ascent()) * PaintManager.LINE_HEIGHT_MULTIPLIER + 2 * PaintManager.CELL_PADDING;
+    }
+
+    private void placeRow(LayoutCursor cursor, Table table, WrappedText[] cells) {
+        float height = rowHeight(cells, PaintManager.PAINT_TABLE_CELL);
+        // A page break here re-places the header and closes the current segment
+        cursor.ensureSpace(height);
+        if (table.segment == null) {
+            table.segment = new Segment(table, cursor.getY());
+            cursor.add(table.segment);
+        }
+        table.segment.addRow(cells, height, cursor.getY());
+        cursor.advance(height);
+    }
+
+    private void drawRow(RenderTarget target, Table table, WrappedText[] cells, float rowHeight, float yPos, boolean isHeader) {
+        float cellPadding = PaintManager.CELL_PADDING;
+        Paint textPaint = paints.getPaint(isHeader ? PaintManager.PAINT_TABLE_HEADER : PaintManager.PAINT_TABLE_CELL);
+        float left = table.left;
 
         float currentX = left;
-        for (int i = 0; i < numColumns; i++) {
-            float colWidth = colWidths[i];
+        for (int i = 0; i < cells.length; i++) {
+            float colWidth = table.colWidths[i];
             if (isHeader) {
-                canvas.drawRect(currentX, yPos, currentX + colWidth, yPos + rowHeight, paints.getTableHeaderBgPaint());
+                target.drawRect(currentX, yPos, currentX + colWidth, yPos + rowHeight, PaintManager.PAINT_TABLE_HEADER_BG);
             }
             float textY = yPos + cellPadding - textPaint.ascent();
-            if (i < wrappedLinesByColumn.size()) {
-                for (String line : wrappedLinesByColumn.get(i)) {
-                    canvas.drawText(line, currentX + cellPadding, textY, textPaint);
-                    textY += (textPaint.descent() - textPaint.ascent()) * PaintManager.LINE_HEIGHT_MULTIPLIER;
-                }
+            WrappedText cell = cells[i];
+            for (int line = 0; line < cell.getLineCount(); line++) {
+                DrawUtils.drawStyledText(target, cell.getText(), cell.getLineStart(line), cell.getLineEnd(line), cell.getRunOffsets(line),
+                        currentX + cellPadding, textY);
+                textY += (textPaint.descent() - textPaint.ascent()) * PaintManager.LINE_HEIGHT_MULTIPLIER;
             }
             currentX += colWidth;
         }
 
-        canvas.drawLine(left, yPos, left + PaintManager.CONTENT_WIDTH, yPos, paints.getTableBorderPaint());
-        canvas.drawLine(left, yPos + rowHeight, left + PaintManager.CONTENT_WIDTH, yPos + rowHeight, paints.getTableBorderPaint());
+        target.drawLine(left, yPos, left + PaintManager.CONTENT_WIDTH, yPos, PaintManager.PAINT_TABLE_BORDER);
+        target.drawLine(left, yPos + rowHeight, left + PaintManager.CONTENT_WIDTH, yPos + rowHeight, PaintManager.PAINT_TABLE_BORDER);
         currentX = left;
-        for (int i = 0; i < numColumns; i++) {
-            canvas.drawLine(currentX, yPos, currentX, yPos + rowHeight, paints.getTableBorderPaint());
-            currentX += colWidths[i];
+        for (int i = 0; i < cells.length; i++) {
+            target.drawLine(currentX, yPos, currentX, yPos + rowHeight, PaintManager.PAINT_TABLE_BORDER);
+            currentX += table.colWidths[i];
         }
-        canvas.drawLine(left + PaintManager.CONTENT_WIDTH, yPos, left + PaintManager.CONTENT_WIDTH, yPos + rowHeight, paints.getTableBorderPaint());
+        target.drawLine(left + PaintManager.CONTENT_WIDTH, yPos, left + PaintManager.CONTENT_WIDTH, yPos + rowHeight, PaintManager.PAINT_TABLE_BORDER);
+    }
+
+    /** Cells of a sample row, as source and lexed, with their measured advances; kept until the columns are sized. */
+    private static class MeasuredRow {
+        final String[] sources;
+        final StyledText[] texts;
+        final float[][] advances;
+
+        MeasuredRow(int numCols) {
+            this.sources = new String[numCols];
+            this.texts = new StyledText[numCols];
+            this.advances = new float[numCols][];
+        }
+
+        WrappedText[] wrap(float[] colWidths, TextMeasureCache measureCache) {
+            WrappedText[] cells = new WrappedText[texts.length];
+            for (int col = 0; col < texts.length; col++) {
+                cells[col] = measureCache.wrapMeasured(sources[col], texts[col], advances[col], colWidths[col] - 2 * PaintManager.CELL_PADDING);
+            }
+            return cells;
+        }
+    }
 
-        return new Object[]{page, yPos + rowHeight, currentPageNum};
+    /** Column geometry shared by a table's blocks. */
+    private class Table {
+        final float[] colWidths;
+        final float left;
+        final int numCols;
+        final boolean streamed;
+        Segment segment;
+
+        Table(float[] colWidths, float left, int numCols, boolean streamed) {
+            this.colWidths = colWidths;
+            this.left = left;
+            this.numCols = numCols;
+            this.streamed = streamed;
+        }
+
+        LayoutBlock headerAt(final WrappedText[] header, final float height, final float yPos) {
+            return new LayoutBlock() {
+                @Override
+                public void paint(RenderTarget target) {
+                    drawRow(target, Table.this, header, height, yPos, true);
+                }
+            };
+        }
+
+        void closeSegment() {
+            if (segment != null) segment.close();
+            segment = null;
+        }
+    }
+
+    /**
+     * The consecutive rows of a table on one page. Rows of a sampled table are kept wrapped and drawn
+     * when painted; rows of a streamed table are drawn into a recording as they are placed.
+     */
+    private class Segment extends LayoutBlock {
+        private final Table table;
+        private final float top;
+        private final List<WrappedText[]> rows;
+        private final RecordingTarget recording;
+        private float[] heights;
+        private int rowCount;
+
+        Segment(Table table, float top) {
+            this.table = table;
+            this.top = top;
+            this.rows = table.streamed ? null : new ArrayList<WrappedText[]>();
+            this.recording = table.streamed ? new RecordingTarget() : null;
+            this.heights = table.streamed ? null : new float[16];
+        }
+
+        void addRow(WrappedText[] cells, float height, float y) {
+            if (recording != null) {
+                drawRow(recording, table, cells, height, y, false);
+                return;
+            }
+            rows.add(cells);
+            if (rowCount == heights.length) {
+                float[] grown = new float[heights.length * 2];
+                System.arraycopy(heights, 0, grown, 0, heights.length);
+                heights = grown;
+            }
+            heights[rowCount++] = height;
+        }
+
+        /** Called once no more rows go on this page. */
+        void close() {
+            if (recording != null) recording.trimToSize();
+        }
+
+        @Override
+        public void paint(RenderTarget target) {
+            if (recording != null) {
+                recording.replay(target);
+                return;
+            }
+            float y = top;
+            for (int i = 0; i < rowCount; i++) {
+                drawRow(target, table, rows.get(i), heights[i], y, false);
+                y += heights[i];
+            }
+        }
     }
 }
@@ -0,0 +1,130 @@
+package com.pdf.ai;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of lexed and wrapped text for short, frequently repeated strings: table headers and cell
+ * values, which repeat at a table's fixed column widths, section and cover titles, and TOC entries. Entries are keyed by the base paint's measure key from
+ * {@link PaintManager}, the source text and the wrap width, so paints that measure identically share
+ * entries.
+ *
+ * <p>One instance is created per generation run and shared by its layout threads.
+ */
+public class TextMeasureCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private final PaintManager paints;
+    private final LinkedHashMap<Key, WrappedText> entries;
+    private long hits;
+    private long misses;
+
+    public TextMeasureCache(PaintManager paints) {
+        this(paints, DEFAULT_MAX_ENTRIES);
+    }
+
+    public TextMeasureCache(PaintManager paints, final int maxEntries) {
+        this.paints = paints;
+        this.entries = new LinkedHashMap<Key, WrappedText>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, WrappedText> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Lexes inline markers in {@code text} with {@link InlineLexer} and wraps the result. Safe to call
+     * from several layout threads; measuring happens outside the lock.
+     */
+    public WrappedText wrap(String text, int paintId, float maxWidth) {
+        Key key = new Key(paints.getMeasureKey(paintId), text, maxWidth);
+        WrappedText wrapped = lookup(key);
+        if (wrapped != null) {
+            // Same metrics, other paint: the line breaks hold but run paint ids must be the caller's
+            if (wrapped.getText().getBasePaintId() != paintId) {
+                wrapped = wrapped.withText(InlineLexer.lex(text, paintId, paints));
+            }
+            return wrapped;
+        }
+        wrapped = WrappedText.wrap(InlineLexer.lex(text, paintId, paints), paints, maxWidth);
+        store(key, wrapped);
+        return wrapped;
+    }
+
+    /**
+     * Like {@link #wrap(String, int, float)} for {@code text} the caller has already lexed into
+     * {@code lexed} and measured with {@link LineBreaker#measure}; a miss wraps from those advances.
+     */
+    public WrappedText wrapMeasured(String text, StyledText lexed, float[] measured, float maxWidth) {
+        int paintId = lexed.getBasePaintId();
+        Key key = new Key(paints.getMeasureKey(paintId), text, maxWidth);
+        WrappedText wrapped = lookup(key);
+        if (wrapped != null) {
+            return wrapped.getText().getBasePaintId() == paintId ? wrapped : wrapped.withText(lexed);
+        }
+        wrapped = WrappedText.wrapMeasured(lexed, measured, paints, maxWidth);
+        store(key, wrapped);
+        return wrapped;
+    }
+
+    private synchronized WrappedText lookup(Key key) {
+        WrappedText wrapped = entries.get(key);
+        if (wrapped != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return wrapped;
+    }
+
+    private synchronized void store(Key key, WrappedText wrapped) {
+        entries.put(key, wrapped);
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized float getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0f : (float) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TextMeasureCache{hits=" + hits + ", misses=" + misses + ", size=" + entries.size() + "}";
+    }
+
+    private static final class Key {
+        final int measureKey;
+        final String text;
+        final float maxWidth;
+        final int hash;
+
+        Key(int measureKey, String text, float maxWidth) {
+            this.measureKey = measureKey;
+            this.text = text;
+            this.maxWidth = maxWidth;
+            this.hash = 31 * (31 * measureKey + text.hashCode()) + Float.floatToIntBits(maxWidth);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return measureKey == other.measureKey && maxWidth == other.maxWidth && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -1,124 +1,181 @@
 package com.pdf.ai;
 
-import android.graphics.Canvas;
 import android.graphics.Paint;
-import android.graphics.pdf.PdfDocument;
-
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class TextRenderer {
+    public static final float[] NO_QUOTE_BARS = new float[0];
+    private static final float QUOTE_BAR_WIDTH = 2f;
+
     private final PaintManager paints;
+    private final TextMeasureCache measureCache;
 
-    public TextRenderer(PaintManager paintManager) {
+    public TextRenderer(PaintManager paintManager, TextMeasureCache measureCache) {
         this.paints = paintManager;
+        this.measureCache = measureCache;
     }
 
-    public Object[] drawSectionTitle(PdfDocument document, PdfDocument.Page page, String title, float yPos, int currentPageNum) {
+    public void layoutSectionTitle(LayoutCursor cursor, String title) {
         Paint paint = paints.getSectionTitlePaint();
-        List<String> lines = DrawUtils.splitTextIntoLines(title, paint, PaintManager.CONTENT_WIDTH);
-        for (String line : lines) {
-            float lineHeight = paint.descent() - paint.ascent();
-            if (yPos + lineHeight > PaintManager.PAGE_HEIGHT - PaintManager.MARGIN) {
-                Object[] result = PageHelper.finishAndStartNewPage(document, page, currentPageNum, paints);
-                page = (PdfDocument.Page) result[0];
-                currentPageNum = (int) result[1];
-                yPos = PaintManager.MARGIN;
+        float lineHeight = paint.descent() - paint.ascent();
+        WrappedText wrapped = measureCache.wrap(title, PaintManager.PAINT_SECTION_TITLE, PaintManager.CONTENT_WIDTH);
+        for (int i = 0; i < wrapped.getLineCount(); i++) {
+            cursor.ensureSpace(lineHeight);
+            cursor.add(new TextLine(wrapped.getText(), wrapped.getLineStart(i), wrapped.getLineEnd(i), wrapped.getRunOffsets(i), "",
+                    PaintManager.MARGIN, PaintManager.MARGIN, cursor.getY(), lineHeight, NO_QUOTE_BARS));
+            cursor.advance(lineHeight * PaintManager.LINE_HEIGHT_MULTIPLIER);
+        }
+        cursor.advance(PaintManager.SECTION_TITLE_BOTTOM_MARGIN);
+    }
+
+    /** Lays out a heading with the list marker, indent and quote bars of the block it sits in. */
+    public void layoutHeading(LayoutCursor cursor, int level, String text, String prefix, float indent, float[] quoteBars) {
+        int paintId = level <= 1 ? PaintManager.PAINT_H1 : level == 2 ? PaintManager.PAINT_H2 : PaintManager.PAINT_H3;
+        cursor.advance(PaintManager.HEADING_TOP_MARGIN);
+        layoutParagraph(cursor, StyledText.plain(text, paintId), prefix, indent, quoteBars);
+        cursor.advance(PaintManager.PARAGRAPH_SPACING);
+    }
+
+    /**
+     * Wraps a paragraph to the content width minus {@code indent}. A non-empty {@code prefix} (list
+     * marker) is drawn in the indent on the first line. Hard line breaks ('\n') always start a new
+     * line. Spacing after the paragraph is left to the caller.
+     */
+    public void layoutParagraph(LayoutCursor cursor, StyledText text, String prefix, float indent, float[] quoteBars) {
+        Paint paint = paints.getPaint(text.getBasePaintId());
+        float lineHeight = paint.descent() - paint.ascent();
+        float x = PaintManager.MARGIN + indent;
+        float width = PaintManager.CONTENT_WIDTH - indent;
+        String s = text.getText();
+        LineBreaker breaker = DrawUtils.lineBreaker();
+
+        int segmentStart = 0;
+        while (segmentStart <= s.length()) {
+            int segmentEnd = s.indexOf('\n', segmentStart);
+            if (segmentEnd < 0) segmentEnd = s.length();
+            int lineCount = breaker.breakLines(text, segmentStart, segmentEnd, paints, width);
+            for (int lineIdx = 0; lineIdx < lineCount; lineIdx++) {
+                int lineStart = breaker.getLineStart(lineIdx);
+                int lineEnd = breaker.getLineEnd(lineIdx);
+                cursor.ensureSpace(lineHeight);
+                cursor.add(new TextLine(text, lineStart, lineEnd, breaker.getRunOffsets(text, lineStart, lineEnd), prefix,
+                        x - PaintManager.LIST_ITEM_INDENT, x, cursor.getY(), lineHeight, quoteBars));
+                prefix = "";
+                cursor.advance(lineHeight * PaintManager.LINE_HEIGHT_MULTIPLIER);
             }
-            page.getCanvas().drawText(line, PaintManager.MARGIN, yPos - paint.ascent(), paint);
-            yPos += lineHeight * PaintManager.LINE_HEIGHT_MULTIPLIER;
+            segmentStart = segmentEnd + 1;
         }
-        yPos += PaintManager.SECTION_TITLE_BOTTOM_MARGIN;
-        return new Object[]{page, yPos, currentPageNum};
     }
 
-    public Object[] drawTextBlock(PdfDocument document, PdfDocument.Page page, String text, float yPos, int currentPageNum) {
-        Canvas canvas = page.getCanvas();
-        Paint paintForBlock;
-        boolean isHeading = false;
-
-        if (text.startsWith("###")) {
-            paintForBlock = paints.getH3Paint(); text = text.substring(3).trim(); isHeading = true;
-        } else if (text.startsWith("##")) {
-            paintForBlock = paints.getH2Paint(); text = text.substring(2).trim(); isHeading = true;
-        } else if (text.startsWith("#")) {
-            paintForBlock = paints.getH1Paint(); text = text.substring(1).trim(); isHeading = true;
-        } else {
-            paintForBlock = paints.getTextPaint();
+    /** Lays out a code block line by line, keeping indentation and wrapping long lines by character. */
+    public void layoutCodeBlock(LayoutCursor cursor, String code, float indent, float[] quoteBars) {
+        Paint paint = paints.getCodePaint();
+        float lineHeight = (paint.descent() - paint.ascent()) * PaintManager.LINE_HEIGHT_MULTIPLIER;
+        float x = PaintManager.MARGIN + indent + PaintManager.CELL_PADDING;
+        float width = PaintManager.CONTENT_WIDTH - indent - 2 * PaintManager.CELL_PADDING;
+        String[] lines = code.replace("\t", "    ").split("\n", -1);
+        int lineCount = lines.length;
+        if (lineCount > 0 && lines[lineCount - 1].isEmpty()) lineCount--;
+
+        for (int i = 0; i < lineCount; i++) {
+            String line = lines[i];
+            int start = 0;
+            do {
+                int count = line.isEmpty() ? 0 : Math.max(1, paint.breakText(line, start, line.length(), true, width, null));
+                cursor.ensureSpace(lineHeight);
+                cursor.add(new CodeLine(line, start, start + count, x, cursor.getY(), lineHeight, quoteBars));
+                cursor.advance(lineHeight);
+                start += count;
+            } while (start < line.length());
         }
+    }
 
-        yPos += isHeading ? PaintManager.HEADING_TOP_MARGIN : 0;
-
-        String[] linesInBlock = text.split("\n");
-        for (String line : linesInBlock) {
-            if (line.trim().isEmpty()) continue;
-
-            float currentX = PaintManager.MARGIN;
-            String prefix = "";
-            float effectiveContentWidth = PaintManager.CONTENT_WIDTH;
-            Pattern bulletPattern = Pattern.compile("^[*-]\\s(.+)");
-            Pattern numListPattern = Pattern.compile("^(\\d+)\\.\\s(.+)");
-            Matcher bulletMatcher = bulletPattern.matcher(line.trim());
-            Matcher numListMatcher = numListPattern.matcher(line.trim());
-
-            String contentLine = line;
-            if (bulletMatcher.matches()) {
-                prefix = "• "; contentLine = bulletMatcher.group(1); currentX += PaintManager.LIST_ITEM_INDENT; effectiveContentWidth -= PaintManager.LIST_ITEM_INDENT;
-            } else if (numListMatcher.matches()) {
-                prefix = numListMatcher.group(1) + ". "; contentLine = numListMatcher.group(2); currentX += PaintManager.LIST_ITEM_INDENT; effectiveContentWidth -= PaintManager.LIST_ITEM_INDENT;
+    public void layoutThematicBreak(LayoutCursor cursor, float indent) {
+        cursor.ensureSpace(2 * PaintManager.PARAGRAPH_SPACING);
+        final float y = cursor.getY() + PaintManager.PARAGRAPH_SPACING;
+        final float left = PaintManager.MARGIN + indent;
+        cursor.add(new LayoutBlock() {
+            @Override
+            public void paint(RenderTarget target) {
+                target.drawLine(left, y, PaintManager.MARGIN + PaintManager.CONTENT_WIDTH, y, PaintManager.PAINT_RULE);
             }
+        });
+        cursor.advance(2 * PaintManager.PARAGRAPH_SPACING);
+    }
 
-            List<String> wrappedLines = DrawUtils.splitTextIntoLines(contentLine.trim(), paintForBlock, effectiveContentWidth);
-            for (int lineIdx = 0; lineIdx < wrappedLines.size(); lineIdx++) {
-                String wrappedLine = wrappedLines.get(lineIdx);
-                float lineHeight = paintForBlock.descent() - paintForBlock.ascent();
-                if (yPos + lineHeight > PaintManager.PAGE_HEIGHT - PaintManager.MARGIN) {
-                    Object[] result = PageHelper.finishAndStartNewPage(document, page, currentPageNum, paints);
-                    page = (PdfDocument.Page) result[0];
-                    currentPageNum = (int) result[1];
-                    canvas = page.getCanvas();
-                    yPos = PaintManager.MARGIN;
-                }
-                if (lineIdx == 0 && !prefix.isEmpty()) {
-                    canvas.drawText(prefix, PaintManager.MARGIN, yPos - paintForBlock.ascent(), paintForBlock);
-                }
-                drawStyledText(canvas, wrappedLine, currentX, yPos - paintForBlock.ascent(), isHeading ? paintForBlock : null);
-                yPos += lineHeight * PaintManager.LINE_HEIGHT_MULTIPLIER;
-            }
+    private void drawQuoteBars(RenderTarget target, float[] quoteBars, float top, float height) {
+        for (float barX : quoteBars) {
+            target.drawRect(barX, top, barX + QUOTE_BAR_WIDTH, top + height, PaintManager.PAINT_QUOTE_BAR);
         }
-        yPos += PaintManager.PARAGRAPH_SPACING;
-        return new Object[]{page, yPos, currentPageNum};
     }
 
-    private void drawStyledText(Canvas canvas, String line, float x, float y, Paint headingPaint) {
-        if (headingPaint != null) {
-            canvas.drawText(line, x, y, headingPaint);
-            return;
+    /**
+     * One wrapped line of a paragraph, a range of its styled source text with its run offsets from
+     * layout. List markers sit in the indent to the left of the text.
+     */
+    private class TextLine extends LayoutBlock {
+        private final StyledText text;
+        private final int start;
+        private final int end;
+        private final float[] runOffsets;
+        private final String prefix;
+        private final float prefixX;
+        private final float x;
+        private final float top;
+        private final float height;
+        private final float[] quoteBars;
+
+        TextLine(StyledText text, int start, int end, float[] runOffsets, String prefix, float prefixX, float x, float top, float height,
+                 float[] quoteBars) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.runOffsets = runOffsets;
+            this.prefix = prefix;
+            this.prefixX = prefixX;
+            this.x = x;
+            this.top = top;
+            this.height = height;
+            this.quoteBars = quoteBars;
         }
-        Pattern pattern = Pattern.compile("(\\*\\*[^\\*]+\\*\\*)|(\\*[^\\*]+\\*)");
-        Matcher matcher = pattern.matcher(line);
-        float currentX = x; int lastIndex = 0;
-        while (matcher.find()) {
-            if (matcher.start() > lastIndex) {
-                String plainText = line.substring(lastIndex, matcher.start());
-                canvas.drawText(plainText, currentX, y, paints.getTextPaint());
-                currentX += paints.getTextPaint().measureText(plainText);
-            }
-            String match = matcher.group();
-            if (match.startsWith("**") && match.endsWith("**")) {
-                String boldText = match.substring(2, match.length() - 2);
-                canvas.drawText(boldText, currentX, y, paints.getBoldTextPaint());
-                currentX += paints.getBoldTextPaint().measureText(boldText);
-            } else if (match.startsWith("*") && match.endsWith("*")) {
-                String italicText = match.substring(1, match.length() - 1);
-                canvas.drawText(italicText, currentX, y, paints.getItalicTextPaint());
-                currentX += paints.getItalicTextPaint().measureText(italicText);
+
+        @Override
+        public void paint(RenderTarget target) {
+            drawQuoteBars(target, quoteBars, top, height * PaintManager.LINE_HEIGHT_MULTIPLIER);
+            float baseline = top - paints.getPaint(text.getBasePaintId()).ascent();
+            if (!prefix.isEmpty()) {
+                target.drawText(prefix, 0, prefix.length(), prefixX, baseline, text.getBasePaintId());
             }
-            lastIndex = matcher.end();
+            DrawUtils.drawStyledText(target, text, start, end, runOffsets, x, baseline);
         }
-        if (lastIndex < line.length()) {
-            canvas.drawText(line.substring(lastIndex), currentX, y, paints.getTextPaint());
+    }
+
+    /** One line of a code block on its shaded background. */
+    private class CodeLine extends LayoutBlock {
+        private final String text;
+        private final int start;
+        private final int end;
+        private final float x;
+        private final float top;
+        private final float height;
+        private final float[] quoteBars;
+
+        CodeLine(String text, int start, int end, float x, float top, float height, float[] quoteBars) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.x = x;
+            this.top = top;
+            this.height = height;
+            this.quoteBars = quoteBars;
+        }
+
+        @Override
+        public void paint(RenderTarget target) {
+            drawQuoteBars(target, quoteBars, top, height);
+            target.drawRect(x - PaintManager.CELL_PADDING, top, PaintManager.MARGIN + PaintManager.CONTENT_WIDTH, top + height, PaintManager.PAINT_CODE_BACKGROUND);
+            Paint paint = paints.getCodePaint();
+            float baseline = top + (height - (paint.descent() - paint.ascent())) / 2f - paint.ascent();
+            target.drawText(text, start, end, x, baseline, PaintManager.PAINT_CODE);
         }
     }
 }
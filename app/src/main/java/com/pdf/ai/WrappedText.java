@@ -0,0 +1,86 @@
+package com.pdf.ai;
+
+/**
+ * Styled text broken into lines; each line is an offset range into {@link #getText()} with the x
+ * offsets of its style runs, so it is drawn without measuring.
+ */
+public class WrappedText {
+    private final StyledText text;
+    private final int[] lineStarts;
+    private final int[] lineEnds;
+    private final float[] lineWidths;
+    private final float[][] runOffsets;
+
+    public WrappedText(StyledText text, int[] lineStarts, int[] lineEnds, float[] lineWidths, float[][] runOffsets) {
+        this.text = text;
+        this.lineStarts = lineStarts;
+        this.lineEnds = lineEnds;
+        this.lineWidths = lineWidths;
+        this.runOffsets = runOffsets;
+    }
+
+    /** Breaks {@code text} with the calling thread's {@link LineBreaker}. */
+    public static WrappedText wrap(StyledText text, PaintManager paints, float maxWidth) {
+        LineBreaker breaker = DrawUtils.lineBreaker();
+        breaker.breakLines(text, 0, text.getText().length(), paints, maxWidth);
+        return fromBreaker(text, breaker, null);
+    }
+
+    /** Breaks {@code text} using advances measured earlier with {@link LineBreaker#measure}. */
+    public static WrappedText wrapMeasured(StyledText text, float[] measured, PaintManager paints, float maxWidth) {
+        LineBreaker breaker = DrawUtils.lineBreaker();
+        breaker.breakMeasured(text, 0, text.getText().length(), measured, paints, maxWidth);
+        return fromBreaker(text, breaker, measured);
+    }
+
+    /** {@code measured} is null if the breaker measured the text itself. */
+    private static WrappedText fromBreaker(StyledText text, LineBreaker breaker, float[] measured) {
+        int lineCount = breaker.getLineCount();
+        int[] starts = new int[lineCount];
+        int[] ends = new int[lineCount];
+        float[] widths = new float[lineCount];
+        float[][] offsets = new float[lineCount][];
+        for (int i = 0; i < lineCount; i++) {
+            starts[i] = breaker.getLineStart(i);
+            ends[i] = breaker.getLineEnd(i);
+            if (measured == null) {
+                widths[i] = breaker.getLineWidth(i);
+                offsets[i] = breaker.getRunOffsets(text, starts[i], ends[i]);
+            } else {
+                widths[i] = measured[ends[i]] - measured[starts[i]];
+                offsets[i] = LineBreaker.runOffsets(text, starts[i], ends[i], measured, 0);
+            }
+        }
+        return new WrappedText(text, starts, ends, widths, offsets);
+    }
+
+    /** The same line breaks over {@code restyled}, which must have identical text and metrics. */
+    public WrappedText withText(StyledText restyled) {
+        return new WrappedText(restyled, lineStarts, lineEnds, lineWidths, runOffsets);
+    }
+
+    public StyledText getText() {
+        return text;
+    }
+
+    public int getLineCount() {
+        return lineStarts.length;
+    }
+
+    public int getLineStart(int line) {
+        return lineStarts[line];
+    }
+
+    public int getLineEnd(int line) {
+        return lineEnds[line];
+    }
+
+    public float getLineWidth(int line) {
+        return lineWidths[line];
+    }
+
+    /** See {@link DrawUtils#drawStyledText}. */
+    public float[] getRunOffsets(int line) {
+        return runOffsets[line];
+    }
+}
@@ -0,0 +1,238 @@
+package com.pdf.ai.manager;
+
+import android.util.Log;
+
+import com.pdf.ai.provider.GenerationHandle;
+import com.pdf.ai.provider.LLMProvider;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the sections of a document with up to {@code parallelism} streams in flight, keeping each
+ * result in its outline slot. A failed section is retried on its own with backoff; once it runs out of
+ * attempts it is reported and left empty, and the rest of the run carries on.
+ *
+ * <p>Listener calls come from the providers' callback threads.
+ */
+public class SectionScheduler {
+    private static final String TAG = "SectionScheduler";
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private static final ScheduledExecutorService RETRY_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "SectionScheduler-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Starts one attempt at a section; the callback must eventually get onComplete or onError. */
+    public interface SectionGenerator {
+        GenerationHandle generate(int index, LLMProvider.StreamCallback callback);
+    }
+
+    public interface Listener {
+        void onSectionStarted(int index, int attempt);
+        void onSectionProgress(int index, int charsReceived);
+        void onSectionCompleted(int index, String content);
+        void onSectionFailed(int index, int attempt, String error, boolean retrying);
+        /** Called once, with every section in outline order; failed sections are null. */
+        void onFinished(String[] contents, List<Integer> failedSections);
+    }
+
+    private final int sectionCount;
+    private final int parallelism;
+    private final int maxAttempts;
+    private final SectionGenerator generator;
+    private final Listener listener;
+
+    private final String[] contents;
+    private final int[] attempts;
+    private final ArrayDeque<Integer> pending = new ArrayDeque<>();
+    private final List<Integer> failed = new ArrayList<>();
+    private final Map<Integer, GenerationHandle> inFlight = new HashMap<>();
+    private int running;
+    private int settled;
+    private boolean cancelled;
+
+    public SectionScheduler(int sectionCount, int parallelism, SectionGenerator generator, Listener listener) {
+        this(sectionCount, parallelism, DEFAULT_MAX_ATTEMPTS, generator, listener);
+    }
+
+    public SectionScheduler(int sectionCount, int parallelism, int maxAttempts, SectionGenerator generator, Listener listener) {
+        this.sectionCount = sectionCount;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.generator = generator;
+        this.listener = listener;
+        this.contents = new String[sectionCount];
+        this.attempts = new int[sectionCount];
+    }
+
+    public void start() {
+        synchronized (this) {
+            for (int i = 0; i < sectionCount; i++) {
+                pending.add(i);
+            }
+        }
+        if (sectionCount == 0) {
+            listener.onFinished(contents, failed);
+            return;
+        }
+        launchPending();
+    }
+
+    /** Stops the run: queued sections are dropped and running streams cancelled. */
+    public void cancel() {
+        List<GenerationHandle> running;
+        synchronized (this) {
+            cancelled = true;
+            pending.clear();
+            running = new ArrayList<>(inFlight.values());
+            inFlight.clear();
+        }
+        for (GenerationHandle handle : running) {
+            handle.cancel();
+        }
+    }
+
+    public synchronized int getCompletedCount() {
+        return settled - failed.size();
+    }
+
+    /** Starts queued sections up to the parallelism limit; the generator is called outside the lock. */
+    private void launchPending() {
+        while (true) {
+            int index;
+            int attempt;
+            synchronized (this) {
+                if (cancelled || running >= parallelism || pending.isEmpty()) return;
+                index = pending.poll();
+                attempt = ++attempts[index];
+                running++;
+            }
+            listener.onSectionStarted(index, attempt);
+            Attempt callback = new Attempt(index, attempt);
+            try {
+                GenerationHandle handle = generator.generate(index, callback);
+                boolean cancelNow;
+                synchronized (this) {
+                    cancelNow = cancelled;
+                    // An attempt that already finished has nothing left to cancel
+                    if (!cancelled && !callback.done) inFlight.put(index, handle);
+                }
+                if (cancelNow) handle.cancel();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to start section " + index, e);
+                callback.onError(e.getMessage());
+            }
+        }
+    }
+
+    private void onAttemptSucceeded(int index, String content) {
+        boolean finished;
+        synchronized (this) {
+            running--;
+            inFlight.remove(index);
+            if (cancelled) return;
+            contents[index] = content;
+            settled++;
+            finished = settled == sectionCount;
+        }
+        listener.onSectionCompleted(index, content);
+        launchPending();
+        if (finished) listener.onFinished(contents.clone(), new ArrayList<>(failed));
+    }
+
+    private void onAttemptFailed(int index, int attempt, String error) {
+        boolean retrying;
+        boolean finished = false;
+        synchronized (this) {
+            running--;
+            inFlight.remove(index);
+            if (cancelled) return;
+            retrying = attempt < maxAttempts;
+            if (!retrying) {
+                failed.add(index);
+                settled++;
+                finished = settled == sectionCount;
+            }
+        }
+        listener.onSectionFailed(index, attempt, error, retrying);
+        if (retrying) {
+            // The slot stays free meanwhile, so other sections use it
+            RETRY_TIMER.schedule(() -> {
+                synchronized (this) {
+                    if (cancelled) return;
+                    pending.addFirst(index);
+                }
+                launchPending();
+            }, RETRY_DELAY_MS << (attempt - 1), TimeUnit.MILLISECONDS);
+        }
+        launchPending();
+        if (finished) listener.onFinished(contents.clone(), new ArrayList<>(failed));
+    }
+
+    /** Callback of one attempt; only its first outcome counts. */
+    private class Attempt implements LLMProvider.StreamCallback {
+        private final int index;
+        private final int attempt;
+        private final StringBuilder content = new StringBuilder();
+        private volatile boolean done;
+
+        Attempt(int index, int attempt) {
+            this.index = index;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void onText(String text) {
+            int length;
+            synchronized (this) {
+                if (done) return;
+                content.append(text);
+                length = content.length();
+            }
+            listener.onSectionProgress(index, length);
+        }
+
+        @Override
+        public void onThinking(String thinking) {
+        }
+
+        @Override
+        public void onToolCall(String id, String name, String arguments) {
+        }
+
+        @Override
+        public void onComplete() {
+            String result;
+            synchronized (this) {
+                if (done) return;
+                done = true;
+                result = content.toString();
+            }
+            if (result.trim().isEmpty()) {
+                onAttemptFailed(index, attempt, "Empty response");
+            } else {
+                onAttemptSucceeded(index, result);
+            }
+        }
+
+        @Override
+        public void onError(String error) {
+            synchronized (this) {
+                if (done) return;
+                done = true;
+            }
+            onAttemptFailed(index, attempt, error);
+        }
+    }
+}
@@ -10,11 +10,13 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -23,15 +25,19 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
-import okhttp3.sse.EventSource;
-import okhttp3.sse.EventSourceListener;
-import okhttp3.sse.EventSources;
 
 public class DeepInfraProvider implements LLMProvider {
     private static final String TAG = "DeepInfraProvider";
     private static final String API_URL = "https://api.deepinfra.com/v1/openai/chat/completions";
     private static final String MODELS_URL = "https://api.deepinfra.com/models/featured";
     
+    // Field names read from stream chunks, matched in place by JsonScanner
+    private static final String[] CHUNK_FIELDS = {"choices"};
+    private static final String[] CHOICE_FIELDS = {"delta", "finish_reason"};
+    private static final String[] DELTA_FIELDS = {"content", "tool_calls"};
+    private static final String[] TOOL_CALL_FIELDS = {"index", "id", "function"};
+    private static final String[] FUNCTION_FIELDS = {"name", "arguments"};
+    
     private static final String[][] BROWSER_HEADERS = {
         {
             "accept", "*/*",
@@ -65,17 +71,10 @@ public class DeepInfraProvider implements LLMProvider {
     
     private final OkHttpClient client;
     private final Random random;
-    private volatile Call currentCall;
-    private volatile EventSource currentEventSource;
+    private final Set<GenerationHandle> active = Collections.newSetFromMap(new ConcurrentHashMap<>());
     
     public DeepInfraProvider() {
-        this.client = new OkHttpClient.Builder()
-            .connectTimeout(60, TimeUnit.SECONDS)
-            .readTimeout(5, TimeUnit.MINUTES)
-            .writeTimeout(5, TimeUnit.MINUTES)
-            .callTimeout(10, TimeUnit.MINUTES)
-            .retryOnConnectionFailure(true)
-            .build();
+        this.client = HttpRuntime.get().client();
         this.random = new Random();
     }
     
@@ -84,6 +83,11 @@ public class DeepInfraProvider implements LLMProvider {
         return "DeepInfra";
     }
     
+    @Override
+    public String getBaseUrl() {
+        return "https://api.deepinfra.com";
+    }
+    
     @Override
     public boolean requiresApiKey() {
         return false;
@@ -209,12 +213,13 @@ public class DeepInfraProvider implements LLMProvider {
     }
     
     @Override
-    public void generateStream(
+    public GenerationHandle generateStream(
         List<Map<String, String>> messages,
         String model,
         Map<String, Object> options,
         StreamCallback callback
     ) {
+        GenerationHandle handle = new GenerationHandle(active, callback);
         try {
             String modelId = model != null && !model.isEmpty() ? model : "Qwen/Qwen2.5-Coder-32B-Instruct";
             
@@ -254,110 +259,237 @@ public class DeepInfraProvider implements LLMProvider {
             
             StringBuilder fullContent = new StringBuilder();
             Map<Integer, JSONObject> toolCallsAccumulator = new HashMap<>();
+            JsonScanner scanner = new JsonScanner();
             
-            EventSourceListener listener = new EventSourceListener() {
-                @Override
-                public void onEvent(EventSource eventSource, String id, String type, String data) {
-                    handleEvent(data, callback, toolCallsAccumulator, fullContent);
-                }
-                
-                @Override
-                public void onClosed(EventSource eventSource) {
-                    for (JSONObject tc : toolCallsAccumulator.values()) {
-                        try {
-                            String tcId = tc.optString("id", "call_" + System.currentTimeMillis());
-                            JSONObject fn = tc.getJSONObject("function");
-                            callback.onToolCall(tcId, fn.getString("name"), fn.getString("arguments"));
-                        } catch (JSONException ignored) {}
-                    }
-                    callback.onComplete();
-                }
-                
-                @Override
-                public void onFailure(EventSource eventSource, Throwable t, Response response) {
-                    String error = t != null ? t.getMessage() : 
-                        (response != null ? "HTTP " + response.code() : "Unknown error");
-                    callback.onError(error);
-                }
-            };
-            
-            currentEventSource = EventSources.createFactory(client).newEventSource(request, listener);
+            SseCall.enqueue(client, request, handle,
+                (id, type, data) -> handleEvent(data, handle, scanner, toolCallsAccumulator, fullContent),
+                () -> emitToolCalls(toolCallsAccumulator, handle));
             
         } catch (JSONException e) {
-            callback.onError("Failed to build request: " + e.getMessage());
+            handle.onError("Failed to build request: " + e.getMessage());
         }
+        return handle;
     }
     
-    private void handleEvent(String data, StreamCallback callback, 
+    private void handleEvent(String data, GenerationHandle handle, JsonScanner scanner,
                             Map<Integer, JSONObject> toolCallsAccumulator,
                             StringBuilder fullContent) {
         if (data == null || data.isEmpty() || "[DONE]".equals(data.trim())) return;
         
+        ChunkDelta delta;
         try {
-            JSONObject json = new JSONObject(data);
-            JSONArray choices = json.optJSONArray("choices");
-            if (choices == null || choices.length() == 0) return;
-            
-            JSONObject choice = choices.getJSONObject(0);
-            JSONObject delta = choice.optJSONObject("delta");
-            if (delta == null) return;
-            
-            String content = delta.optString("content", null);
-            if (content != null && !content.isEmpty()) {
-                fullContent.append(content);
-                callback.onText(content);
+            delta = scanChunk(scanner.reset(data));
+        } catch (JSONException e) {
+            // Not the usual chunk shape; the full parser copes with it or reports it
+            try {
+                delta = parseChunk(new JSONObject(data));
+            } catch (JSONException malformed) {
+                Log.w(TAG, "Malformed SSE event: " + malformed.getMessage());
+                return;
             }
-            
-            JSONArray toolCalls = delta.optJSONArray("tool_calls");
-            if (toolCalls != null) {
-                for (int i = 0; i < toolCalls.length(); i++) {
-                    JSONObject tc = toolCalls.getJSONObject(i);
-                    int idx = tc.optInt("index", 0);
-                    
-                    if (!toolCallsAccumulator.containsKey(idx)) {
-                        toolCallsAccumulator.put(idx, new JSONObject()
-                            .put("id", tc.optString("id", ""))
-                            .put("function", new JSONObject()
-                                .put("name", "")
-                                .put("arguments", "")));
-                    }
-                    
-                    JSONObject acc = toolCallsAccumulator.get(idx);
-                    if (tc.has("id")) acc.put("id", tc.getString("id"));
-                    JSONObject fn = tc.optJSONObject("function");
-                    if (fn != null) {
-                        JSONObject accFn = acc.getJSONObject("function");
-                        if (fn.has("name")) accFn.put("name", accFn.getString("name") + fn.getString("name"));
-                        if (fn.has("arguments")) accFn.put("arguments", accFn.getString("arguments") + fn.getString("arguments"));
-                    }
+        }
+        
+        if (delta.content != null && !delta.content.isEmpty()) {
+            fullContent.append(delta.content);
+            handle.onText(delta.content);
+        }
+        
+        if (delta.toolCalls != null) {
+            try {
+                for (ToolCallDelta tc : delta.toolCalls) {
+                    accumulateToolCall(toolCallsAccumulator, tc);
                 }
+            } catch (JSONException e) {
+                Log.w(TAG, "Failed to accumulate tool call: " + e.getMessage());
             }
-            
-            String finishReason = choice.optString("finish_reason", null);
-            if (finishReason != null && !finishReason.isEmpty()) {
-                for (JSONObject tc : toolCallsAccumulator.values()) {
-                    try {
-                        String tcId = tc.optString("id", "call_" + System.currentTimeMillis());
-                        JSONObject fn = tc.getJSONObject("function");
-                        callback.onToolCall(tcId, fn.getString("name"), fn.getString("arguments"));
-                    } catch (JSONException ignored) {}
+        }
+        
+        if (delta.finishReason != null && !delta.finishReason.isEmpty()) {
+            emitToolCalls(toolCallsAccumulator, handle);
+            toolCallsAccumulator.clear();
+        }
+    }
+    
+    /** Reads choices[0] of a chunk without building a tree; throws on any shape it does not expect. */
+    private static ChunkDelta scanChunk(JsonScanner json) throws JSONException {
+        ChunkDelta delta = new ChunkDelta();
+        json.beginObject();
+        while (json.hasNext()) {
+            if (json.selectName(CHUNK_FIELDS) != 0) {
+                json.skipValue();
+                continue;
+            }
+            json.beginArray();
+            if (json.hasNext()) {
+                json.beginObject();
+                while (json.hasNext()) {
+                    switch (json.selectName(CHOICE_FIELDS)) {
+                        case 0:
+                            scanDelta(json, delta);
+                            break;
+                        case 1:
+                            delta.finishReason = json.nextString();
+                            break;
+                        default:
+                            json.skipValue();
+                            break;
+                    }
                 }
-                toolCallsAccumulator.clear();
+                json.endObject();
             }
-        } catch (JSONException e) {
-            Log.w(TAG, "Malformed SSE event: " + e.getMessage());
+            while (json.hasNext()) {
+                json.skipValue();
+            }
+            json.endArray();
+        }
+        json.endObject();
+        return delta;
+    }
+    
+    private static void scanDelta(JsonScanner json, ChunkDelta delta) throws JSONException {
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.selectName(DELTA_FIELDS)) {
+                case 0:
+                    delta.content = json.nextString();
+                    break;
+                case 1:
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        scanToolCall(json, delta);
+                    }
+                    json.endArray();
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+    }
+    
+    private static void scanToolCall(JsonScanner json, ChunkDelta delta) throws JSONException {
+        int index = 0;
+        String id = null;
+        String name = null;
+        String arguments = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.selectName(TOOL_CALL_FIELDS)) {
+                case 0:
+                    index = json.nextInt();
+                    break;
+                case 1:
+                    id = json.nextString();
+                    break;
+                case 2:
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        switch (json.selectName(FUNCTION_FIELDS)) {
+                            case 0:
+                                name = json.nextString();
+                                break;
+                            case 1:
+                                arguments = json.nextString();
+                                break;
+                            default:
+                                json.skipValue();
+                                break;
+                        }
+                    }
+                    json.endObject();
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        delta.addToolCall(new ToolCallDelta(index, id, name, arguments));
+    }
+    
+    private static ChunkDelta parseChunk(JSONObject json) throws JSONException {
+        ChunkDelta delta = new ChunkDelta();
+        JSONArray choices = json.optJSONArray("choices");
+        if (choices == null || choices.length() == 0) return delta;
+        
+        JSONObject choice = choices.getJSONObject(0);
+        if (!choice.isNull("finish_reason")) delta.finishReason = choice.optString("finish_reason", null);
+        JSONObject d = choice.optJSONObject("delta");
+        if (d == null) return delta;
+        
+        if (!d.isNull("content")) delta.content = d.optString("content", null);
+        JSONArray toolCalls = d.optJSONArray("tool_calls");
+        if (toolCalls != null) {
+            for (int i = 0; i < toolCalls.length(); i++) {
+                JSONObject tc = toolCalls.getJSONObject(i);
+                JSONObject fn = tc.optJSONObject("function");
+                delta.addToolCall(new ToolCallDelta(
+                    tc.optInt("index", 0),
+                    tc.has("id") ? tc.getString("id") : null,
+                    fn != null && fn.has("name") ? fn.getString("name") : null,
+                    fn != null && fn.has("arguments") ? fn.getString("arguments") : null));
+            }
+        }
+        return delta;
+    }
+    
+    private static void accumulateToolCall(Map<Integer, JSONObject> toolCallsAccumulator, ToolCallDelta tc) throws JSONException {
+        if (!toolCallsAccumulator.containsKey(tc.index)) {
+            toolCallsAccumulator.put(tc.index, new JSONObject()
+                .put("id", tc.id != null ? tc.id : "")
+                .put("function", new JSONObject()
+                    .put("name", "")
+                    .put("arguments", "")));
+        }
+        
+        JSONObject acc = toolCallsAccumulator.get(tc.index);
+        if (tc.id != null) acc.put("id", tc.id);
+        JSONObject accFn = acc.getJSONObject("function");
+        if (tc.name != null) accFn.put("name", accFn.getString("name") + tc.name);
+        if (tc.arguments != null) accFn.put("arguments", accFn.getString("arguments") + tc.arguments);
+    }
+    
+    private static void emitToolCalls(Map<Integer, JSONObject> toolCallsAccumulator, GenerationHandle handle) {
+        for (JSONObject tc : toolCallsAccumulator.values()) {
+            try {
+                String tcId = tc.optString("id", "call_" + System.currentTimeMillis());
+                JSONObject fn = tc.getJSONObject("function");
+                handle.onToolCall(tcId, fn.getString("name"), fn.getString("arguments"));
+            } catch (JSONException ignored) {}
+        }
+    }
+    
+    /** What one chat.completion.chunk adds to the stream. */
+    private static class ChunkDelta {
+        String content;
+        String finishReason;
+        List<ToolCallDelta> toolCalls;
+        
+        void addToolCall(ToolCallDelta toolCall) {
+            if (toolCalls == null) toolCalls = new ArrayList<>(1);
+            toolCalls.add(toolCall);
+        }
+    }
+    
+    private static class ToolCallDelta {
+        final int index;
+        final String id;
+        final String name;
+        final String arguments;
+        
+        ToolCallDelta(int index, String id, String name, String arguments) {
+            this.index = index;
+            this.id = id;
+            this.name = name;
+            this.arguments = arguments;
         }
     }
     
     @Override
     public void cancel() {
-        if (currentEventSource != null) {
-            currentEventSource.cancel();
-            currentEventSource = null;
-        }
-        if (currentCall != null) {
-            currentCall.cancel();
-            currentCall = null;
+        for (GenerationHandle handle : active) {
+            handle.cancel();
         }
     }
 }
\ No newline at end of file
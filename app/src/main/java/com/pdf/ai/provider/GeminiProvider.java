@@ -10,10 +10,12 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -27,19 +29,20 @@ public class GeminiProvider implements LLMProvider {
     private static final String TAG = "GeminiProvider";
     private static final String BASE_URL = "https://generativelanguage.googleapis.com/v1beta/models/";
     
+    // Field names read from stream responses, matched in place by JsonScanner
+    private static final String[] RESPONSE_FIELDS = {"candidates"};
+    private static final String[] CANDIDATE_FIELDS = {"content"};
+    private static final String[] CONTENT_FIELDS = {"parts"};
+    private static final String[] PART_FIELDS = {"text", "functionCall"};
+    private static final String[] FUNCTION_CALL_FIELDS = {"name", "args"};
+    
     private final OkHttpClient client;
     private final String apiKey;
-    private volatile Call currentCall;
+    private final Set<GenerationHandle> active = Collections.newSetFromMap(new ConcurrentHashMap<>());
     
     public GeminiProvider(String apiKey) {
         this.apiKey = apiKey;
-        this.client = new OkHttpClient.Builder()
-            .connectTimeout(60, TimeUnit.SECONDS)
-            .readTimeout(5, TimeUnit.MINUTES)
-            .writeTimeout(5, TimeUnit.MINUTES)
-            .callTimeout(10, TimeUnit.MINUTES)
-            .retryOnConnectionFailure(true)
-            .build();
+        this.client = HttpRuntime.get().client();
     }
     
     @Override
@@ -47,6 +50,11 @@ public class GeminiProvider implements LLMProvider {
         return "Gemini";
     }
     
+    @Override
+    public String getBaseUrl() {
+        return "https://generativelanguage.googleapis.com";
+    }
+    
     @Override
     public boolean requiresApiKey() {
         return true;
@@ -189,12 +197,13 @@ public class GeminiProvider implements LLMProvider {
     }
     
     @Override
-    public void generateStream(
+    public GenerationHandle generateStream(
         List<Map<String, String>> messages,
         String model,
         Map<String, Object> options,
         StreamCallback callback
     ) {
+        GenerationHandle handle = new GenerationHandle(active, callback);
         try {
             String modelId = model != null && !model.isEmpty() ? model : "gemini-2.5-flash";
             String url = BASE_URL + modelId + ":streamGenerateContent?key=" + apiKey + "&alt=sse";
@@ -229,93 +238,158 @@ public class GeminiProvider implements LLMProvider {
                 .addHeader("Accept", "text/event-stream")
                 .build();
             
-            currentCall = client.newCall(request);
+            JsonScanner scanner = new JsonScanner();
+            SseCall.enqueue(client, request, handle, (id, type, data) -> handleStreamData(data, handle, scanner), null);
             
-            currentCall.enqueue(new Callback() {
-                @Override
-                public void onFailure(Call call, IOException e) {
-                    callback.onError(e.getMessage());
-                }
-                
-                @Override
-                public void onResponse(Call call, Response response) throws IOException {
-                    if (!response.isSuccessful() || response.body() == null) {
-                        callback.onError("HTTP " + response.code());
-                        return;
+        } catch (JSONException e) {
+            handle.onError("Failed to build request: " + e.getMessage());
+        }
+        return handle;
+    }
+    
+    private void handleStreamData(String data, GenerationHandle handle, JsonScanner scanner) {
+        if (data == null || data.isEmpty() || "[DONE]".equals(data.trim())) return;
+        
+        List<Part> parts;
+        try {
+            parts = scanParts(scanner.reset(data));
+        } catch (JSONException e) {
+            // Not the usual response shape; the full parser copes with it or reports it
+            try {
+                parts = parseParts(new JSONObject(data));
+            } catch (JSONException malformed) {
+                Log.w(TAG, "Malformed stream data: " + malformed.getMessage());
+                return;
+            }
+        }
+        
+        for (Part part : parts) {
+            if (part.text != null && !part.text.isEmpty()) {
+                handle.onText(part.text);
+            }
+            if (part.functionName != null) {
+                handle.onToolCall("call_" + System.currentTimeMillis(), part.functionName, part.functionArgs);
+            }
+        }
+    }
+    
+    /** Reads candidates[0].content.parts without building a tree; throws on any shape it does not expect. */
+    private static List<Part> scanParts(JsonScanner json) throws JSONException {
+        List<Part> parts = Collections.emptyList();
+        json.beginObject();
+        while (json.hasNext()) {
+            if (json.selectName(RESPONSE_FIELDS) != 0) {
+                json.skipValue();
+                continue;
+            }
+            json.beginArray();
+            if (json.hasNext()) {
+                json.beginObject();
+                while (json.hasNext()) {
+                    if (json.selectName(CANDIDATE_FIELDS) != 0) {
+                        json.skipValue();
+                        continue;
                     }
-                    
-                    try {
-                        String line;
-                        StringBuilder buffer = new StringBuilder();
-                        byte[] bufferBytes = new byte[8192];
-                        int bytesRead;
-                        
-                        while ((bytesRead = response.body().byteStream().read(bufferBytes)) != -1) {
-                            buffer.append(new String(bufferBytes, 0, bytesRead, "UTF-8"));
-                            
-                            int newlineIdx;
-                            while ((newlineIdx = buffer.indexOf("\n")) != -1) {
-                                line = buffer.substring(0, newlineIdx);
-                                buffer.delete(0, newlineIdx + 1);
-                                
-                                if (line.startsWith("data: ")) {
-                                    String data = line.substring(6);
-                                    handleStreamData(data, callback);
-                                }
-                            }
+                    json.beginObject();
+                    while (json.hasNext()) {
+                        if (json.selectName(CONTENT_FIELDS) != 0) {
+                            json.skipValue();
+                            continue;
                         }
-                        
-                        callback.onComplete();
-                    } catch (Exception e) {
-                        callback.onError(e.getMessage());
+                        parts = new ArrayList<>(1);
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            parts.add(scanPart(json));
+                        }
+                        json.endArray();
                     }
+                    json.endObject();
                 }
-            });
-            
-        } catch (JSONException e) {
-            callback.onError("Failed to build request: " + e.getMessage());
+                json.endObject();
+            }
+            while (json.hasNext()) {
+                json.skipValue();
+            }
+            json.endArray();
         }
+        json.endObject();
+        return parts;
     }
     
-    private void handleStreamData(String data, StreamCallback callback) {
-        if (data == null || data.isEmpty() || "[DONE]".equals(data.trim())) return;
+    private static Part scanPart(JsonScanner json) throws JSONException {
+        Part part = new Part();
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.selectName(PART_FIELDS)) {
+                case 0:
+                    part.text = json.nextString();
+                    break;
+                case 1:
+                    json.beginObject();
+                    part.functionName = "";
+                    part.functionArgs = "{}";
+                    while (json.hasNext()) {
+                        switch (json.selectName(FUNCTION_CALL_FIELDS)) {
+                            case 0:
+                                part.functionName = json.nextString();
+                                break;
+                            case 1:
+                                part.functionArgs = json.nextRawValue();
+                                break;
+                            default:
+                                json.skipValue();
+                                break;
+                        }
+                    }
+                    json.endObject();
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        return part;
+    }
+    
+    private static List<Part> parseParts(JSONObject json) throws JSONException {
+        JSONArray candidates = json.optJSONArray("candidates");
+        if (candidates == null || candidates.length() == 0) return Collections.emptyList();
         
-        try {
-            JSONObject json = new JSONObject(data);
-            JSONArray candidates = json.optJSONArray("candidates");
-            if (candidates == null || candidates.length() == 0) return;
-            
-            JSONObject candidate = candidates.getJSONObject(0);
-            JSONObject content = candidate.optJSONObject("content");
-            if (content == null) return;
-            
-            JSONArray parts = content.optJSONArray("parts");
-            if (parts == null || parts.length() == 0) return;
+        JSONObject candidate = candidates.getJSONObject(0);
+        JSONObject content = candidate.optJSONObject("content");
+        if (content == null) return Collections.emptyList();
+        
+        JSONArray partsArray = content.optJSONArray("parts");
+        if (partsArray == null) return Collections.emptyList();
+        
+        List<Part> parts = new ArrayList<>(partsArray.length());
+        for (int i = 0; i < partsArray.length(); i++) {
+            JSONObject p = partsArray.getJSONObject(i);
+            Part part = new Part();
+            if (!p.isNull("text")) part.text = p.optString("text", null);
             
-            for (int i = 0; i < parts.length(); i++) {
-                JSONObject part = parts.getJSONObject(i);
-                String text = part.optString("text", null);
-                if (text != null && !text.isEmpty()) {
-                    callback.onText(text);
-                }
-                
-                if (part.has("functionCall")) {
-                    JSONObject fnCall = part.getJSONObject("functionCall");
-                    String name = fnCall.optString("name", "");
-                    String args = fnCall.optString("args", "{}");
-                    callback.onToolCall("call_" + System.currentTimeMillis(), name, args);
-                }
+            if (p.has("functionCall")) {
+                JSONObject fnCall = p.getJSONObject("functionCall");
+                part.functionName = fnCall.optString("name", "");
+                part.functionArgs = fnCall.optString("args", "{}");
             }
-        } catch (JSONException e) {
-            Log.w(TAG, "Malformed stream data: " + e.getMessage());
+            parts.add(part);
         }
+        return parts;
+    }
+    
+    /** One part of a streamed candidate: text, a function call, or both absent. */
+    private static class Part {
+        String text;
+        String functionName;
+        String functionArgs;
     }
     
     @Override
     public void cancel() {
-        if (currentCall != null) {
-            currentCall.cancel();
-            currentCall = null;
+        for (GenerationHandle handle : active) {
+            handle.cancel();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package com.pdf.ai.provider;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One in-flight generation started by {@link LLMProvider#generateStream}. Each stream has its own
+ * handle, so a provider can run many at once and any one of them can be cancelled or awaited without
+ * touching the others.
+ *
+ * <p>The callback given to the provider only sees events while the handle is running; after
+ * {@link #cancel()} nothing more is delivered.
+ */
+public final class GenerationHandle {
+
+    public enum Status { RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.RUNNING);
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong tokensReceived = new AtomicLong();
+    private final Set<GenerationHandle> active;
+    private final LLMProvider.StreamCallback callback;
+    private volatile Runnable cancelAction;
+    private volatile String error;
+
+    /** Registers the handle in {@code active} until it settles; events are forwarded to {@code callback}. */
+    GenerationHandle(Set<GenerationHandle> active, LLMProvider.StreamCallback callback) {
+        this.active = active;
+        this.callback = callback;
+        active.add(this);
+    }
+
+    /** Stops the stream; a no-op once it has settled. */
+    public void cancel() {
+        if (!settle(Status.CANCELLED, null)) return;
+        Runnable action = cancelAction;
+        if (action != null) action.run();
+    }
+
+    /** Blocks until the stream completes, fails or is cancelled. */
+    public Status await() throws InterruptedException {
+        done.await();
+        return status.get();
+    }
+
+    /** Like {@link #await()} but gives up after {@code timeout}, returning the status at that point. */
+    public Status await(long timeout, TimeUnit unit) throws InterruptedException {
+        done.await(timeout, unit);
+        return status.get();
+    }
+
+    public Status getStatus() {
+        return status.get();
+    }
+
+    public boolean isDone() {
+        return status.get() != Status.RUNNING;
+    }
+
+    /** Error message of a {@link Status#FAILED} stream, else null. */
+    public String getError() {
+        return error;
+    }
+
+    /** Bytes of event data received so far. */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /** Text and thinking deltas received so far; providers stream roughly one token per delta. */
+    public long getTokensReceived() {
+        return tokensReceived.get();
+    }
+
+    /** Sets how to stop the underlying call; runs it at once if the handle was cancelled already. */
+    void setCancelAction(Runnable action) {
+        cancelAction = action;
+        if (status.get() == Status.CANCELLED) action.run();
+    }
+
+    void addBytes(long count) {
+        bytesReceived.addAndGet(count);
+    }
+
+    void onText(String text) {
+        if (isDone()) return;
+        tokensReceived.incrementAndGet();
+        callback.onText(text);
+    }
+
+    void onThinking(String thinking) {
+        if (isDone()) return;
+        tokensReceived.incrementAndGet();
+        callback.onThinking(thinking);
+    }
+
+    void onToolCall(String id, String name, String arguments) {
+        if (isDone()) return;
+        callback.onToolCall(id, name, arguments);
+    }
+
+    void onComplete() {
+        if (settle(Status.COMPLETED, null)) callback.onComplete();
+    }
+
+    void onError(String message) {
+        if (settle(Status.FAILED, message)) callback.onError(message);
+    }
+
+    private boolean settle(Status outcome, String message) {
+        if (!status.compareAndSet(Status.RUNNING, outcome)) return false;
+        error = message;
+        active.remove(this);
+        done.countDown();
+        return true;
+    }
+}
@@ -0,0 +1,147 @@
+package com.pdf.ai.provider;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The one {@link OkHttpClient} every provider uses, so connections, TLS sessions and DNS answers
+ * survive provider and model switches. HTTP/2 lets parallel streams to one host share a connection.
+ * {@link #prewarm(LLMProvider)} opens that connection ahead of the first request.
+ */
+public final class HttpRuntime {
+    private static final String TAG = "HttpRuntime";
+
+    private static final int MAX_REQUESTS = 64;
+    private static final int MAX_REQUESTS_PER_HOST = 8;
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final long DNS_TTL_MS = 5 * 60 * 1000;
+    // A host prewarmed this recently still has its connection in the pool
+    private static final long PREWARM_INTERVAL_MS = 60 * 1000;
+
+    private static volatile HttpRuntime instance;
+
+    private final OkHttpClient client;
+    private final Map<String, Long> lastPrewarm = new ConcurrentHashMap<>();
+
+    private HttpRuntime() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+        this.client = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .dns(new CachingDns(DNS_TTL_MS))
+            .connectTimeout(60, TimeUnit.SECONDS)
+            .readTimeout(5, TimeUnit.MINUTES)
+            .writeTimeout(5, TimeUnit.MINUTES)
+            .callTimeout(10, TimeUnit.MINUTES)
+            .retryOnConnectionFailure(true)
+            .build();
+    }
+
+    public static HttpRuntime get() {
+        if (instance == null) {
+            synchronized (HttpRuntime.class) {
+                if (instance == null) {
+                    instance = new HttpRuntime();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public OkHttpClient client() {
+        return client;
+    }
+
+    public void prewarm(LLMProvider provider) {
+        prewarm(provider.getBaseUrl());
+    }
+
+    /**
+     * Resolves the host and opens a pooled connection to it in the background, so the next request
+     * skips DNS, TCP and TLS setup. Cheap to call often, e.g. on every keystroke.
+     */
+    public void prewarm(String url) {
+        HttpUrl parsed = HttpUrl.parse(url);
+        if (parsed == null) return;
+        long now = System.currentTimeMillis();
+        Long last = lastPrewarm.get(parsed.host());
+        if (last != null && now - last < PREWARM_INTERVAL_MS) return;
+        lastPrewarm.put(parsed.host(), now);
+
+        // Any response will do; the connection it leaves in the pool is the point
+        Request request = new Request.Builder()
+            .url(parsed.newBuilder().encodedPath("/").query(null).build())
+            .head()
+            .build();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                lastPrewarm.remove(parsed.host());
+                Log.d(TAG, "Prewarm of " + parsed.host() + " failed: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+        });
+    }
+
+    /** System DNS with answers kept for a fixed time; a stale answer is used if a fresh lookup fails. */
+    private static final class CachingDns implements Dns {
+        private final long ttlMs;
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+        CachingDns(long ttlMs) {
+            this.ttlMs = ttlMs;
+        }
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            Entry entry = entries.get(hostname);
+            long now = System.currentTimeMillis();
+            if (entry != null && now < entry.expiresAt) return entry.addresses;
+            try {
+                List<InetAddress> addresses = Dns.SYSTEM.lookup(hostname);
+                entries.put(hostname, new Entry(addresses, now + ttlMs));
+                return addresses;
+            } catch (UnknownHostException e) {
+                if (entry != null) return entry.addresses;
+                throw e;
+            }
+        }
+
+        private static final class Entry {
+            final List<InetAddress> addresses;
+            final long expiresAt;
+
+            Entry(List<InetAddress> addresses, long expiresAt) {
+                this.addresses = addresses;
+                this.expiresAt = expiresAt;
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.pdf.ai.provider;
+
+import org.json.JSONException;
+
+/**
+ * Pull-style reader over one JSON text, for pulling a few known fields out of a stream event without
+ * building a {@link org.json.JSONObject} tree. Names and enum-like string values are matched in place
+ * with {@link #selectName} and {@link #selectString}, so only the values the caller keeps become Strings;
+ * everything else is stepped over with {@link #skipValue()}.
+ *
+ * <p>Any input that does not have the shape the caller walks throws {@link JSONException}; callers fall
+ * back to the full parser then. One scanner can be reused for many texts with {@link #reset(String)}.
+ */
+public final class JsonScanner {
+
+    public static final int END = 0;
+    public static final int OBJECT = 1;
+    public static final int ARRAY = 2;
+    public static final int STRING = 3;
+    public static final int NUMBER = 4;
+    public static final int BOOLEAN = 5;
+    public static final int NULL = 6;
+
+    private final StringBuilder scratch = new StringBuilder();
+    private String json = "";
+    private int pos;
+
+    public JsonScanner reset(String json) {
+        this.json = json;
+        this.pos = 0;
+        return this;
+    }
+
+    /** The type of the next value, without consuming it. */
+    public int peek() throws JSONException {
+        skipWhitespace();
+        if (pos >= json.length()) return END;
+        char c = json.charAt(pos);
+        switch (c) {
+            case '{': return OBJECT;
+            case '[': return ARRAY;
+            case '"': return STRING;
+            case 't':
+            case 'f': return BOOLEAN;
+            case 'n': return NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return NUMBER;
+                throw syntaxError("Unexpected character '" + c + "'");
+        }
+    }
+
+    public void beginObject() throws JSONException {
+        expect('{');
+    }
+
+    public void endObject() throws JSONException {
+        expect('}');
+    }
+
+    public void beginArray() throws JSONException {
+        expect('[');
+    }
+
+    public void endArray() throws JSONException {
+        expect(']');
+    }
+
+    /** True if the current object or array has another member; steps over the separating comma. */
+    public boolean hasNext() throws JSONException {
+        skipWhitespace();
+        if (pos >= json.length()) throw syntaxError("Unterminated object or array");
+        char c = json.charAt(pos);
+        if (c == '}' || c == ']') return false;
+        if (c == ',') pos++;
+        return true;
+    }
+
+    /** Reads the next member name and its colon; returns its index in {@code names}, or -1. */
+    public int selectName(String[] names) throws JSONException {
+        int index = selectString(names);
+        expect(':');
+        return index;
+    }
+
+    /** Reads the next string value; returns its index in {@code values}, or -1 for other strings and null. */
+    public int selectString(String[] values) throws JSONException {
+        if (peek() == NULL) {
+            skipValue();
+            return -1;
+        }
+        expect('"');
+        int start = pos;
+        boolean escaped = scanString();
+        int end = pos - 1;
+        if (escaped) {
+            String decoded = decode(start, end);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i].equals(decoded)) return i;
+            }
+            return -1;
+        }
+        int length = end - start;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].length() == length && json.regionMatches(start, values[i], 0, length)) return i;
+        }
+        return -1;
+    }
+
+    /** The next string value, or null for a JSON null. */
+    public String nextString() throws JSONException {
+        if (peek() == NULL) {
+            skipValue();
+            return null;
+        }
+        expect('"');
+        int start = pos;
+        boolean escaped = scanString();
+        return escaped ? decode(start, pos - 1) : json.substring(start, pos - 1);
+    }
+
+    public int nextInt() throws JSONException {
+        if (peek() != NUMBER) throw syntaxError("Expected a number");
+        int start = pos;
+        skipLiteral();
+        try {
+            return Integer.parseInt(json.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected an int");
+        }
+    }
+
+    /** The next value as JSON text, exactly as it appears in the input. */
+    public String nextRawValue() throws JSONException {
+        skipWhitespace();
+        int start = pos;
+        skipValue();
+        return json.substring(start, pos);
+    }
+
+    public void skipValue() throws JSONException {
+        int type = peek();
+        if (type == OBJECT || type == ARRAY) {
+            int depth = 0;
+            do {
+                if (pos >= json.length()) throw syntaxError("Unterminated object or array");
+                char c = json.charAt(pos++);
+                if (c == '"') {
+                    scanString();
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            } while (depth > 0);
+        } else if (type == STRING) {
+            pos++;
+            scanString();
+        } else if (type == END) {
+            throw syntaxError("Expected a value");
+        } else {
+            skipLiteral();
+        }
+    }
+
+    /** Moves past the closing quote of a string whose opening quote was consumed; true if it has escapes. */
+    private boolean scanString() throws JSONException {
+        boolean escaped = false;
+        while (pos < json.length()) {
+            char c = json.charAt(pos++);
+            if (c == '"') return escaped;
+            if (c == '\\') {
+                escaped = true;
+                pos++;
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    private String decode(int start, int end) throws JSONException {
+        StringBuilder sb = scratch;
+        sb.setLength(0);
+        for (int i = start; i < end; i++) {
+            char c = json.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char e = json.charAt(++i);
+            switch (e) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (i + 4 >= end) throw syntaxError("Bad unicode escape");
+                    try {
+                        sb.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                    } catch (NumberFormatException ex) {
+                        throw syntaxError("Bad unicode escape");
+                    }
+                    i += 4;
+                    break;
+                default: sb.append(e); break;
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Skips a number, true, false or null. */
+    private void skipLiteral() {
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c == ',' || c == '}' || c == ']' || c <= ' ') return;
+            pos++;
+        }
+    }
+
+    private void expect(char c) throws JSONException {
+        skipWhitespace();
+        if (pos >= json.length() || json.charAt(pos) != c) throw syntaxError("Expected '" + c + "'");
+        pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length() && json.charAt(pos) <= ' ') {
+            pos++;
+        }
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at " + pos);
+    }
+}
@@ -22,19 +22,30 @@ public interface LLMProvider {
 
     String getProviderName();
     
+    /** Origin the provider talks to, for {@link HttpRuntime#prewarm(LLMProvider)}. */
+    String getBaseUrl();
+    
     boolean requiresApiKey();
     
     void fetchModels(ModelsCallback callback);
     
-    void generateStream(
+    /**
+     * Starts a streamed generation and returns its handle at once. Streams are independent, so one
+     * provider may run many at a time; the callback hears only its own stream.
+     */
+    GenerationHandle generateStream(
         List<Map<String, String>> messages,
         String model,
         Map<String, Object> options,
         StreamCallback callback
     );
     
+    /** Cancels every generation of this provider that is still running. */
     void cancel();
     
+    /** How many streams a document generation may run against this provider at once. */
+    default int getMaxConcurrentRequests() { return 4; }
+    
     default boolean supportsThinking() { return false; }
     default boolean supportsSearch() { return false; }
     default boolean supportsTools() { return false; }
@@ -10,11 +10,13 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -23,9 +25,6 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
-import okhttp3.sse.EventSource;
-import okhttp3.sse.EventSourceListener;
-import okhttp3.sse.EventSources;
 
 public class QwenProvider implements LLMProvider {
     private static final String TAG = "QwenProvider";
@@ -34,6 +33,20 @@ public class QwenProvider implements LLMProvider {
     private static final String MODELS_URL = BASE_URL + "/api/v2/models";
     private static final String AUTH_URL = BASE_URL + "/api/v1/auths/";
     
+    // Field names and types read from stream events, matched in place by JsonScanner
+    private static final String[] EVENT_FIELDS = {"type", "update", "entry"};
+    private static final String[] EVENT_TYPES = {"thread.item_updated", "thread.message_delta"};
+    private static final String[] ENTRY_FIELDS = {"type", "delta", "id", "function"};
+    private static final String[] ENTRY_TYPES = {
+        "assistant_message.content_part.text_delta",
+        "assistant_message.content_part.thinking_delta",
+        "assistant_message.tool_call"
+    };
+    private static final int ENTRY_TEXT_DELTA = 0;
+    private static final int ENTRY_THINKING_DELTA = 1;
+    private static final int ENTRY_TOOL_CALL = 2;
+    private static final String[] FUNCTION_FIELDS = {"name", "arguments"};
+    
     private static final String[] USER_AGENTS = {
         "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/136.0.0.0 Safari/537.36",
         "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/132.0.0.0 Safari/537.36 Edg/132.0.0.0",
@@ -42,20 +55,13 @@ public class QwenProvider implements LLMProvider {
     
     private final OkHttpClient client;
     private final Random random;
-    private volatile EventSource currentEventSource;
-    private volatile Call currentCall;
+    private final Set<GenerationHandle> active = Collections.newSetFromMap(new ConcurrentHashMap<>());
     private volatile String cachedMidtoken;
     private volatile long midtokenTime;
     private static final long MIDTOKEN_TTL = 5 * 60 * 1000;
     
     public QwenProvider() {
-        this.client = new OkHttpClient.Builder()
-            .connectTimeout(60, TimeUnit.SECONDS)
-            .readTimeout(5, TimeUnit.MINUTES)
-            .writeTimeout(5, TimeUnit.MINUTES)
-            .callTimeout(10, TimeUnit.MINUTES)
-            .retryOnConnectionFailure(true)
-            .build();
+        this.client = HttpRuntime.get().client();
         this.random = new Random();
     }
     
@@ -64,11 +70,22 @@ public class QwenProvider implements LLMProvider {
         return "Qwen";
     }
     
+    @Override
+    public String getBaseUrl() {
+        return BASE_URL;
+    }
+    
     @Override
     public boolean requiresApiKey() {
         return false;
     }
     
+    @Override
+    public int getMaxConcurrentRequests() {
+        // The web endpoint throttles parallel chats from one client
+        return 2;
+    }
+    
     @Override
     public boolean supportsThinking() {
         return true;
@@ -122,12 +139,13 @@ public class QwenProvider implements LLMProvider {
     }
     
     @Override
-    public void generateStream(
+    public GenerationHandle generateStream(
         List<Map<String, String>> messages,
         String model,
         Map<String, Object> options,
         StreamCallback callback
     ) {
+        GenerationHandle handle = new GenerationHandle(active, callback);
         new Thread(() -> {
             try {
                 String modelId = model != null && !model.isEmpty() ? model : "qwen3.6-plus";
@@ -184,32 +202,18 @@ public class QwenProvider implements LLMProvider {
                 StringBuilder fullContent = new StringBuilder();
                 StringBuilder thinkingContent = new StringBuilder();
                 
-                EventSourceListener listener = new EventSourceListener() {
-                    @Override
-                    public void onEvent(EventSource eventSource, String id, String type, String data) {
-                        handleSseEvent(data, callback, fullContent, thinkingContent);
-                    }
-                    
-                    @Override
-                    public void onClosed(EventSource eventSource) {
-                        callback.onComplete();
-                    }
-                    
-                    @Override
-                    public void onFailure(EventSource eventSource, Throwable t, Response response) {
-                        String error = t != null ? t.getMessage() :
-                            (response != null ? "HTTP " + response.code() : "Unknown error");
-                        callback.onError(error);
-                    }
-                };
+                JsonScanner scanner = new JsonScanner();
                 
-                currentEventSource = EventSources.createFactory(client).newEventSource(request, listener);
+                if (handle.isDone()) return;
+                SseCall.enqueue(client, request, handle,
+                    (id, type, data) -> handleSseEvent(data, handle, scanner, fullContent, thinkingContent), null);
                 
             } catch (Exception e) {
                 Log.e(TAG, "Error in generateStream", e);
-                callback.onError(e.getMessage());
+                handle.onError(e.getMessage());
             }
         }).start();
+        return handle;
     }
     
     private String getMidtoken() {
@@ -244,57 +248,148 @@ public class QwenProvider implements LLMProvider {
         return null;
     }
     
-    private void handleSseEvent(String data, StreamCallback callback,
+    private void handleSseEvent(String data, GenerationHandle handle, JsonScanner scanner,
                                StringBuilder fullContent, StringBuilder thinkingContent) {
         if (data == null || data.isEmpty()) return;
         
+        EntryUpdate update;
         try {
-            JSONObject json = new JSONObject(data);
-            String eventType = json.optString("type", "");
-            
-            if ("thread.item_updated".equals(eventType) || "thread.message_delta".equals(eventType)) {
-                JSONObject update = json.optJSONObject("update");
-                if (update == null) update = json.optJSONObject("entry");
-                if (update == null) return;
-                
-                String entryType = update.optString("type", "");
-                
-                if ("assistant_message.content_part.text_delta".equals(entryType)) {
-                    String delta = update.optString("delta", "");
-                    if (!delta.isEmpty()) {
-                        fullContent.append(delta);
-                        callback.onText(delta);
-                    }
-                } else if ("assistant_message.content_part.thinking_delta".equals(entryType)) {
-                    String delta = update.optString("delta", "");
-                    if (!delta.isEmpty()) {
-                        thinkingContent.append(delta);
-                        callback.onThinking(delta);
-                    }
-                } else if ("assistant_message.tool_call".equals(entryType)) {
-                    String tcId = update.optString("id", "call_" + System.currentTimeMillis());
-                    JSONObject fn = update.optJSONObject("function");
-                    if (fn != null) {
-                        String name = fn.optString("name", "");
-                        String args = fn.optString("arguments", "{}");
-                        callback.onToolCall(tcId, name, args);
+            update = scanEvent(scanner.reset(data));
+        } catch (JSONException e) {
+            // Not the usual event shape; the full parser copes with it or reports it
+            try {
+                update = parseEvent(new JSONObject(data));
+            } catch (JSONException malformed) {
+                Log.w(TAG, "Malformed SSE event: " + malformed.getMessage());
+                return;
+            }
+        }
+        if (update == null) return;
+        
+        if (update.type == ENTRY_TEXT_DELTA) {
+            if (update.delta != null && !update.delta.isEmpty()) {
+                fullContent.append(update.delta);
+                handle.onText(update.delta);
+            }
+        } else if (update.type == ENTRY_THINKING_DELTA) {
+            if (update.delta != null && !update.delta.isEmpty()) {
+                thinkingContent.append(update.delta);
+                handle.onThinking(update.delta);
+            }
+        } else if (update.type == ENTRY_TOOL_CALL && update.functionName != null) {
+            String tcId = update.id != null ? update.id : "call_" + System.currentTimeMillis();
+            handle.onToolCall(tcId, update.functionName, update.functionArgs);
+        }
+    }
+    
+    /**
+     * Reads the entry update of a thread event without building a tree; null for other events.
+     * Throws on any shape it does not expect.
+     */
+    private static EntryUpdate scanEvent(JsonScanner json) throws JSONException {
+        boolean threadEvent = false;
+        EntryUpdate update = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.selectName(EVENT_FIELDS)) {
+                case 0:
+                    threadEvent = json.selectString(EVENT_TYPES) != -1;
+                    break;
+                case 1:
+                case 2:
+                    // Events carry "update" or "entry"; one with both goes to the full parser
+                    if (update != null) throw new JSONException("Both update and entry");
+                    update = json.peek() == JsonScanner.NULL ? null : scanEntry(json);
+                    if (update == null) json.skipValue();
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        return threadEvent ? update : null;
+    }
+    
+    private static EntryUpdate scanEntry(JsonScanner json) throws JSONException {
+        EntryUpdate update = new EntryUpdate();
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.selectName(ENTRY_FIELDS)) {
+                case 0:
+                    update.type = json.selectString(ENTRY_TYPES);
+                    break;
+                case 1:
+                    update.delta = json.nextString();
+                    break;
+                case 2:
+                    update.id = json.nextString();
+                    break;
+                case 3:
+                    json.beginObject();
+                    update.functionName = "";
+                    update.functionArgs = "{}";
+                    while (json.hasNext()) {
+                        switch (json.selectName(FUNCTION_FIELDS)) {
+                            case 0:
+                                update.functionName = json.nextString();
+                                break;
+                            case 1:
+                                update.functionArgs = json.peek() == JsonScanner.STRING
+                                    ? json.nextString() : json.nextRawValue();
+                                break;
+                            default:
+                                json.skipValue();
+                                break;
+                        }
                     }
-                }
+                    json.endObject();
+                    break;
+                default:
+                    json.skipValue();
+                    break;
             }
-        } catch (JSONException e) {
-            Log.w(TAG, "Malformed SSE event: " + e.getMessage());
         }
+        json.endObject();
+        return update;
+    }
+    
+    private static EntryUpdate parseEvent(JSONObject json) throws JSONException {
+        String eventType = json.optString("type", "");
+        if (!"thread.item_updated".equals(eventType) && !"thread.message_delta".equals(eventType)) return null;
+        
+        JSONObject entry = json.optJSONObject("update");
+        if (entry == null) entry = json.optJSONObject("entry");
+        if (entry == null) return null;
+        
+        EntryUpdate update = new EntryUpdate();
+        String entryType = entry.optString("type", "");
+        for (int i = 0; i < ENTRY_TYPES.length; i++) {
+            if (ENTRY_TYPES[i].equals(entryType)) update.type = i;
+        }
+        if (!entry.isNull("delta")) update.delta = entry.optString("delta", null);
+        if (!entry.isNull("id")) update.id = entry.optString("id", null);
+        JSONObject fn = entry.optJSONObject("function");
+        if (fn != null) {
+            update.functionName = fn.optString("name", "");
+            update.functionArgs = fn.optString("arguments", "{}");
+        }
+        return update;
+    }
+    
+    /** The assistant entry update carried by a thread event. */
+    private static class EntryUpdate {
+        int type = -1;
+        String delta;
+        String id;
+        String functionName;
+        String functionArgs;
     }
     
     @Override
     public void cancel() {
-        if (currentEventSource != null) {
-            currentEventSource.cancel();
-            currentEventSource = null;
-        }
-        if (currentCall != null) {
-            currentCall.cancel();
-            currentCall = null;
+        for (GenerationHandle handle : active) {
+            handle.cancel();
         }
     }
 }
\ No newline at end of file
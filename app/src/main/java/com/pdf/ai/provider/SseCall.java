@@ -0,0 +1,64 @@
+package com.pdf.ai.provider;
+
+import java.io.IOException;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/** Runs one event-stream request for a {@link GenerationHandle}, decoding the body with {@link SseDecoder}. */
+final class SseCall {
+
+    private SseCall() {
+    }
+
+    /**
+     * Sends {@code request} and passes each event to {@code handler}. At the end of the stream
+     * {@code onClosed}, if given, runs and the handle completes; a failed call or a non-2xx response
+     * fails the handle. Cancelling the handle cancels the call.
+     */
+    static void enqueue(OkHttpClient client, Request request, GenerationHandle handle,
+                        SseDecoder.Handler handler, Runnable onClosed) {
+        Call call = client.newCall(request);
+        handle.setCancelAction(call::cancel);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                handle.onError(e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful() || body == null) {
+                        handle.onError("HTTP " + response.code());
+                        return;
+                    }
+                    BufferedSource source = Okio.buffer(new ForwardingSource(body.source()) {
+                        @Override
+                        public long read(Buffer sink, long byteCount) throws IOException {
+                            long read = super.read(sink, byteCount);
+                            if (read > 0) handle.addBytes(read);
+                            return read;
+                        }
+                    });
+                    SseDecoder decoder = new SseDecoder(source, handler);
+                    while (!handle.isDone() && decoder.processNextEvent()) {
+                    }
+                    if (handle.isDone()) return;
+                    if (onClosed != null) onClosed.run();
+                    handle.onComplete();
+                } catch (IOException e) {
+                    handle.onError(e.getMessage());
+                }
+            }
+        });
+    }
+}
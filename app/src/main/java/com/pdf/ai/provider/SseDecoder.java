@@ -0,0 +1,129 @@
+package com.pdf.ai.provider;
+
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * Server-sent events decoder that works on the bytes of a {@link BufferedSource}. Data lines are moved
+ * into a byte buffer as they arrive and decoded as UTF-8 once per event, so a character split across
+ * two network reads comes out whole, and no line is turned into a String just to look at its field name.
+ *
+ * <p>Follows the event-stream rules: {@code data:} lines are joined with newlines, {@code event:} applies
+ * to the next event only, {@code id:} is kept until it changes, {@code retry:} is reported, and comments
+ * and unknown fields are skipped. An event without a closing blank line at the end of the stream is dropped.
+ */
+public final class SseDecoder {
+
+    public interface Handler {
+        /** {@code type} is null for the default "message" type; {@code id} is the last id seen, or null. */
+        void onEvent(String id, String type, String data);
+
+        default void onRetryChange(long retryMs) {
+        }
+    }
+
+    private static final ByteString LINE_ENDS = ByteString.encodeUtf8("\r\n");
+    private static final ByteString DATA = ByteString.encodeUtf8("data");
+    private static final ByteString EVENT = ByteString.encodeUtf8("event");
+    private static final ByteString ID = ByteString.encodeUtf8("id");
+    private static final ByteString RETRY = ByteString.encodeUtf8("retry");
+
+    private final BufferedSource source;
+    private final Handler handler;
+    private final Buffer data = new Buffer();
+    private boolean hasData;
+    private String type;
+    private String lastId;
+
+    public SseDecoder(BufferedSource source, Handler handler) {
+        this.source = source;
+        this.handler = handler;
+    }
+
+    /** Reads through the next event and dispatches it; false once the source is exhausted. */
+    public boolean processNextEvent() throws IOException {
+        while (true) {
+            long lineEnd = source.indexOfElement(LINE_ENDS);
+            if (lineEnd == -1) return false;
+            if (lineEnd == 0) {
+                skipLineEnd();
+                if (dispatch()) return true;
+            } else {
+                readField(lineEnd);
+                skipLineEnd();
+            }
+        }
+    }
+
+    /** Consumes one field line, which is already buffered, up to but not including its line end. */
+    private void readField(long lineEnd) throws IOException {
+        Buffer buffer = source.getBuffer();
+        long colon = buffer.indexOf((byte) ':', 0, lineEnd);
+        long nameLength = colon == -1 ? lineEnd : colon;
+        long valueStart = colon == -1 ? lineEnd : colon + 1;
+        if (valueStart < lineEnd && buffer.getByte(valueStart) == ' ') valueStart++;
+        long valueLength = lineEnd - valueStart;
+
+        // Comment lines have an empty name and fall through to the skip at the end
+        ByteString field = null;
+        if (isField(buffer, nameLength, DATA)) field = DATA;
+        else if (isField(buffer, nameLength, EVENT)) field = EVENT;
+        else if (isField(buffer, nameLength, ID)) field = ID;
+        else if (isField(buffer, nameLength, RETRY)) field = RETRY;
+        buffer.skip(valueStart);
+
+        if (field == DATA) {
+            if (hasData) data.writeByte('\n');
+            data.write(buffer, valueLength);
+            hasData = true;
+        } else if (field == EVENT) {
+            type = valueLength == 0 ? null : buffer.readUtf8(valueLength);
+        } else if (field == ID) {
+            String id = buffer.readUtf8(valueLength);
+            if (id.indexOf('\0') == -1) lastId = id;
+        } else if (field == RETRY) {
+            String retry = buffer.readUtf8(valueLength);
+            if (!retry.isEmpty() && isDigits(retry)) {
+                try {
+                    handler.onRetryChange(Long.parseLong(retry));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } else {
+            buffer.skip(valueLength);
+        }
+    }
+
+    private static boolean isField(Buffer buffer, long nameLength, ByteString name) {
+        return nameLength == name.size() && buffer.rangeEquals(0, name);
+    }
+
+    private static boolean isDigits(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    /** Skips a CR, LF or CRLF line end. */
+    private void skipLineEnd() throws IOException {
+        byte b = source.readByte();
+        // A lone CR waits for one more byte to tell it from CRLF; servers send LF in practice
+        if (b == '\r' && source.request(1) && source.getBuffer().getByte(0) == '\n') {
+            source.skip(1);
+        }
+    }
+
+    private boolean dispatch() {
+        String eventType = type;
+        type = null;
+        if (!hasData) return false;
+        hasData = false;
+        handler.onEvent(lastId, eventType, data.readUtf8());
+        return true;
+    }
+}
@@ -1,10 +1,16 @@
 package com.pdf.ai.util;
 
 import org.commonmark.node.Node;
+import org.commonmark.node.SourceSpan;
+import org.commonmark.parser.IncludeSourceSpans;
 import org.commonmark.parser.Parser;
 
+import java.util.List;
+
 public class MarkdownParser {
-    private static final Parser PARSER = Parser.builder().build();
+    private static final Parser PARSER = Parser.builder()
+            .includeSourceSpans(IncludeSourceSpans.BLOCKS)
+            .build();
 
     // Normalize incoming markdown from LLMs: strip code fences, normalize line-endings, collapse blank lines
     public static String normalize(String markdown) {
@@ -25,9 +31,24 @@ public class MarkdownParser {
         return s;
     }
 
-    // Expose parser for future structured handling (e.g., robust lists/tables rendering)
     public static Node parse(String markdown) {
-        String s = normalize(markdown);
-        return PARSER.parse(s);
+        return parseNormalized(normalize(markdown));
+    }
+
+    // Parse text that already went through normalize(); source spans refer to this exact text
+    public static Node parseNormalized(String markdown) {
+        return PARSER.parse(markdown);
+    }
+
+    // Raw source of a block node, lines joined with '\n'. Returns "" when the node has no spans.
+    public static String sourceOf(Node block, String[] sourceLines) {
+        List<SourceSpan> spans = block.getSourceSpans();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < spans.size(); i++) {
+            SourceSpan span = spans.get(i);
+            if (i > 0) sb.append('\n');
+            sb.append(sourceLines[span.getLineIndex()], span.getColumnIndex(), span.getColumnIndex() + span.getLength());
+        }
+        return sb.toString();
     }
 }
@@ -0,0 +1,128 @@
+package com.pdf.ai.benchmark;
+
+import com.pdf.ai.LayoutBlock;
+import com.pdf.ai.LayoutPage;
+import com.pdf.ai.RenderTarget;
+import com.pdf.ai.SectionLayout;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Deterministic synthetic content for the layout benchmarks. */
+final class BenchmarkCorpus {
+
+    private static final String[] WORDS = {
+            "layout", "pipeline", "measures", "every", "paragraph", "once", "and", "the", "renderer",
+            "replays", "blocks", "onto", "pages", "with", "**bold**", "*italic*", "`code`", "throughput",
+            "allocation", "section", "document", "table", "chart", "wrapping"
+    };
+
+    private BenchmarkCorpus() {
+    }
+
+    static String paragraph(int seed, int words) {
+        StringBuilder sb = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[(seed * 31 + i * 7) % WORDS.length]);
+        }
+        return sb.append('.').toString();
+    }
+
+    /** A section mixing headings, paragraphs, lists, a quote, a code block and a small table. */
+    static String section(int seed) {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("## Overview ").append(seed).append("\n\n");
+        sb.append(paragraph(seed, 120)).append("\n\n");
+        for (int i = 0; i < 5; i++) {
+            sb.append("- ").append(paragraph(seed + i, 14)).append('\n');
+        }
+        sb.append('\n');
+        sb.append("> ").append(paragraph(seed + 1, 40)).append("\n\n");
+        sb.append("```\nint total = 0;\nfor (int i = 0; i < n; i++) total += i;\n```\n\n");
+        sb.append(table(seed, 6, 4)).append("\n\n");
+        sb.append(paragraph(seed + 2, 200)).append("\n");
+        return sb.toString();
+    }
+
+    static List<String> sectionTitles(int count) {
+        List<String> titles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            titles.add("Section " + (i + 1) + ": " + WORDS[i % WORDS.length]);
+        }
+        return titles;
+    }
+
+    static String table(int seed, int rows, int columns) {
+        StringBuilder sb = new StringBuilder(rows * columns * 16);
+        sb.append("[[TABLE|Comparison ").append(seed).append('|');
+        for (int c = 0; c < columns; c++) {
+            if (c > 0) sb.append(',');
+            sb.append("Column ").append(c + 1);
+        }
+        for (int r = 0; r < rows; r++) {
+            sb.append('|');
+            for (int c = 0; c < columns; c++) {
+                if (c > 0) sb.append(',');
+                if (c == 0) {
+                    sb.append(r + 1);
+                } else {
+                    sb.append(paragraph(seed + r + c, 1 + (r + c) % 9));
+                }
+            }
+        }
+        return sb.append("]]").toString();
+    }
+
+    static String lineChart(int points) {
+        StringBuilder xs = new StringBuilder(points * 6);
+        StringBuilder ys = new StringBuilder(points * 6);
+        for (int i = 0; i < points; i++) {
+            if (i > 0) {
+                xs.append(',');
+                ys.append(',');
+            }
+            xs.append(i);
+            ys.append((i * 37) % 101);
+        }
+        return "[[CHART|line|Trend|Time,Value|" + xs + "|" + ys + "]]";
+    }
+
+    /**
+     * An event stream shaped like a recorded provider response: {@code tokens} deltas, one per event,
+     * in the given provider's JSON, with some multi-byte text so characters straddle read boundaries.
+     */
+    static byte[] eventStream(String provider, int tokens) {
+        StringBuilder sb = new StringBuilder(tokens * 160);
+        for (int i = 0; i < tokens; i++) {
+            String token = (i % 5 == 0 ? " donn\u00e9es\u2014" : " ") + WORDS[(i * 7) % WORDS.length];
+            switch (provider) {
+                case "gemini":
+                    sb.append("data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"").append(token)
+                            .append("\"}],\"role\":\"model\"},\"index\":0}],\"modelVersion\":\"gemini-2.5-flash\"}\r\n\r\n");
+                    break;
+                case "qwen":
+                    sb.append("data: {\"type\":\"thread.item_updated\",\"update\":{\"type\":")
+                            .append("\"assistant_message.content_part.text_delta\",\"delta\":\"").append(token).append("\"}}\n\n");
+                    break;
+                default:
+                    sb.append("data: {\"id\":\"chatcmpl-").append(i).append("\",\"object\":\"chat.completion.chunk\",")
+                            .append("\"choices\":[{\"index\":0,\"delta\":{\"content\":\"").append(token)
+                            .append("\"},\"finish_reason\":null}]}\n\n");
+                    break;
+            }
+            if (i % 50 == 0) sb.append(": keep-alive\n\n");
+        }
+        if (!"gemini".equals(provider)) sb.append("data: [DONE]\n\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void paint(SectionLayout section, RenderTarget target) {
+        for (LayoutPage page : section.getPages()) {
+            for (LayoutBlock block : page.getBlocks()) {
+                block.paint(target);
+            }
+        }
+    }
+}
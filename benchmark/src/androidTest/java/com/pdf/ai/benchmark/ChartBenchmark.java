@@ -0,0 +1,53 @@
+package com.pdf.ai.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.pdf.ai.ChartRenderer;
+import com.pdf.ai.LayoutCursor;
+import com.pdf.ai.NullTarget;
+import com.pdf.ai.PaintManager;
+import com.pdf.ai.SectionLayout;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/** Line chart layout and painting from 10 to 100k points, the successor of {@code ChartRenderer.drawChart}. */
+@RunWith(Parameterized.class)
+public class ChartBenchmark {
+
+    @Parameterized.Parameters(name = "points={0}")
+    public static Collection<Object[]> points() {
+        return Arrays.asList(new Object[][]{{10}, {1000}, {100000}});
+    }
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final PaintManager paints = new PaintManager(InstrumentationRegistry.getInstrumentation().getTargetContext());
+    private final String chart;
+
+    public ChartBenchmark(int points) {
+        this.chart = BenchmarkCorpus.lineChart(points);
+    }
+
+    @Test
+    public void layoutAndPaintLineChart() {
+        ChartRenderer renderer = new ChartRenderer(paints);
+        NullTarget target = new NullTarget();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            SectionLayout section = new SectionLayout("Chart");
+            LayoutCursor cursor = new LayoutCursor(section);
+            cursor.startPage();
+            renderer.layoutChart(cursor, chart);
+            BenchmarkCorpus.paint(section, target);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.pdf.ai.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.pdf.ai.provider.JsonScanner;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Pulling choices[0].delta.content out of 2000 recorded chunks, with JsonScanner and with a full JSONObject parse. */
+public class JsonScannerBenchmark {
+
+    private static final String[] CHUNK_FIELDS = {"choices"};
+    private static final String[] CHOICE_FIELDS = {"delta"};
+    private static final String[] DELTA_FIELDS = {"content"};
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final List<String> events = new ArrayList<>();
+
+    public JsonScannerBenchmark() {
+        String stream = new String(BenchmarkCorpus.eventStream("deepinfra", 2000), StandardCharsets.UTF_8);
+        for (String line : stream.split("\n")) {
+            if (line.startsWith("data: {")) events.add(line.substring(6));
+        }
+    }
+
+    @Test
+    public void scanDeltas() throws JSONException {
+        JsonScanner json = new JsonScanner();
+        BenchmarkState state = benchmarkRule.getState();
+        long chars = 0;
+        while (state.keepRunning()) {
+            for (String event : events) {
+                String content = scanContent(json.reset(event));
+                if (content != null) chars += content.length();
+            }
+        }
+        if (chars < 0) throw new AssertionError();
+    }
+
+    @Test
+    public void parseDeltas() throws JSONException {
+        BenchmarkState state = benchmarkRule.getState();
+        long chars = 0;
+        while (state.keepRunning()) {
+            for (String event : events) {
+                String content = new JSONObject(event).getJSONArray("choices").getJSONObject(0)
+                        .getJSONObject("delta").optString("content", null);
+                if (content != null) chars += content.length();
+            }
+        }
+        if (chars < 0) throw new AssertionError();
+    }
+
+    private static String scanContent(JsonScanner json) throws JSONException {
+        String content = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            if (json.selectName(CHUNK_FIELDS) != 0) {
+                json.skipValue();
+                continue;
+            }
+            json.beginArray();
+            json.beginObject();
+            while (json.hasNext()) {
+                if (json.selectName(CHOICE_FIELDS) != 0) {
+                    json.skipValue();
+                    continue;
+                }
+                json.beginObject();
+                while (json.hasNext()) {
+                    if (json.selectName(DELTA_FIELDS) == 0) {
+                        content = json.nextString();
+                    } else {
+                        json.skipValue();
+                    }
+                }
+                json.endObject();
+            }
+            json.endObject();
+            while (json.hasNext()) {
+                json.skipValue();
+            }
+            json.endArray();
+        }
+        json.endObject();
+        return content;
+    }
+}
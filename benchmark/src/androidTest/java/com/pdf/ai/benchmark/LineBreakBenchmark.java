@@ -0,0 +1,43 @@
+package com.pdf.ai.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.pdf.ai.InlineLexer;
+import com.pdf.ai.PaintManager;
+import com.pdf.ai.StyledText;
+import com.pdf.ai.WrappedText;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Lexing and line breaking of paragraph text, the successor of {@code DrawUtils.splitTextIntoLines}. */
+@RunWith(AndroidJUnit4.class)
+public class LineBreakBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final PaintManager paints = new PaintManager(InstrumentationRegistry.getInstrumentation().getTargetContext());
+    private final String paragraph = BenchmarkCorpus.paragraph(7, 400);
+
+    @Test
+    public void wrapParagraph() {
+        StyledText text = InlineLexer.lex(paragraph, PaintManager.PAINT_TEXT, paints);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            WrappedText.wrap(text, paints, PaintManager.CONTENT_WIDTH);
+        }
+    }
+
+    @Test
+    public void lexAndWrapParagraph() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            WrappedText.wrap(InlineLexer.lex(paragraph, PaintManager.PAINT_TEXT, paints), paints, PaintManager.CONTENT_WIDTH);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.pdf.ai.benchmark;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.pdf.ai.NullTarget;
+import com.pdf.ai.OutlineData;
+import com.pdf.ai.PaintRegistry;
+import com.pdf.ai.PdfGenerator;
+import com.pdf.ai.SectionLayoutCache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A whole document from 10 to 1000 sections: parallel section layout, cover, TOC and content pages
+ * painted into a {@link NullTarget}, so file output does not dominate the numbers. Measured cold,
+ * with every section laid out again, and re-rendered, with every section from a warm
+ * {@link SectionLayoutCache}.
+ */
+@RunWith(Parameterized.class)
+public class PdfGeneratorBenchmark {
+
+    @Parameterized.Parameters(name = "sections={0}")
+    public static Collection<Object[]> sections() {
+        return Arrays.asList(new Object[][]{{10}, {100}, {1000}});
+    }
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    private final OutlineData outline;
+    private final List<String> contents;
+
+    public PdfGeneratorBenchmark(int sections) {
+        this.outline = new OutlineData("Benchmark Report", BenchmarkCorpus.sectionTitles(sections));
+        this.contents = new ArrayList<>(sections);
+        for (int i = 0; i < sections; i++) {
+            contents.add(BenchmarkCorpus.section(i));
+        }
+    }
+
+    @Test
+    public void renderDocument() throws Exception {
+        // A cache with room for no pages keeps nothing
+        render(new PdfGenerator(context, PaintRegistry.getInstance(context).getDefaultTheme(), new SectionLayoutCache(0)));
+    }
+
+    @Test
+    public void rerenderDocument() throws Exception {
+        PdfGenerator generator = new PdfGenerator(context, PaintRegistry.getInstance(context).getDefaultTheme(),
+                new SectionLayoutCache(Integer.MAX_VALUE));
+        // The first, warm-up iteration fills the cache
+        render(generator);
+    }
+
+    private void render(PdfGenerator generator) throws Exception {
+        NullTarget target = new NullTarget();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            PdfGenerator.Session session = generator.begin("Benchmark Report", outline);
+            for (int i = 0; i < contents.size(); i++) {
+                session.appendSection(i, contents.get(i));
+            }
+            session.render(target);
+        }
+    }
+}
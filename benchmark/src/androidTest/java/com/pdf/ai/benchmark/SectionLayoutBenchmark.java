@@ -0,0 +1,55 @@
+package com.pdf.ai.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.pdf.ai.ContentDrawer;
+import com.pdf.ai.LayoutCursor;
+import com.pdf.ai.NullTarget;
+import com.pdf.ai.PaintManager;
+import com.pdf.ai.SectionLayout;
+import com.pdf.ai.TextMeasureCache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** One mixed markdown section through layout and painting, the successor of {@code TextRenderer.drawTextBlock}. */
+@RunWith(AndroidJUnit4.class)
+public class SectionLayoutBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final PaintManager paints = new PaintManager(InstrumentationRegistry.getInstrumentation().getTargetContext());
+    private final String markdown = BenchmarkCorpus.section(3);
+
+    @Test
+    public void layoutSection() {
+        ContentDrawer drawer = new ContentDrawer(paints, new TextMeasureCache(paints));
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            layout(drawer);
+        }
+    }
+
+    @Test
+    public void layoutAndPaintSection() {
+        ContentDrawer drawer = new ContentDrawer(paints, new TextMeasureCache(paints));
+        NullTarget target = new NullTarget();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            BenchmarkCorpus.paint(layout(drawer), target);
+        }
+    }
+
+    private SectionLayout layout(ContentDrawer drawer) {
+        SectionLayout section = new SectionLayout("Overview");
+        LayoutCursor cursor = new LayoutCursor(section);
+        cursor.startPage();
+        drawer.layoutSection(cursor, "Overview", markdown, true);
+        return section;
+    }
+}
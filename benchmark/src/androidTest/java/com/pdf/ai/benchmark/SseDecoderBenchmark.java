@@ -0,0 +1,84 @@
+package com.pdf.ai.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.pdf.ai.provider.SseDecoder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+import okio.Source;
+import okio.Timeout;
+
+/** Decoding a recorded 2000-token response of each provider, replayed in network-sized reads. */
+@RunWith(Parameterized.class)
+public class SseDecoderBenchmark {
+
+    // Odd-sized reads, so lines and multi-byte characters are split the way a socket splits them
+    private static final int READ_SIZE = 1371;
+
+    @Parameterized.Parameters(name = "provider={0}")
+    public static Collection<Object[]> providers() {
+        return Arrays.asList(new Object[][]{{"deepinfra"}, {"gemini"}, {"qwen"}});
+    }
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final byte[] stream;
+
+    public SseDecoderBenchmark(String provider) {
+        this.stream = BenchmarkCorpus.eventStream(provider, 2000);
+    }
+
+    @Test
+    public void decodeStream() throws IOException {
+        long[] chars = new long[1];
+        SseDecoder.Handler handler = (id, type, data) -> chars[0] += data.length();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            BufferedSource source = Okio.buffer(new RecordedSource(stream));
+            SseDecoder decoder = new SseDecoder(source, handler);
+            while (decoder.processNextEvent()) {
+            }
+        }
+    }
+
+    /** Replays recorded bytes {@link #READ_SIZE} at a time. */
+    private static final class RecordedSource implements Source {
+        private final byte[] bytes;
+        private int position;
+
+        RecordedSource(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) {
+            if (position == bytes.length) return -1;
+            int count = (int) Math.min(Math.min(byteCount, READ_SIZE), bytes.length - position);
+            sink.write(bytes, position, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
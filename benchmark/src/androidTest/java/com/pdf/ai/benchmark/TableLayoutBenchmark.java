@@ -0,0 +1,55 @@
+package com.pdf.ai.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.pdf.ai.LayoutCursor;
+import com.pdf.ai.NullTarget;
+import com.pdf.ai.PaintManager;
+import com.pdf.ai.SectionLayout;
+import com.pdf.ai.TableRenderer;
+import com.pdf.ai.TextMeasureCache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/** Table layout and painting from 10 to 10k rows, the successor of {@code TableRenderer.drawTable}. */
+@RunWith(Parameterized.class)
+public class TableLayoutBenchmark {
+
+    @Parameterized.Parameters(name = "rows={0}")
+    public static Collection<Object[]> rows() {
+        return Arrays.asList(new Object[][]{{10}, {100}, {1000}, {10000}});
+    }
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final PaintManager paints = new PaintManager(InstrumentationRegistry.getInstrumentation().getTargetContext());
+    private final String table;
+
+    public TableLayoutBenchmark(int rows) {
+        this.table = BenchmarkCorpus.table(1, rows, 5);
+    }
+
+    @Test
+    public void layoutAndPaintTable() {
+        NullTarget target = new NullTarget();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            // One measure cache per generation run, as PdfGenerator does
+            TableRenderer renderer = new TableRenderer(paints, new TextMeasureCache(paints));
+            SectionLayout section = new SectionLayout("Table");
+            LayoutCursor cursor = new LayoutCursor(section);
+            cursor.startPage();
+            renderer.layoutTable(cursor, table);
+            BenchmarkCorpus.paint(section, target);
+        }
+    }
+}